@@ -0,0 +1,243 @@
+package amend_manager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Compute the amendments between two versions of a report without using the
+ * comparison table. The old version is the build side of a hash join keyed by
+ * row id, which stores the digest of each record. The new version is then
+ * streamed against it:
+ * <ul>
+ * <li>records not present in the old version are inserted as they are;</li>
+ * <li>records with the same digest in both versions are not exported;</li>
+ * <li>records with a different digest are exported with the update
+ * amendment;</li>
+ * <li>old records not present in the new version are exported with the delete
+ * amendment.</li>
+ * </ul>
+ * The xml of the old records is needed only for the deletions, therefore it is
+ * kept in a {@link SpillableRecordStore} which moves it to disk when it gets
+ * too large.
+ *
+ * @author shahaal
+ *
+ */
+public class AmendmentEngine implements AutoCloseable {
+
+	private static final Logger LOGGER = LogManager.getLogger(AmendmentEngine.class);
+
+	private final Map<String, OldRecord> oldRecords;
+	private final SpillableRecordStore oldStore;
+	private final MessageDigest digest;
+
+	private int inserted;
+	private int updated;
+	private int deleted;
+	private int unchanged;
+
+	/**
+	 * @param memoryLimit approximate number of bytes of old records which can be
+	 *                    kept in memory before spilling them to disk
+	 */
+	public AmendmentEngine(long memoryLimit) {
+
+		this.oldRecords = new HashMap<>();
+		this.oldStore = new SpillableRecordStore(memoryLimit);
+
+		try {
+			this.digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-256 is mandatory for every java platform
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Add a record of the old version of the report
+	 *
+	 * @param rowId
+	 * @param version
+	 * @param xmlRecord
+	 * @throws IOException
+	 */
+	public void addOldRecord(String rowId, String version, String xmlRecord) throws IOException {
+
+		// keep the first occurrence, as row ids are unique in a version
+		oldRecords.putIfAbsent(rowId, new OldRecord(digest(xmlRecord)));
+
+		oldStore.add(rowId, version, xmlRecord);
+	}
+
+	/**
+	 * Join the records of the new version with the old ones. The returned
+	 * iterator is lazy: the new records are consumed only while it is iterated.
+	 * The updated/inserted records are returned first (in the order of the new
+	 * version), followed by the deleted ones (in the order of the old version).
+	 *
+	 * @param newRecords records of the new version of the report
+	 * @return the records which need to be sent, with their amendment type
+	 */
+	public Iterator<DatasetComparison> join(Iterator<DatasetComparison> newRecords) {
+		return new JoinIterator(newRecords);
+	}
+
+	private byte[] digest(String xmlRecord) {
+		return digest.digest(xmlRecord == null ? new byte[0] : xmlRecord.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Create a record with the amendment type
+	 *
+	 * @param comp
+	 * @param amType
+	 * @return
+	 */
+	private static DatasetComparison amend(DatasetComparison comp, AmendType amType) {
+
+		String xml = comp.getXmlRecord() + "<amType>" + amType.getCode() + "</amType>";
+
+		return new DatasetComparison(comp.getRowId(), comp.getVersion(), xml, amType, comp.getIsNullified());
+	}
+
+	public int getInsertedCount() {
+		return inserted;
+	}
+
+	public int getUpdatedCount() {
+		return updated;
+	}
+
+	public int getDeletedCount() {
+		return deleted;
+	}
+
+	public int getUnchangedCount() {
+		return unchanged;
+	}
+
+	/**
+	 * Total number of records returned by the join
+	 *
+	 * @return
+	 */
+	public int getAmendedCount() {
+		return inserted + updated + deleted;
+	}
+
+	@Override
+	public void close() throws IOException {
+		oldStore.close();
+		oldRecords.clear();
+	}
+
+	/**
+	 * Build side entry of the join
+	 */
+	private static class OldRecord {
+
+		private final byte[] digest;
+		private boolean matched;
+
+		public OldRecord(byte[] digest) {
+			this.digest = digest;
+		}
+	}
+
+	/**
+	 * Probe the old records with the new ones, then return the unmatched old
+	 * records as deletions
+	 */
+	private class JoinIterator implements Iterator<DatasetComparison> {
+
+		private final Iterator<DatasetComparison> newRecords;
+		private Iterator<DatasetComparison> deletedRecords;
+		private DatasetComparison next;
+
+		public JoinIterator(Iterator<DatasetComparison> newRecords) {
+			this.newRecords = newRecords;
+		}
+
+		@Override
+		public boolean hasNext() {
+
+			if (next == null)
+				next = computeNext();
+
+			return next != null;
+		}
+
+		@Override
+		public DatasetComparison next() {
+
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			DatasetComparison current = next;
+			next = null;
+
+			return current;
+		}
+
+		private DatasetComparison computeNext() {
+
+			while (newRecords.hasNext()) {
+
+				DatasetComparison comp = newRecords.next();
+
+				OldRecord old = oldRecords.get(comp.getRowId());
+
+				// new record
+				if (old == null) {
+					inserted++;
+					return comp;
+				}
+
+				old.matched = true;
+
+				// same record in both versions, nothing to send
+				if (Arrays.equals(old.digest, digest(comp.getXmlRecord()))) {
+					unchanged++;
+					continue;
+				}
+
+				updated++;
+				return amend(comp, AmendType.UPDATE);
+			}
+
+			if (deletedRecords == null) {
+				LOGGER.debug("Amendments of the new version: inserted=" + inserted + "; updated=" + updated
+						+ "; unchanged=" + unchanged);
+				deletedRecords = oldStore.iterator();
+			}
+
+			while (deletedRecords.hasNext()) {
+
+				DatasetComparison comp = deletedRecords.next();
+
+				OldRecord old = oldRecords.get(comp.getRowId());
+
+				if (old.matched)
+					continue;
+
+				// avoid returning twice duplicated row ids
+				old.matched = true;
+
+				deleted++;
+				return amend(comp, AmendType.DELETE);
+			}
+
+			return null;
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package amend_manager;
 
+import table_skeleton.TableRow;
+
 public class DatasetComparison {
 
 	private String rowId;
@@ -9,6 +11,7 @@ public class DatasetComparison {
 	private String isNullified;
 	
 	private StringBuilder xmlRecordBuilder;
+	private TableRow row;
 	
 	public DatasetComparison(String rowId, 
 			String version, String xmlRecord, AmendType amType, String isNullified) {
@@ -57,6 +60,23 @@ public class DatasetComparison {
 		this.xmlRecordBuilder.append(node);
 	}
 	
+	/**
+	 * Add a node with its text to the construction of the xml
+	 * @param node name of the node
+	 * @param text characters which contain the text of the node
+	 * @param start position of the text
+	 * @param length length of the text
+	 */
+	public void addXmlNode(String node, char[] text, int start, int length) {
+		
+		if (xmlRecordBuilder == null)
+			return;
+		
+		this.xmlRecordBuilder.append('<').append(node).append('>')
+			.append(text, start, length)
+			.append("</").append(node).append('>');
+	}
+	
 	/**
 	 * Save the xml built with {@link #addXmlNode(String)}
 	 * into the {@link #xmlRecord} variable
@@ -69,6 +89,15 @@ public class DatasetComparison {
 		this.xmlRecord = this.xmlRecordBuilder.toString();
 	}
 	
+	/**
+	 * Set the record values already parsed into a row
+	 * (used instead of the xml when the versions are folded)
+	 * @param row
+	 */
+	public void setRow(TableRow row) {
+		this.row = row;
+	}
+	
 	public void setAmType(AmendType amType) {
 		this.amType = amType;
 	}
@@ -87,6 +116,9 @@ public class DatasetComparison {
 	public String getXmlRecord() {
 		return xmlRecord;
 	}
+	public TableRow getRow() {
+		return row;
+	}
 	public AmendType getAmType() {
 		return amType;
 	}
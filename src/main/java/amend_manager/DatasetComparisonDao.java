@@ -7,11 +7,13 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import app_config.PropertiesReader;
 import table_database.Database;
 
 public class DatasetComparisonDao {
@@ -24,8 +26,6 @@ public class DatasetComparisonDao {
 	 */
 	public void add(DatasetComparison comp) {
 		
-		System.out.println(comp.getRowId()+", "+comp.getVersion()+", "+comp.getXmlRecord()+", "+comp.getAmType()+", "+comp.getIsNullified());
-		
 		String query = "insert into APP.DATASET_COMPARISON (ROW_ID, VERSION, XML_RECORD, AM_TYPE, IS_NULLIFIED) values (?,?,?,?,?)";
 
 		try (Connection con = Database.getConnection(); 
@@ -55,6 +55,40 @@ public class DatasetComparisonDao {
 		}
 	}
 	
+	/**
+	 * Open a streaming sink which adds the elements to the table
+	 * with batches in a single transaction. The batch size is taken
+	 * from the configuration file.
+	 * @return
+	 * @throws SQLException
+	 */
+	public DatasetComparisonWriter openWriter() throws SQLException {
+		return new DatasetComparisonWriter(PropertiesReader.getDbBatchSize());
+	}
+	
+	/**
+	 * Add all the elements to the table in a single transaction
+	 * @param comps
+	 * @return true if all the elements were added
+	 */
+	public boolean addAll(Iterator<DatasetComparison> comps) {
+		
+		try (DatasetComparisonWriter writer = openWriter();) {
+			
+			while (comps.hasNext())
+				writer.add(comps.next());
+			
+			writer.commit();
+			
+			return true;
+		}
+		catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error("Cannot add the dataset comparisons", e);
+			return false;
+		}
+	}
+	
 	public DatasetComparison getByResultSet(ResultSet rs) throws SQLException {
 		
 		String rowId = rs.getString("ROW_ID");
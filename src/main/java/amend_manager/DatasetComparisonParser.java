@@ -6,18 +6,16 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 
-import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.EndElement;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import dataset.Dataset;
+import global_utils.XmlStreams;
+import table_skeleton.TableRow;
 import table_skeleton.TableVersion;
 
 /**
@@ -37,6 +35,7 @@ public class DatasetComparisonParser implements AutoCloseable {
 	private boolean isResultBlock;
 	private boolean isVersionNode;
 	private boolean endRecord;
+	private boolean parseRows;
 
 	private String currentNode;
 
@@ -44,7 +43,7 @@ public class DatasetComparisonParser implements AutoCloseable {
 	private String datasetVersion;
 
 	private InputStream input; // input xml
-	private XMLEventReader eventReader; // xml parser
+	private XMLStreamReader reader; // xml parser
 
 	/**
 	 * Initialise the parser with a {@link File} object which contains the path to
@@ -76,9 +75,17 @@ public class DatasetComparisonParser implements AutoCloseable {
 		this.endRecord = false;
 
 		// initialise xml parser
-		XMLInputFactory factory = XMLInputFactory.newInstance();
-		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
-		this.eventReader = factory.createXMLEventReader(input);
+		this.reader = XmlStreams.createReader(input);
+	}
+
+	/**
+	 * Parse the record values directly into a {@link TableRow} (see
+	 * {@link DatasetComparison#getRow()}) instead of building the xml record.
+	 * 
+	 * @param parseRows
+	 */
+	public void setParseRows(boolean parseRows) {
+		this.parseRows = parseRows;
 	}
 
 	/**
@@ -92,27 +99,24 @@ public class DatasetComparisonParser implements AutoCloseable {
 		this.endRecord = false;
 
 		// for each node of the xml
-		while (eventReader.hasNext() && !endRecord) {
-
-			// read the node
-			XMLEvent event = eventReader.nextEvent();
+		while (reader.hasNext() && !endRecord) {
 
-			// actions based on the node type
-			switch (event.getEventType()) {
+			// move to the next node and act based on its type
+			switch (reader.next()) {
 
 			// if starting xml node
 			case XMLStreamConstants.START_ELEMENT:
-				start(event);
+				start(reader.getLocalName());
 				break;
 
 			// if looking the xml contents
 			case XMLStreamConstants.CHARACTERS:
-				parseCharacters(event);
+				parseCharacters();
 				break;
 
 			// if ending xml node
 			case XMLStreamConstants.END_ELEMENT:
-				end(event);
+				end(reader.getLocalName());
 				break;
 			}
 		}
@@ -123,18 +127,16 @@ public class DatasetComparisonParser implements AutoCloseable {
 	/**
 	 * Parse the a node when it starts
 	 * 
-	 * @param event
+	 * @param qName name of the node
 	 */
-	private void start(XMLEvent event) {
-
-		StartElement startElement = event.asStartElement();
-
-		String qName = startElement.getName().getLocalPart();
+	private void start(String qName) {
 
 		this.currentNode = null;
 
 		if (qName.equals("result")) {
 			this.datasetComp = new DatasetComparison();
+			if (parseRows)
+				this.datasetComp.setRow(new TableRow());
 			this.isResultBlock = true;
 		} else if (qName.equals(versionField)) {
 			this.isVersionNode = true;
@@ -144,35 +146,33 @@ public class DatasetComparisonParser implements AutoCloseable {
 
 	/**
 	 * Parse the characters of the xml
-	 * 
-	 * @param event
 	 */
-	private void parseCharacters(XMLEvent event) {
+	private void parseCharacters() {
 
-		// get the xml node value
-		String contents = event.asCharacters().getData();
-
-		// cannot parse null content or empty contents
-		if (contents == null || contents.trim().isEmpty())
+		// cannot parse empty contents
+		if (XmlStreams.isBlank(reader))
 			return;
 
 		if (isResultBlock && currentNode != null) {
 
 			if (currentNode.equals("isNullified")) {
-				this.datasetComp.setIsNullified(contents);
+				this.datasetComp.setIsNullified(reader.getText());
 			} else if (currentNode.equals("amType")) {
-				this.datasetComp.setAmType(AmendType.fromCode(contents));
+				this.datasetComp.setAmType(AmendType.fromCode(reader.getText()));
 			} else {
 
-				// save also the xml node
-				StringBuilder xmlNode = new StringBuilder("<").append(currentNode).append(">").append(contents)
-						.append("</").append(currentNode).append(">");
+				if (parseRows) {
+					RowParser.putNode(this.datasetComp.getRow(), currentNode, reader.getText());
+				} else {
 
-				this.datasetComp.addXmlNode(xmlNode.toString());
+					// save also the xml node, copying the text from the buffer of the reader
+					this.datasetComp.addXmlNode(currentNode, reader.getTextCharacters(), reader.getTextStart(),
+							reader.getTextLength());
+				}
 
 				// if we have the id save it
 				if (currentNode.equals(rowIdField)) {
-					this.datasetComp.setRowId(contents);
+					this.datasetComp.setRowId(reader.getText());
 				}
 			}
 		}
@@ -180,7 +180,7 @@ public class DatasetComparisonParser implements AutoCloseable {
 		// if dataset version not retrieved yet, search for it
 		if (datasetVersion == null && isVersionNode) {
 			// extract the version from the field
-			datasetVersion = TableVersion.extractVersionFrom(contents);
+			datasetVersion = TableVersion.extractVersionFrom(reader.getText());
 			isVersionNode = false;
 		}
 	}
@@ -188,13 +188,9 @@ public class DatasetComparisonParser implements AutoCloseable {
 	/**
 	 * Parse a node when it ends
 	 * 
-	 * @param event
+	 * @param qName name of the node
 	 */
-	private void end(XMLEvent event) {
-
-		// get the xml node
-		EndElement endElement = event.asEndElement();
-		String qName = endElement.getName().getLocalPart();
+	private void end(String qName) {
 
 		switch (qName) {
 		case "result":
@@ -215,16 +211,16 @@ public class DatasetComparisonParser implements AutoCloseable {
 	 */
 	public void close() throws IOException {
 
-		if (eventReader != null) {
+		if (reader != null) {
 			try {
-				eventReader.close();
+				reader.close();
 			} catch (XMLStreamException e) {
 				e.printStackTrace();
 				LOGGER.error("Cannot close the DatasetComparisonParser", e);
 			}
 		}
 
-		eventReader = null;
+		reader = null;
 
 		if (input != null)
 			input.close();
@@ -0,0 +1,162 @@
+package amend_manager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import table_database.Database;
+
+/**
+ * Streaming sink which inserts {@link DatasetComparison} objects into the
+ * comparison table using jdbc batches. All the records are written in a single
+ * transaction, which is committed only with {@link #commit()}. Closing the
+ * writer without committing rolls back everything that was added.
+ *
+ * @author shahaal
+ *
+ */
+public class DatasetComparisonWriter implements AutoCloseable {
+
+	private static final Logger LOGGER = LogManager.getLogger(DatasetComparisonWriter.class);
+
+	private static final String INSERT_QUERY = "insert into APP.DATASET_COMPARISON "
+			+ "(ROW_ID, VERSION, XML_RECORD, AM_TYPE, IS_NULLIFIED) values (?,?,?,?,?)";
+
+	private final int batchSize;
+
+	private Connection con;
+	private PreparedStatement stmt;
+
+	private int pending;
+	private int written;
+	private boolean committed;
+
+	/**
+	 * Open a new writer
+	 *
+	 * @param batchSize number of records sent to the database at once
+	 * @throws SQLException
+	 */
+	public DatasetComparisonWriter(int batchSize) throws SQLException {
+
+		this.batchSize = Math.max(1, batchSize);
+
+		this.con = Database.getConnection();
+
+		try {
+			this.con.setAutoCommit(false);
+			this.stmt = con.prepareStatement(INSERT_QUERY);
+		} catch (SQLException e) {
+			this.con.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Add a record. It is sent to the database when the batch is full.
+	 *
+	 * @param comp
+	 * @throws SQLException
+	 */
+	public void add(DatasetComparison comp) throws SQLException {
+
+		if (committed)
+			throw new IllegalStateException("Cannot add records to a committed writer");
+
+		stmt.setString(1, comp.getRowId());
+		stmt.setString(2, comp.getVersion());
+		stmt.setString(3, comp.getXmlRecord());
+
+		if (comp.getAmType() == null)
+			stmt.setNull(4, Types.VARCHAR);
+		else
+			stmt.setString(4, comp.getAmType().getCode());
+
+		if (comp.getIsNullified() == null)
+			stmt.setNull(5, Types.VARCHAR);
+		else
+			stmt.setString(5, comp.getIsNullified());
+
+		stmt.addBatch();
+		pending++;
+
+		if (pending >= batchSize)
+			flush();
+	}
+
+	/**
+	 * Send the pending records to the database
+	 *
+	 * @throws SQLException
+	 */
+	private void flush() throws SQLException {
+
+		if (pending == 0)
+			return;
+
+		stmt.executeBatch();
+
+		written += pending;
+		pending = 0;
+	}
+
+	/**
+	 * Flush the pending records and commit the transaction
+	 *
+	 * @throws SQLException
+	 */
+	public void commit() throws SQLException {
+
+		if (committed)
+			return;
+
+		flush();
+		con.commit();
+		committed = true;
+
+		LOGGER.debug("Added " + written + " dataset comparisons in batches of " + batchSize);
+	}
+
+	/**
+	 * Get the number of records already sent to the database
+	 *
+	 * @return
+	 */
+	public int getWrittenCount() {
+		return written;
+	}
+
+	/**
+	 * Release the connection. If {@link #commit()} was not called, all the added
+	 * records are discarded.
+	 */
+	@Override
+	public void close() throws SQLException {
+
+		if (con == null)
+			return;
+
+		try {
+
+			if (!committed) {
+				LOGGER.warn("Rolling back " + (written + pending) + " dataset comparisons not committed");
+				con.rollback();
+			}
+
+			con.setAutoCommit(true);
+
+		} finally {
+
+			try {
+				stmt.close();
+			} finally {
+				con.close();
+				con = null;
+			}
+		}
+	}
+}
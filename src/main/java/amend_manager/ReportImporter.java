@@ -5,8 +5,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 import javax.xml.stream.XMLStreamException;
@@ -14,6 +17,7 @@ import javax.xml.stream.XMLStreamException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import app_config.PropertiesReader;
 import dataset.Dataset;
 import dataset.DatasetList;
 import dataset.IDataset;
@@ -42,6 +46,11 @@ public abstract class ReportImporter {
 
 	private int processedDatasets;
 
+	// version fold mode: latest state of each record, by row id
+	private boolean versionFold;
+	private int chunkSize;
+	private LinkedHashMap<String, TableRow> foldedRecords;
+
 	private ITableDaoService daoService;
 	private IReportService reportService;
 
@@ -65,6 +74,32 @@ public abstract class ReportImporter {
 		this.versionField = versionField;
 		this.daoService = daoService;
 		this.reportService = reportService;
+
+		this.versionFold = PropertiesReader.isImportVersionFoldEnabled();
+		this.chunkSize = PropertiesReader.getImportChunkSize();
+	}
+
+	/**
+	 * Fold the dataset versions in memory while they are parsed instead of using
+	 * the comparison table. Only the latest state of each record is kept, and the
+	 * rows are passed to {@link #importDatasetRows(List)} in chunks of
+	 * {@link #setChunkSize(int)} rows, therefore the method may be called several
+	 * times for the same report.
+	 * 
+	 * @param versionFold
+	 */
+	public void setVersionFold(boolean versionFold) {
+		this.versionFold = versionFold;
+	}
+
+	/**
+	 * Set the maximum number of rows passed at once to
+	 * {@link #importDatasetRows(List)} in version fold mode
+	 * 
+	 * @param chunkSize
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = Math.max(1, chunkSize);
 	}
 
 	/**
@@ -287,24 +322,82 @@ public abstract class ReportImporter {
 			throw new IOException("Cannot find the dataset attachment in the DCF response.");
 		}
 
+		if (versionFold) {
+			foldDatasetFile(file);
+			return;
+		}
+
+		DatasetComparisonDao dao = new DatasetComparisonDao();
+
 		// parse it to extract the relevant information
-		try (DatasetComparisonParser parser = new DatasetComparisonParser(file, rowIdField, versionField);) {
+		try (DatasetComparisonParser parser = new DatasetComparisonParser(file, rowIdField, versionField);
+				DatasetComparisonWriter writer = dao.openWriter();) {
 
-			// for each dataset comparison insert into the db
+			// stream each dataset comparison into the db
 			DatasetComparison comp;
 			while ((comp = parser.next()) != null) {
-				DatasetComparisonDao dao = new DatasetComparisonDao();
-				dao.add(comp);
+				writer.add(comp);
 			}
 
-			parser.close();
+			writer.commit();
+
+			LOGGER.debug("Imported " + writer.getWrittenCount() + " records from " + file);
+
+		} catch (SQLException e) {
+			throw new IOException("Cannot import the dataset file into the comparison table", e);
+		}
+	}
+
+	/**
+	 * Fold the records of a dataset file into the latest state of the report.
+	 * The versions must be folded in ascending order: a record replaces the
+	 * previous version of the same row, nullified records are ignored and
+	 * records amended as deleted are removed.
+	 * 
+	 * @param file
+	 * @throws XMLStreamException
+	 * @throws IOException
+	 */
+	private void foldDatasetFile(File file) throws XMLStreamException, IOException {
+
+		if (foldedRecords == null)
+			foldedRecords = new LinkedHashMap<>();
+
+		int folded = 0;
+
+		try (DatasetComparisonParser parser = new DatasetComparisonParser(file, rowIdField, versionField);) {
+
+			parser.setParseRows(true);
+
+			DatasetComparison comp;
+			while ((comp = parser.next()) != null) {
+
+				folded++;
+
+				// nullified records do not replace the previous version
+				if ("1".equals(comp.getIsNullified()))
+					continue;
+
+				// remove before putting to keep the rows ordered by last update
+				foldedRecords.remove(comp.getRowId());
+
+				if (comp.getAmType() != AmendType.DELETE)
+					foldedRecords.put(comp.getRowId(), comp.getRow());
+			}
 		}
+
+		LOGGER.debug("Folded " + folded + " records from " + file + ", current records=" + foldedRecords.size());
 	}
 
 	/**
 	 * Process the amendments of the current processed dataset
 	 */
 	private void processAmendments() {
+
+		// already applied while folding
+		if (versionFold)
+			return;
+
 		deleteNullifiedRecords();
 		deleteOldVersionsOfRecords();
 		deleteRemovedRecords();
@@ -351,6 +444,11 @@ public abstract class ReportImporter {
 	 */
 	private void createLocalReport() throws XMLStreamException, IOException, FormulaException, ParseException {
 
+		if (versionFold) {
+			createLocalReportFromFold();
+			return;
+		}
+
 		DatasetComparisonDao dao = new DatasetComparisonDao();
 		List<DatasetComparison> list = dao.getAll();
 		List<TableRow> rows = new ArrayList<>();
@@ -364,6 +462,34 @@ public abstract class ReportImporter {
 		importDatasetRows(rows);
 	}
 
+	/**
+	 * Create the local report using the folded records, passing them in chunks
+	 * 
+	 * @throws FormulaException
+	 * @throws ParseException
+	 */
+	private void createLocalReportFromFold() throws FormulaException, ParseException {
+
+		if (foldedRecords == null || foldedRecords.isEmpty()) {
+			importDatasetRows(new ArrayList<>());
+			return;
+		}
+
+		List<TableRow> chunk = new ArrayList<>(Math.min(chunkSize, foldedRecords.size()));
+
+		Iterator<TableRow> iterator = foldedRecords.values().iterator();
+		while (iterator.hasNext()) {
+
+			// the import may modify the row, so pass a copy of the folded state
+			chunk.add(new TableRow(iterator.next()));
+
+			if (chunk.size() >= chunkSize || !iterator.hasNext()) {
+				importDatasetRows(chunk);
+				chunk = new ArrayList<>(chunkSize);
+			}
+		}
+	}
+
 	/**
 	 * Extract the table row from the xml
 	 * 
@@ -421,6 +547,12 @@ public abstract class ReportImporter {
 	 * Clear comparisons table
 	 */
 	private void clearTable() {
+
+		if (versionFold) {
+			foldedRecords = null;
+			return;
+		}
+
 		LOGGER.debug("Clearing DatasetComparison table");
 		DatasetComparisonDao dao = new DatasetComparisonDao();
 		dao.deleteAll();
@@ -2,7 +2,11 @@ package amend_manager;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -10,6 +14,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.xml.sax.SAXException;
 
+import app_config.PropertiesReader;
 import message.MessageConfigBuilder;
 import message_creator.MessageXmlBuilder;
 import progress_bar.ProgressListener;
@@ -27,6 +32,7 @@ public class ReportXmlBuilder implements AutoCloseable {
 	private MessageConfigBuilder messageConfig;
 	private String rowIdField;
 	private ProgressListener progressListener;
+	private boolean sqlAmendments;
 	
 	private ITableDaoService daoService;
 	private IFormulaService formulaService;
@@ -49,6 +55,17 @@ public class ReportXmlBuilder implements AutoCloseable {
 		
 		this.daoService = daoService;
 		this.formulaService = formulaService;
+		
+		this.sqlAmendments = PropertiesReader.isSqlAmendmentsEnabled();
+	}
+	
+	/**
+	 * Compute the amendments with the sql queries on the comparison table
+	 * instead of the in-memory {@link AmendmentEngine}
+	 * @param sqlAmendments
+	 */
+	public void setSqlAmendments(boolean sqlAmendments) {
+		this.sqlAmendments = sqlAmendments;
 	}
 	
 	public void setProgressListener(ProgressListener progressListener) {
@@ -101,6 +118,87 @@ public class ReportXmlBuilder implements AutoCloseable {
 		
 		LOGGER.info("Exporting report " + report);
 		
+		if (sqlAmendments)
+			return exportReportWithSql();
+		
+		String latestVersion = report.getVersion();
+		
+		LOGGER.debug("The version of the report is " + latestVersion);
+		
+		// if baseline, just export it
+		if (report.isBaselineVersion()) {
+			LOGGER.info("Exporting the report directly since it does not have amended versions");
+			try (Stream<TableRow> records = report.streamRecords(daoService);) {
+				// no amendments, the records are written directly without xml strings
+				File file = createXmlFile(getComparisons(records, latestVersion, false));
+				setProgress(100);
+				return file;
+			}
+		}
+		
+		EFSAReport previousReport = report.getPreviousVersion(daoService);
+		
+		if (previousReport == null) {
+			throw new ReportException("Cannot export report " 
+					+ report.getVersion() 
+					+ " since its previous version cannot be found.");
+		}
+		
+		long memoryLimit = PropertiesReader.getAmendmentsMemoryMb() * 1024L * 1024L;
+		
+		try (AmendmentEngine engine = new AmendmentEngine(memoryLimit);) {
+			
+			// the previous version is the build side of the join
+			try (Stream<TableRow> records = previousReport.streamRecords(daoService);) {
+				Iterator<DatasetComparison> oldRecords = getComparisons(records, previousReport.getVersion(), true);
+				while (oldRecords.hasNext()) {
+					DatasetComparison comp = oldRecords.next();
+					engine.addOldRecord(comp.getRowId(), comp.getVersion(), comp.getXmlRecord());
+				}
+			}
+			
+			setProgress(50);
+			
+			// stream the amended records directly into the message
+			File xml;
+			try (Stream<TableRow> records = report.streamRecords(daoService);) {
+				xml = createXmlFile(engine.join(getComparisons(records, latestVersion, true)));
+			}
+			
+			LOGGER.info("Amendments of " + latestVersion + " against " + previousReport.getVersion()
+				+ ": inserted=" + engine.getInsertedCount()
+				+ "; updated=" + engine.getUpdatedCount()
+				+ "; deleted=" + engine.getDeletedCount()
+				+ "; unchanged=" + engine.getUnchangedCount());
+			
+			if (engine.getAmendedCount() == 0) {
+				if (!xml.delete())
+					LOGGER.warn("Cannot delete the empty message " + xml);
+				throw new AmendException("Cannot create .xml file with no data");
+			}
+			
+			setProgress(100);
+			
+			return xml;
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+	
+	/**
+	 * Export the report computing the amendments with the
+	 * comparison table
+	 * @return
+	 * @throws IOException
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws ReportException
+	 * @throws AmendException
+	 */
+	private File exportReportWithSql() throws IOException, ParserConfigurationException, 
+		SAXException, ReportException, AmendException {
+		
 		clearTable();
 		
 		// extract the report into the comparisons table
@@ -155,32 +253,79 @@ public class ReportXmlBuilder implements AutoCloseable {
 	/**
 	 * Extract a single version and put it into the database
 	 * @param record
+	 * @throws IOException 
 	 */
-	private void extractSingleVersion(EFSAReport report) {
+	private void extractSingleVersion(EFSAReport report) throws IOException {
+		
+		DatasetComparisonDao dao = new DatasetComparisonDao();
 		
-		// for each row
-		for (TableRow record : report.getRecords(daoService)) {
+		// get the version
+		String version = report.getVersion();
 		
-			LOGGER.debug("Adding to the DATASET_COMPARISON table the record " + record);
+		try (Stream<TableRow> records = report.streamRecords(daoService);
+				DatasetComparisonWriter writer = dao.openWriter();) {
 			
-			// update all the record formulas
-			formulaService.updateFormulas(record);
-
-			// get the row id from the record
-			String rowId = record.getLabel(rowIdField);
+			// for each row, read from the database one at a time
+			Iterator<DatasetComparison> comps = getComparisons(records, version, true);
+			while (comps.hasNext()) {
+				
+				// save it into the comparison table
+				writer.add(comps.next());
+			}
 			
-			// get the version
-			String version = report.getVersion();
+			writer.commit();
 			
-			// create the dataset comparison object
-			DatasetComparison comp = new DatasetComparison(rowId, version, record.toXml(false));
-
-			// save it into the comparison table
-			DatasetComparisonDao dao = new DatasetComparisonDao();
-			dao.add(comp);
+			LOGGER.debug("Added " + writer.getWrittenCount() 
+				+ " records to the DATASET_COMPARISON table for version " + version);
+		}
+		catch (SQLException e) {
+			throw new IOException("Cannot extract the report version " + version + " into the comparison table", e);
 		}
 	}
 	
+	/**
+	 * Get the records of a report version as comparison objects.
+	 * The records formulas are solved lazily, while iterating.
+	 * @param stream records of the report version
+	 * @param version version of the report
+	 * @param xml true to convert the records into xml strings (needed to compare
+	 * the versions), false to keep the records which will be written directly
+	 * into the message
+	 * @return
+	 */
+	private Iterator<DatasetComparison> getComparisons(Stream<TableRow> stream, String version, boolean xml) {
+		
+		Iterator<TableRow> records = stream.iterator();
+		
+		return new Iterator<DatasetComparison>() {
+			
+			@Override
+			public boolean hasNext() {
+				return records.hasNext();
+			}
+			
+			@Override
+			public DatasetComparison next() {
+				
+				TableRow record = records.next();
+				
+				// update all the record formulas
+				formulaService.updateFormulas(record);
+				
+				// get the row id from the record
+				String rowId = record.getLabel(rowIdField);
+				
+				if (xml)
+					return new DatasetComparison(rowId, version, record.toXml(false));
+				
+				DatasetComparison comp = new DatasetComparison(rowId, version, null);
+				comp.setRow(record);
+				
+				return comp;
+			}
+		};
+	}
+	
 	/**
 	 * Solve the duplications and set the amendments
 	 * @throws AmendException 
@@ -209,6 +354,20 @@ public class ReportXmlBuilder implements AutoCloseable {
 		DatasetComparisonDao dao = new DatasetComparisonDao();
 		Collection<DatasetComparison> comps = dao.getAll();
 		
+		return createXmlFile(comps.iterator());
+	}
+	
+	/**
+	 * Create the xml file of the dataset with the given records
+	 * @param comps
+	 * @return
+	 * @throws IOException
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 */
+	private File createXmlFile(Iterator<DatasetComparison> comps) 
+			throws IOException, ParserConfigurationException, SAXException {
+		
 		// export the xml file
 		try(MessageXmlBuilder creator = new MessageXmlBuilder(
 				messageConfig.getOut(), this.messageConfig);) {
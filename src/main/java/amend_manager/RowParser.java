@@ -7,17 +7,15 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 
-import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import dataset.Dataset;
+import global_utils.XmlStreams;
 import table_skeleton.TableRow;
 import xml_catalog_reader.XmlContents;
 
@@ -35,7 +33,7 @@ public class RowParser implements Closeable {
 	private TableRow datasetRow;
 
 	private InputStream input; // input xml
-	private XMLEventReader eventReader; // xml parser
+	private XMLStreamReader reader; // xml parser
 
 	/**
 	 * Initialise the parser with a {@link File} object which contains the path to
@@ -61,9 +59,7 @@ public class RowParser implements Closeable {
 		this.datasetRow = new TableRow();
 
 		// initialise xml parser
-		XMLInputFactory factory = XMLInputFactory.newInstance();
-		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
-		this.eventReader = factory.createXMLEventReader(input);
+		this.reader = XmlStreams.createReader(input);
 	}
 
 	/**
@@ -75,22 +71,19 @@ public class RowParser implements Closeable {
 	public TableRow parse() throws XMLStreamException {
 
 		// for each node of the xml
-		while (eventReader.hasNext()) {
+		while (reader.hasNext()) {
 
-			// read the node
-			XMLEvent event = eventReader.nextEvent();
-
-			// actions based on the node type
-			switch (event.getEventType()) {
+			// move to the next node and act based on its type
+			switch (reader.next()) {
 
 			// if starting xml node
 			case XMLStreamConstants.START_ELEMENT:
-				start(event);
+				start(reader.getLocalName());
 				break;
 
 			// if looking the xml contents
 			case XMLStreamConstants.CHARACTERS:
-				parseCharacters(event);
+				parseCharacters();
 				break;
 
 			// if ending xml node
@@ -105,40 +98,45 @@ public class RowParser implements Closeable {
 	/**
 	 * Parse the a node when it starts
 	 * 
-	 * @param event
+	 * @param qName name of the node
 	 */
-	private void start(XMLEvent event) {
-
-		StartElement startElement = event.asStartElement();
-		this.currentNode = startElement.getName().getLocalPart();
+	private void start(String qName) {
+		this.currentNode = qName;
 	}
 
 	/**
 	 * Parse the characters of the xml
-	 * 
-	 * @param event
 	 */
-	private void parseCharacters(XMLEvent event) {
+	private void parseCharacters() {
 
-		// get the xml node value
-		String contents = event.asCharacters().getData();
-
-		// cannot parse null content or empty contents
-		if (contents == null || currentNode == null || contents.trim().isEmpty())
+		// cannot parse empty contents
+		if (currentNode == null || XmlStreams.isBlank(reader))
 			return;
 
+		putNode(datasetRow, currentNode, reader.getText());
+	}
+
+	/**
+	 * Save the value of an xml node into the row
+	 * 
+	 * @param row
+	 * @param node     name of the node
+	 * @param contents value of the node
+	 */
+	static void putNode(TableRow row, String node, String contents) {
+
 		// this check allows to extract the statusHerd value from the sampEventInfo and
 		// set it in the row (since no node in xml with statusHerd)
 		//
 		// <sampEventInfo>statusHerd=F/N<sampEventInfo>
-		if (this.currentNode.contains("sampEventInfo")) {
+		if (node.contains("sampEventInfo")) {
 			String[] content = contents.split("=");
 			if (content.length > 0)
-				datasetRow.put("statusHerd", content[1]);
+				row.put("statusHerd", content[1]);
 		}
 
 		// save the node into the row
-		datasetRow.put(currentNode, contents);
+		row.put(node, contents);
 	}
 
 	/**
@@ -148,16 +146,16 @@ public class RowParser implements Closeable {
 	 */
 	public void close() throws IOException {
 
-		if (eventReader != null) {
+		if (reader != null) {
 			try {
-				eventReader.close();
+				reader.close();
 			} catch (XMLStreamException e) {
 				e.printStackTrace();
 				LOGGER.error("Cannot close the RowParser", e);
 			}
 		}
 
-		eventReader = null;
+		reader = null;
 
 		if (input != null)
 			input.close();
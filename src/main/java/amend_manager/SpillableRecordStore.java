@@ -0,0 +1,214 @@
+package amend_manager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import app_config.AppPaths;
+import global_utils.DataStreams;
+
+/**
+ * Append-only list of records (row id + xml record) which is kept in memory up
+ * to a size limit. When the limit is exceeded, all the records are moved into
+ * a temporary file and the following ones are appended directly to it.
+ *
+ * @author shahaal
+ *
+ */
+class SpillableRecordStore implements AutoCloseable, Iterable<DatasetComparison> {
+
+	private static final Logger LOGGER = LogManager.getLogger(SpillableRecordStore.class);
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final long memoryLimit;
+
+	private List<DatasetComparison> memory;
+	private long memorySize;
+
+	private File spillFile;
+	private DataOutputStream spillOut;
+
+	private int size;
+
+	/**
+	 * @param memoryLimit approximate number of bytes which can be kept in memory
+	 */
+	public SpillableRecordStore(long memoryLimit) {
+		this.memoryLimit = memoryLimit;
+		this.memory = new ArrayList<>();
+	}
+
+	/**
+	 * Append a record to the store
+	 *
+	 * @param rowId
+	 * @param version
+	 * @param xmlRecord
+	 * @throws IOException
+	 */
+	public void add(String rowId, String version, String xmlRecord) throws IOException {
+
+		size++;
+
+		if (spillOut != null) {
+			write(rowId, version, xmlRecord);
+			return;
+		}
+
+		memory.add(new DatasetComparison(rowId, version, xmlRecord));
+
+		// java strings take two bytes per char
+		memorySize += 2L * (length(rowId) + length(version) + length(xmlRecord));
+
+		if (memorySize > memoryLimit)
+			spill();
+	}
+
+	/**
+	 * Move all the in-memory records to the temporary file
+	 *
+	 * @throws IOException
+	 */
+	private void spill() throws IOException {
+
+		File folder = new File(AppPaths.TEMP_FOLDER);
+		if (!folder.exists())
+			folder.mkdirs();
+
+		spillFile = File.createTempFile("amendments_", ".bin", folder);
+		spillFile.deleteOnExit();
+
+		spillOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile), BUFFER_SIZE));
+
+		LOGGER.info("Records exceeded " + memoryLimit + " bytes, spilling " + memory.size() + " records to "
+				+ spillFile);
+
+		for (DatasetComparison comp : memory)
+			write(comp.getRowId(), comp.getVersion(), comp.getXmlRecord());
+
+		memory = null;
+		memorySize = 0;
+	}
+
+	private void write(String rowId, String version, String xmlRecord) throws IOException {
+		DataStreams.writeString(spillOut, rowId);
+		DataStreams.writeString(spillOut, version);
+		DataStreams.writeString(spillOut, xmlRecord);
+	}
+
+	private static int length(String value) {
+		return value == null ? 0 : value.length();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isSpilled() {
+		return spillFile != null;
+	}
+
+	/**
+	 * Iterate the records in insertion order. No record can be added after this
+	 * call if the store was spilled to disk.
+	 */
+	@Override
+	public Iterator<DatasetComparison> iterator() {
+
+		if (spillFile == null)
+			return memory.iterator();
+
+		try {
+			spillOut.flush();
+			return new SpillIterator(spillFile, size);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Remove the temporary file if it was created
+	 */
+	@Override
+	public void close() throws IOException {
+
+		if (spillOut != null) {
+			spillOut.close();
+			spillOut = null;
+		}
+
+		if (spillFile != null) {
+
+			if (!spillFile.delete())
+				LOGGER.warn("Cannot delete the temporary file " + spillFile);
+
+			spillFile = null;
+		}
+	}
+
+	/**
+	 * Sequential reader of the spill file
+	 */
+	private static class SpillIterator implements Iterator<DatasetComparison> {
+
+		private final DataInputStream in;
+		private int remaining;
+
+		public SpillIterator(File file, int size) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+			this.remaining = size;
+		}
+
+		@Override
+		public boolean hasNext() {
+
+			if (remaining > 0)
+				return true;
+
+			try {
+				in.close();
+			} catch (IOException e) {
+			}
+
+			return false;
+		}
+
+		@Override
+		public DatasetComparison next() {
+
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			try {
+
+				String rowId = DataStreams.readString(in);
+				String version = DataStreams.readString(in);
+				String xmlRecord = DataStreams.readString(in);
+
+				remaining--;
+
+				return new DatasetComparison(rowId, version, xmlRecord);
+
+			} catch (EOFException e) {
+				throw new UncheckedIOException("Truncated amendments spill file", e);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -46,6 +46,40 @@ public class PropertiesReader {
 	private static final String APP_DC_STARTING_YEAR = "Application.DataCollectionStartingYear";
 	private static final String APP_HELP_REPOSITORY_PROPERTY = "Application.HelpRepository";
 	private static final String APP_STARTUP_HELP_PROPERTY = "Application.StartupHelpFile";
+	private static final String DB_POOL_SIZE_PROPERTY = "Db.PoolSize";
+	private static final String DB_POOL_TIMEOUT_PROPERTY = "Db.PoolTimeout";
+	private static final String DB_STATEMENT_CACHE_PROPERTY = "Db.StatementCacheSize";
+	private static final String DB_BATCH_SIZE_PROPERTY = "Db.BatchSize";
+	private static final String DB_FETCH_SIZE_PROPERTY = "Db.FetchSize";
+	private static final String DB_IN_LIST_SIZE_PROPERTY = "Db.InListSize";
+	private static final String EXPORT_SQL_AMENDMENTS_PROPERTY = "Export.SqlAmendments";
+	private static final String EXPORT_AMENDMENTS_MEMORY_PROPERTY = "Export.AmendmentsMemoryMb";
+	private static final String IMPORT_VERSION_FOLD_PROPERTY = "Import.VersionFold";
+	private static final String IMPORT_CHUNK_SIZE_PROPERTY = "Import.ChunkSize";
+	private static final String PICKLISTS_WARM_UP_THREADS_PROPERTY = "Picklists.WarmUpThreads";
+	private static final String RELATIONS_PARENT_CACHE_SIZE_PROPERTY = "Relations.ParentCacheSize";
+	private static final String ROWS_COMPACT_STORAGE_PROPERTY = "Rows.CompactStorage";
+	private static final String DB_PARTIAL_UPDATES_PROPERTY = "Db.PartialUpdates";
+	private static final String DB_WRITE_BEHIND_DELAY_PROPERTY = "Db.WriteBehindDelay";
+	private static final String EXPORT_STREAMING_WRITER_PROPERTY = "Export.StreamingWriter";
+	private static final String EXPORT_WRITE_BUFFER_PROPERTY = "Export.WriteBufferKb";
+	private static final String EXPORT_COMPRESS_PROPERTY = "Export.Compress";
+	private static final String EXPORT_COMPRESSION_LEVEL_PROPERTY = "Export.CompressionLevel";
+	private static final String FORMULA_COMPILED_PROPERTY = "Formula.Compiled";
+	
+	private static final int DEFAULT_DB_POOL_SIZE = 8;
+	private static final int DEFAULT_DB_POOL_TIMEOUT = 30000;
+	private static final int DEFAULT_DB_STATEMENT_CACHE = 64;
+	private static final int DEFAULT_DB_BATCH_SIZE = 1000;
+	private static final int DEFAULT_DB_FETCH_SIZE = 200;
+	private static final int DEFAULT_DB_IN_LIST_SIZE = 500;
+	private static final int DEFAULT_EXPORT_AMENDMENTS_MEMORY = 64;
+	private static final int DEFAULT_IMPORT_CHUNK_SIZE = 1000;
+	private static final int DEFAULT_PICKLISTS_WARM_UP_THREADS = 0;
+	private static final int DEFAULT_RELATIONS_PARENT_CACHE_SIZE = 256;
+	private static final int DEFAULT_DB_WRITE_BEHIND_DELAY = 300;
+	private static final int DEFAULT_EXPORT_WRITE_BUFFER = 256;
+	private static final int DEFAULT_EXPORT_COMPRESSION_LEVEL = 6;
 	
 	// cache properties, they do not change across time. We avoid
 	// continuous access to the file
@@ -381,6 +415,211 @@ public class PropertiesReader {
 	}
 	
 	
+	/**
+	 * Get the maximum number of database connections kept
+	 * in the connection pool
+	 * @return
+	 */
+	public static int getDbPoolSize() {
+		return getIntValue(DB_POOL_SIZE_PROPERTY, DEFAULT_DB_POOL_SIZE);
+	}
+	
+	/**
+	 * Get how many milliseconds to wait for a free database
+	 * connection before giving up
+	 * @return
+	 */
+	public static int getDbPoolTimeout() {
+		return getIntValue(DB_POOL_TIMEOUT_PROPERTY, DEFAULT_DB_POOL_TIMEOUT);
+	}
+	
+	/**
+	 * Get how many prepared statements are cached for each
+	 * pooled connection
+	 * @return
+	 */
+	public static int getDbStatementCacheSize() {
+		return getIntValue(DB_STATEMENT_CACHE_PROPERTY, DEFAULT_DB_STATEMENT_CACHE);
+	}
+	
+	/**
+	 * Get how many rows are sent to the database in
+	 * a single jdbc batch during bulk inserts
+	 * @return
+	 */
+	public static int getDbBatchSize() {
+		return getIntValue(DB_BATCH_SIZE_PROPERTY, DEFAULT_DB_BATCH_SIZE);
+	}
+	
+	/**
+	 * Get how many rows are fetched from the database at
+	 * once when the rows of a table are streamed
+	 * @return
+	 */
+	public static int getDbFetchSize() {
+		return getIntValue(DB_FETCH_SIZE_PROPERTY, DEFAULT_DB_FETCH_SIZE);
+	}
+	
+	/**
+	 * Get how many ids are put at most in the in (...) list
+	 * of a query which reads the rows of many parents
+	 * @return
+	 */
+	public static int getDbInListSize() {
+		return getIntValue(DB_IN_LIST_SIZE_PROPERTY, DEFAULT_DB_IN_LIST_SIZE);
+	}
+	
+	/**
+	 * Check if the amendments of an exported report should be
+	 * computed with the sql queries on the comparison table
+	 * instead of the in-memory engine
+	 * @return
+	 */
+	public static boolean isSqlAmendmentsEnabled() {
+		return BooleanValue.isTrue(getValue(EXPORT_SQL_AMENDMENTS_PROPERTY));
+	}
+	
+	/**
+	 * Get how many megabytes of records the amendments engine
+	 * can keep in memory before moving them to disk
+	 * @return
+	 */
+	public static int getAmendmentsMemoryMb() {
+		return getIntValue(EXPORT_AMENDMENTS_MEMORY_PROPERTY, DEFAULT_EXPORT_AMENDMENTS_MEMORY);
+	}
+	
+	/**
+	 * Check if the downloaded dataset versions should be folded
+	 * in memory instead of using the comparison table
+	 * @return
+	 */
+	public static boolean isImportVersionFoldEnabled() {
+		return BooleanValue.isTrue(getValue(IMPORT_VERSION_FOLD_PROPERTY));
+	}
+	
+	/**
+	 * Get how many rows are imported at once when the
+	 * dataset versions are folded
+	 * @return
+	 */
+	public static int getImportChunkSize() {
+		return getIntValue(IMPORT_CHUNK_SIZE_PROPERTY, DEFAULT_IMPORT_CHUNK_SIZE);
+	}
+	
+	/**
+	 * Get how many threads load the picklists in background
+	 * when the library starts (0 to load them only when needed)
+	 * @return
+	 */
+	public static int getPicklistsWarmUpThreads() {
+		return getIntValue(PICKLISTS_WARM_UP_THREADS_PROPERTY, DEFAULT_PICKLISTS_WARM_UP_THREADS);
+	}
+	
+	/**
+	 * Get how many parent rows are kept in memory to
+	 * solve the relation formulas (0 to disable the cache)
+	 * @return
+	 */
+	public static int getParentCacheSize() {
+		return getIntValue(RELATIONS_PARENT_CACHE_SIZE_PROPERTY, DEFAULT_RELATIONS_PARENT_CACHE_SIZE);
+	}
+	
+	/**
+	 * Check if the values of the rows are stored in arrays indexed by
+	 * the schema columns (enabled unless set to false)
+	 * @return
+	 */
+	public static boolean isCompactRowsEnabled() {
+		return !BooleanValue.isFalse(getValue(ROWS_COMPACT_STORAGE_PROPERTY));
+	}
+	
+	/**
+	 * Check if the updates of the rows write only the changed columns
+	 * and skip the rows without changes (enabled unless set to false)
+	 * @return
+	 */
+	public static boolean isPartialUpdateEnabled() {
+		return !BooleanValue.isFalse(getValue(DB_PARTIAL_UPDATES_PROPERTY));
+	}
+	
+	/**
+	 * Get how many milliseconds the edited rows wait in the
+	 * write-behind queue before being saved (0 to save them
+	 * immediately)
+	 * @return
+	 */
+	public static int getDbWriteBehindDelay() {
+		return getIntValue(DB_WRITE_BEHIND_DELAY_PROPERTY, DEFAULT_DB_WRITE_BEHIND_DELAY);
+	}
+	
+	/**
+	 * Check if the exported messages should be written with
+	 * a streaming xml writer (enabled unless set to false)
+	 * @return
+	 */
+	public static boolean isStreamingWriterEnabled() {
+		return !BooleanValue.isFalse(getValue(EXPORT_STREAMING_WRITER_PROPERTY));
+	}
+	
+	/**
+	 * Get how many kilobytes are buffered before writing
+	 * the exported messages to the disk
+	 * @return
+	 */
+	public static int getExportWriteBufferKb() {
+		return getIntValue(EXPORT_WRITE_BUFFER_PROPERTY, DEFAULT_EXPORT_WRITE_BUFFER);
+	}
+	
+	/**
+	 * Check if the exported messages should be zipped
+	 * while they are written
+	 * @return
+	 */
+	public static boolean isCompressedExportEnabled() {
+		return BooleanValue.isTrue(getValue(EXPORT_COMPRESS_PROPERTY));
+	}
+	
+	/**
+	 * Get the compression level of the zipped messages,
+	 * from 0 (no compression) to 9 (best compression)
+	 * @return
+	 */
+	public static int getExportCompressionLevel() {
+		return getIntValue(EXPORT_COMPRESSION_LEVEL_PROPERTY, DEFAULT_EXPORT_COMPRESSION_LEVEL);
+	}
+	
+	/**
+	 * Check if the formulas are solved with their compiled version
+	 * before using the text passes (enabled unless set to false)
+	 * @return
+	 */
+	public static boolean isCompiledFormulaEnabled() {
+		return !BooleanValue.isFalse(getValue(FORMULA_COMPILED_PROPERTY));
+	}
+	
+	/**
+	 * Get an optional numeric property, using the default value
+	 * if it is missing or malformed
+	 * @param property
+	 * @param defaultValue
+	 * @return
+	 */
+	private static int getIntValue(String property, int defaultValue) {
+		
+		String value = getValue(property);
+		
+		if (value == null)
+			return defaultValue;
+		
+		try {
+			return Integer.valueOf(value.trim());
+		}
+		catch(NumberFormatException e) {
+			LOGGER.warn("Expected number for " + property + ", found=" + value + ". Using " + defaultValue);
+			return defaultValue;
+		}
+	}
+	
 	/**
 	 * Get a property value given the key
 	 * @param property
@@ -7,19 +7,16 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 
-import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.EndElement;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import dataset.Header.HeaderNode;
 import dataset.Operation.OperationNode;
+import global_utils.XmlStreams;
 import xml_catalog_reader.XmlContents;
 
 /**
@@ -50,7 +47,7 @@ public class DatasetMetaDataParser implements Closeable {
 	
 	private Dataset dataset;
 	private InputStream input;               // input xml
-	private XMLEventReader eventReader;      // xml parser
+	private XMLStreamReader reader;          // xml parser
 	
 	/**
 	 * Initialise the parser with a {@link File} object which
@@ -74,9 +71,7 @@ public class DatasetMetaDataParser implements Closeable {
 		this.dataset = new Dataset();
 		
 		// Initialise xml parser
-		XMLInputFactory factory = XMLInputFactory.newInstance();
-		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
-		this.eventReader = factory.createXMLEventReader(input);
+		this.reader = XmlStreams.createReader(input);
 		
 		this.currentBlock = CurrentBlock.MESSAGE;
 	}
@@ -90,27 +85,24 @@ public class DatasetMetaDataParser implements Closeable {
 	public Dataset parse() throws XMLStreamException {
 		
 		// for each node of the xml
-		while (eventReader.hasNext()) {
+		while (reader.hasNext()) {
 
-			// read the node
-			XMLEvent event = eventReader.nextEvent();
-
-			// actions based on the node type
-			switch(event.getEventType()) {
+			// move to the next node and act based on its type
+			switch (reader.next()) {
 
 			// if starting xml node
 			case XMLStreamConstants.START_ELEMENT:
-				start(event);
+				start(reader.getLocalName());
 				break;
 
 			// if looking the xml contents
 			case XMLStreamConstants.CHARACTERS:
-				parseCharacters(event);
+				parseCharacters();
 				break;
 
 			// if ending xml node
 			case  XMLStreamConstants.END_ELEMENT:
-				end(event);
+				end(reader.getLocalName());
 				break;
 			}
 			
@@ -124,13 +116,9 @@ public class DatasetMetaDataParser implements Closeable {
 	
 	/**
 	 * Parse the a node when it starts
-	 * @param event
+	 * @param qName name of the node
 	 */
-	private void start(XMLEvent event) {
-		
-		StartElement startElement = event.asStartElement();
-
-		String qName = startElement.getName().getLocalPart();
+	private void start(String qName) {
 
 		this.currentNode = null;
 
@@ -163,16 +151,15 @@ public class DatasetMetaDataParser implements Closeable {
 	
 	/**
 	 * Parse the characters of the xml
-	 * @param event
 	 */
-	private void parseCharacters (XMLEvent event) {
-		
-		// get the xml node value
-		String contents = event.asCharacters().getData();
+	private void parseCharacters() {
 		
-		// cannot parse null content or empty contents
-		if (contents == null || currentNode == null || contents.trim().isEmpty())
+		// cannot parse empty contents
+		if (currentNode == null || XmlStreams.isBlank(reader))
 			return;
+		
+		// get the xml node value
+		String contents = reader.getText();
 
 		switch(currentBlock) {
 		
@@ -229,13 +216,9 @@ public class DatasetMetaDataParser implements Closeable {
 	
 	/**
 	 * Parse a node when it ends
-	 * @param event
+	 * @param qName name of the node
 	 */
-	private void end (XMLEvent event) {
-		
-		// get the xml node
-		EndElement endElement = event.asEndElement();
-		String qName = endElement.getName().getLocalPart();
+	private void end(String qName) {
 
 		switch(qName) {
 		
@@ -258,16 +241,16 @@ public class DatasetMetaDataParser implements Closeable {
 	 */
 	public void close() throws IOException {
 		
-		if (eventReader != null) {
+		if (reader != null) {
 			try {
-				eventReader.close();
+				reader.close();
 			} catch (XMLStreamException e) {
 				e.printStackTrace();
 				LOGGER.error("Cannot close the DatasetMetaDataParser", e);
 			}
 		}
 
-		eventReader = null;
+		reader = null;
 		
 		if (input != null)
 			input.close();
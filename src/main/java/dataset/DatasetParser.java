@@ -7,17 +7,14 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 
-import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.EndElement;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
 import amend_manager.DatasetComparison;
 import dataset.Header.HeaderNode;
 import dataset.Operation.OperationNode;
+import global_utils.XmlStreams;
 import table_skeleton.TableRow;
 import xml_catalog_reader.XmlContents;
 
@@ -50,7 +47,7 @@ public class DatasetParser implements Closeable {
 	
 	private Dataset dataset;
 	private InputStream input;               // input xml
-	private XMLEventReader eventReader;      // xml parser
+	private XMLStreamReader reader;          // xml parser
 	
 	/**
 	 * Initialise the parser with a {@link File} object which
@@ -75,9 +72,7 @@ public class DatasetParser implements Closeable {
 		this.datasetComp = new DatasetComparison();
 		
 		// Initialise xml parser
-		XMLInputFactory factory = XMLInputFactory.newInstance();
-		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
-		this.eventReader = factory.createXMLEventReader(input);
+		this.reader = XmlStreams.createReader(input);
 		
 		this.currentBlock = CurrentBlock.MESSAGE;
 	}
@@ -91,27 +86,24 @@ public class DatasetParser implements Closeable {
 	public Dataset parse() throws XMLStreamException {
 		
 		// for each node of the xml
-		while (eventReader.hasNext()) {
+		while (reader.hasNext()) {
 
-			// read the node
-			XMLEvent event = eventReader.nextEvent();
-
-			// actions based on the node type
-			switch(event.getEventType()) {
+			// move to the next node and act based on its type
+			switch (reader.next()) {
 
 			// if starting xml node
 			case XMLStreamConstants.START_ELEMENT:
-				start(event);
+				start(reader.getLocalName());
 				break;
 
 			// if looking the xml contents
 			case XMLStreamConstants.CHARACTERS:
-				parseCharacters(event);
+				parseCharacters();
 				break;
 
 			// if ending xml node
 			case  XMLStreamConstants.END_ELEMENT:
-				end(event);
+				end(reader.getLocalName());
 				break;
 			}
 		}
@@ -121,13 +113,9 @@ public class DatasetParser implements Closeable {
 	
 	/**
 	 * Parse the a node when it starts
-	 * @param event
+	 * @param qName name of the node
 	 */
-	private void start(XMLEvent event) {
-		
-		StartElement startElement = event.asStartElement();
-
-		String qName = startElement.getName().getLocalPart();
+	private void start(String qName) {
 
 		this.currentNode = null;
 		
@@ -161,16 +149,15 @@ public class DatasetParser implements Closeable {
 	
 	/**
 	 * Parse the characters of the xml
-	 * @param event
 	 */
-	private void parseCharacters (XMLEvent event) {
-		
-		// get the xml node value
-		String contents = event.asCharacters().getData();
+	private void parseCharacters() {
 		
-		// cannot parse null content or empty contents
-		if (contents == null || currentNode == null || contents.trim().isEmpty())
+		// cannot parse empty contents
+		if (currentNode == null || XmlStreams.isBlank(reader))
 			return;
+		
+		// get the xml node value
+		String contents = reader.getText();
 
 		switch(currentBlock) {
 		
@@ -219,15 +206,8 @@ public class DatasetParser implements Closeable {
 			datasetRow.put(currentNode, contents);
 			
 			// save also the xml node
-			StringBuilder xmlNode = new StringBuilder("<")
-					.append(currentNode)
-					.append(">")
-					.append(contents)
-					.append("</")
-					.append(currentNode)
-					.append(">");
-			
-			this.datasetComp.addXmlNode(xmlNode.toString());
+			this.datasetComp.addXmlNode(currentNode, reader.getTextCharacters(), 
+					reader.getTextStart(), reader.getTextLength());
 			break;
 			
 		default:
@@ -238,13 +218,9 @@ public class DatasetParser implements Closeable {
 	
 	/**
 	 * Parse a node when it ends
-	 * @param event
+	 * @param qName name of the node
 	 */
-	private void end (XMLEvent event) {
-		
-		// get the xml node
-		EndElement endElement = event.asEndElement();
-		String qName = endElement.getName().getLocalPart();
+	private void end(String qName) {
 
 		switch(qName) {
 		
@@ -269,15 +245,15 @@ public class DatasetParser implements Closeable {
 	 */
 	public void close () throws IOException {
 		
-		if (eventReader != null) {
+		if (reader != null) {
 			try {
-				eventReader.close();
+				reader.close();
 			} catch (XMLStreamException e) {
 				e.printStackTrace();
 			}
 		}
 
-		eventReader = null;
+		reader = null;
 		
 		if (input != null)
 			input.close();
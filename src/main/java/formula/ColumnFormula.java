@@ -1,6 +1,5 @@
 package formula;
 
-import table_skeleton.TableCell;
 import table_skeleton.TableColumn;
 import table_skeleton.TableRow;
 
@@ -59,7 +58,6 @@ public class ColumnFormula implements IFormula {
 	public String solve(TableRow row) throws FormulaException {
 		
 		TableColumn colSchema = row.getSchema().getById(columnId);
-		TableCell colValue = row.get(columnId);
 		
 		if (colSchema == null) {
 			throw new FormulaException("No column found in the row schema for " + columnId);
@@ -69,20 +67,20 @@ public class ColumnFormula implements IFormula {
 		// the formula of the referenced column is
 		// put, in order to solve it later with another
 		// pass
-		boolean emptyValue = colValue == null;
+		boolean emptyValue = !row.containsKey(columnId);
 		
 		String solvedFormula = null;
 		
 		switch (fieldType) {
 		case "code":
 			try {
-				solvedFormula = emptyValue ? colSchema.getCodeFormula() : colValue.getCode();
+				solvedFormula = emptyValue ? colSchema.getCodeFormula() : row.getCode(columnId);
 			}catch (Exception e) {
 				System.err.println(e);
 			}
 			break;
 		case "label":
-			solvedFormula = emptyValue ? colSchema.getLabelFormula() : colValue.getLabel();			
+			solvedFormula = emptyValue ? colSchema.getLabelFormula() : row.getLabel(columnId);			
 			break;
 		default:
 			throw new FormulaException("Field type " + fieldType + " not recognized.");
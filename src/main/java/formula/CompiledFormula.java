@@ -0,0 +1,719 @@
+package formula;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import app_config.BooleanValue;
+import providers.ITableDaoService;
+import table_skeleton.TableColumn;
+import table_skeleton.TableRow;
+
+/**
+ * Precompiled version of the formula of a column field. The text of the formula
+ * is parsed only once, by running the same passes of {@link Formula#solve()}
+ * (keywords, row keywords, columns, relations, comparators and functions) on a
+ * copy of the text where each dynamic value is replaced by a placeholder
+ * character. The result is a tree of nodes which is evaluated for each row
+ * without using any regular expression.
+ *
+ * The evaluation is equivalent to the text passes only if the solved values do
+ * not contain characters which would be interpreted by the following passes
+ * (brackets, commas, operators...). When this happens, {@link #solve(TableRow,
+ * ITableDaoService)} returns null and the formula needs to be solved with the
+ * text passes. Formulas which cannot be represented as a tree at all are cached
+ * as not compiled.
+ *
+ * @author shahaal
+ *
+ */
+class CompiledFormula {
+
+	private static final Logger LOGGER = LogManager.getLogger(CompiledFormula.class);
+
+	// private use unicode area, used for the placeholders of the dynamic values
+	private static final char PLACEHOLDER_START = '\uE000';
+	private static final char PLACEHOLDER_END = '\uF8FF';
+
+	private static final String[] FUNCTIONS_ORDER = new String[] {
+			FunctionFormula.AND,
+			FunctionFormula.OR,
+			FunctionFormula.SUM,
+			FunctionFormula.ZERO_PADDING,
+			FunctionFormula.RIGHT_TRIM,
+			FunctionFormula.LEFT_TRIM,
+			FunctionFormula.IF,
+			FunctionFormula.IF_NOT_NULL,
+			FunctionFormula.HASH,
+			FunctionFormula.NEXT };
+
+	// same as the comparator regex of FormulaFinder, but placeholders and
+	// spaces are accepted everywhere in the operands. The operands are checked
+	// at evaluation time
+	private static final String RELAXED_OPERAND = "([0-9a-zA-Z.\\s" + PLACEHOLDER_START + "-" + PLACEHOLDER_END
+			+ "]*)";
+
+	private static final Pattern EQUAL_PATTERN = relaxedComparator(ComparatorFormula.EQUAL);
+	private static final Pattern DISEQUAL_PATTERN = relaxedComparator(ComparatorFormula.DISEQUAL);
+
+	// constraints on the solved values
+	private static final int KEYWORD_VALUE = 1;
+	private static final int COLUMN_VALUE = 2;
+	private static final int FUNCTION_OPERAND = 4;
+	private static final int BEFORE_BRACKET = 8;
+
+	private static final Map<String, CompiledFormula> cache = new ConcurrentHashMap<>();
+
+	private final String formula;
+	private final Node[] nodes;
+	private final Text root;
+
+	private CompiledFormula(String formula, Node[] nodes, Text root) {
+		this.formula = formula;
+		this.nodes = nodes;
+		this.root = root;
+	}
+
+	/**
+	 * Get the compiled formula of a column field, compiling it if it was not
+	 * already done
+	 *
+	 * @param row
+	 * @param column
+	 * @param fieldHeader
+	 * @param formula     text of the formula
+	 * @return the compiled formula, or null if the formula cannot be compiled
+	 */
+	static CompiledFormula get(TableRow row, TableColumn column, String fieldHeader, String formula) {
+
+		String key = row.getSchema().getSheetName() + "|" + column.getId() + "|" + fieldHeader;
+
+		CompiledFormula compiled = cache.get(key);
+
+		// the same sheet name is used also by older versions of the schema
+		if (compiled == null || !compiled.formula.equals(formula)) {
+			compiled = compile(formula);
+			cache.put(key, compiled);
+		}
+
+		return compiled.isCompiled() ? compiled : null;
+	}
+
+	/**
+	 * Remove all the compiled formulas. To be called when the tables schemas are
+	 * reloaded.
+	 */
+	static void clearCache() {
+		cache.clear();
+	}
+
+	private boolean isCompiled() {
+		return root != null;
+	}
+
+	/**
+	 * Solve the formula for the row
+	 *
+	 * @param row
+	 * @param daoService
+	 * @return the solved formula, or null if the formula must be solved with
+	 *         {@link Formula#solve()} text passes
+	 */
+	String solve(TableRow row, ITableDaoService daoService) {
+
+		Evaluation evaluation = new Evaluation(row, daoService);
+
+		try {
+			return root.eval(evaluation).trim();
+		} catch (NotEquivalentException | FormulaException e) {
+			// the text passes will give the right result (or error message)
+			return null;
+		}
+	}
+
+	/**
+	 * Compile the formula
+	 *
+	 * @param formula
+	 * @return
+	 */
+	private static CompiledFormula compile(String formula) {
+
+		try {
+			return new Compiler(formula).compile();
+		} catch (NotEquivalentException | FormulaException e) {
+			LOGGER.debug("Formula " + formula + " cannot be compiled, it will be solved as text");
+			return new CompiledFormula(formula, null, null);
+		}
+	}
+
+	private static Pattern relaxedComparator(String operator) {
+		return Pattern.compile("\\(" + RELAXED_OPERAND + Pattern.quote(operator) + RELAXED_OPERAND + "\\)");
+	}
+
+	private static boolean isPlaceholder(char c) {
+		return c >= PLACEHOLDER_START && c <= PLACEHOLDER_END;
+	}
+
+	private static boolean isNameChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+	}
+
+	private static boolean isWordChar(char c) {
+		return isNameChar(c) || (c >= '0' && c <= '9');
+	}
+
+	/**
+	 * Check if a solved value can be put in the text without changing how the
+	 * following passes would interpret it
+	 *
+	 * @param value
+	 * @param flags
+	 * @return
+	 */
+	private static boolean isInert(String value, int flags) {
+
+		if ((flags & BEFORE_BRACKET) != 0
+				&& (value.isEmpty() || isNameChar(value.charAt(value.length() - 1))))
+			return false;
+
+		if ((flags & KEYWORD_VALUE) != 0
+				&& (value.contains(KeywordFormula.NULL_KEYWORD) || value.contains(KeywordFormula.CONCAT_KEYWORD)))
+			return false;
+
+		for (int i = 0; i < value.length(); ++i) {
+
+			char c = value.charAt(i);
+
+			switch (c) {
+			case '(':
+			case ')':
+			case '{':
+			case '}':
+			case '=':
+			case '!':
+			case '\n':
+			case '\r':
+			case '\u0085':
+			case '\u2028':
+			case '\u2029':
+				return false;
+			case '%':
+				if ((flags & (KEYWORD_VALUE | COLUMN_VALUE)) != 0)
+					return false;
+				break;
+			case ',':
+				if ((flags & FUNCTION_OPERAND) != 0)
+					return false;
+				break;
+			default:
+				if (isPlaceholder(c))
+					return false;
+				break;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Check if the text is an operand of a comparator, as accepted by
+	 * {@link FormulaFinder#findComparatorFormulas(String, String)}: letters and
+	 * numbers (possibly with a decimal dot) or nothing
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static boolean isVariable(String value) {
+
+		for (int i = 0; i < value.length(); ++i) {
+
+			char c = value.charAt(i);
+
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))
+				continue;
+
+			if (c == '.' && i > 0 && value.charAt(i - 1) >= '0' && value.charAt(i - 1) <= '9')
+				continue;
+
+			return false;
+		}
+
+		return true;
+	}
+
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * Values computed during a single evaluation of the formula. Each node is
+	 * solved only once, as it happens with the text replacement.
+	 */
+	private class Evaluation {
+
+		private final TableRow row;
+		private final ITableDaoService daoService;
+		private final String[] values;
+
+		public Evaluation(TableRow row, ITableDaoService daoService) {
+			this.row = row;
+			this.daoService = daoService;
+			this.values = new String[nodes.length];
+		}
+
+		public String value(int index) throws FormulaException {
+
+			String value = values[index];
+
+			if (value == null) {
+
+				Node node = nodes[index];
+				value = node.compute(this);
+
+				if (value == null || !isInert(value, node.flags))
+					throw NotEquivalentException.INSTANCE;
+
+				values[index] = value;
+			}
+
+			return value;
+		}
+	}
+
+	/**
+	 * Text made of constant parts and dynamic values
+	 */
+	private static class Text {
+
+		private final String[] literals;
+		private final int[] refs;
+
+		/**
+		 * Parse the text with placeholders
+		 *
+		 * @param shadow
+		 */
+		public Text(String shadow) {
+
+			List<String> literals = new ArrayList<>();
+			List<Integer> refs = new ArrayList<>();
+
+			int start = 0;
+			for (int i = 0; i < shadow.length(); ++i) {
+				char c = shadow.charAt(i);
+				if (isPlaceholder(c)) {
+					literals.add(shadow.substring(start, i));
+					refs.add(c - PLACEHOLDER_START);
+					start = i + 1;
+				}
+			}
+
+			literals.add(shadow.substring(start));
+
+			this.literals = literals.toArray(new String[literals.size()]);
+			this.refs = new int[refs.size()];
+			for (int i = 0; i < this.refs.length; ++i)
+				this.refs[i] = refs.get(i);
+		}
+
+		public String eval(Evaluation evaluation) throws FormulaException {
+
+			if (refs.length == 0)
+				return literals[0];
+
+			StringBuilder sb = new StringBuilder();
+
+			for (int i = 0; i < refs.length; ++i) {
+				sb.append(literals[i]);
+				sb.append(evaluation.value(refs[i]));
+			}
+
+			sb.append(literals[refs.length]);
+
+			return sb.toString();
+		}
+	}
+
+	private abstract static class Node {
+
+		private int flags;
+
+		public abstract String compute(Evaluation evaluation) throws FormulaException;
+	}
+
+	private static class KeywordNode extends Node {
+
+		private final KeywordFormula formula;
+
+		public KeywordNode(KeywordFormula formula) {
+			this.formula = formula;
+		}
+
+		@Override
+		public String compute(Evaluation evaluation) throws FormulaException {
+			return formula.solve();
+		}
+	}
+
+	private static class RowFormulaNode extends Node {
+
+		private final IFormula formula;
+
+		public RowFormulaNode(IFormula formula) {
+			this.formula = formula;
+		}
+
+		@Override
+		public String compute(Evaluation evaluation) throws FormulaException {
+			return formula.solve(evaluation.row);
+		}
+	}
+
+	private static class RelationNode extends Node {
+
+		private final RelationFormula formula;
+
+		public RelationNode(RelationFormula formula) {
+			this.formula = formula;
+		}
+
+		@Override
+		public String compute(Evaluation evaluation) throws FormulaException {
+			return formula.solve(evaluation.row, evaluation.daoService);
+		}
+	}
+
+	private static class ComparatorNode extends Node {
+
+		private final String operator;
+		private final Text left;
+		private final Text right;
+
+		public ComparatorNode(String operator, Text left, Text right) {
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public String compute(Evaluation evaluation) throws FormulaException {
+
+			String leftOperand = left.eval(evaluation);
+			String rightOperand = right.eval(evaluation);
+
+			// spaces are allowed only between the operands and the operator
+			int end = leftOperand.length();
+			while (end > 0 && isSpace(leftOperand.charAt(end - 1)))
+				end--;
+
+			int start = 0;
+			while (start < rightOperand.length() && isSpace(rightOperand.charAt(start)))
+				start++;
+
+			leftOperand = leftOperand.substring(0, end);
+			rightOperand = rightOperand.substring(start);
+
+			if (!isVariable(leftOperand) || !isVariable(rightOperand))
+				throw NotEquivalentException.INSTANCE;
+
+			boolean comparison = leftOperand.equalsIgnoreCase(rightOperand);
+
+			if (ComparatorFormula.DISEQUAL.equals(operator))
+				comparison = !comparison;
+
+			return comparison ? BooleanValue.getTrueValue() : BooleanValue.getFalseValue();
+		}
+	}
+
+	private static class FunctionNode extends Node {
+
+		private final String text;
+		private final String functionName;
+		private final Text[] operands;
+
+		public FunctionNode(String text, String functionName, Text[] operands) {
+			this.text = text;
+			this.functionName = functionName;
+			this.operands = operands;
+		}
+
+		@Override
+		public String compute(Evaluation evaluation) throws FormulaException {
+
+			List<String> values = new ArrayList<>(operands.length);
+			for (Text operand : operands)
+				values.add(operand.eval(evaluation));
+
+			return new FunctionFormula(text, functionName, values).solve();
+		}
+	}
+
+	/**
+	 * Runs the passes of {@link Formula#solve()} on the text with placeholders
+	 */
+	private static class Compiler {
+
+		private final String formula;
+		private final List<Node> nodes;
+		private String shadow;
+
+		public Compiler(String formula) {
+			this.formula = formula;
+			this.nodes = new ArrayList<>();
+			this.shadow = formula;
+		}
+
+		public CompiledFormula compile() throws FormulaException {
+
+			for (int i = 0; i < formula.length(); ++i) {
+				if (isPlaceholder(formula.charAt(i)))
+					throw NotEquivalentException.INSTANCE;
+			}
+
+			compileKeywords();
+			compileRowKeywords();
+			compileColumns();
+			compileRelations();
+			compileComparators();
+			compileFunctions();
+
+			return new CompiledFormula(formula, nodes.toArray(new Node[nodes.size()]), new Text(shadow));
+		}
+
+		private void compileKeywords() throws FormulaException {
+
+			for (IFormula f : FormulaFinder.findKeywordFormulas(shadow)) {
+
+				String unsolved = f.getUnsolvedFormula();
+
+				if (!shadow.contains(unsolved))
+					continue;
+
+				String replacement;
+				if (KeywordFormula.NULL_KEYWORD.equals(unsolved) || KeywordFormula.CONCAT_KEYWORD.equals(unsolved))
+					replacement = "";
+				else
+					replacement = add(new KeywordNode((KeywordFormula) f), KEYWORD_VALUE);
+
+				shadow = shadow.replace(unsolved, replacement);
+			}
+
+			markBrackets();
+		}
+
+		private void compileRowKeywords() throws FormulaException {
+
+			for (IFormula f : FormulaFinder.findRowKeywordFormulas(shadow))
+				replace(f.getUnsolvedFormula(), new RowFormulaNode(f), 0);
+
+			checkKeywordsBoundaries();
+			markBrackets();
+		}
+
+		/**
+		 * Keywords values glued to other text could create new column formulas or
+		 * keywords
+		 */
+		private void checkKeywordsBoundaries() {
+
+			for (int i = 0; i < shadow.length(); ++i) {
+
+				char c = shadow.charAt(i);
+
+				if (!isPlaceholder(c))
+					continue;
+
+				// a column formula always starts with %
+				int j = i - 1;
+				while (j >= 0 && (isWordChar(shadow.charAt(j)) || isPlaceholder(shadow.charAt(j))
+						|| shadow.charAt(j) == '.'))
+					j--;
+
+				if (j >= 0 && shadow.charAt(j) == '%')
+					throw NotEquivalentException.INSTANCE;
+
+				if ((nodes.get(c - PLACEHOLDER_START).flags & KEYWORD_VALUE) == 0)
+					continue;
+
+				if (i > 0 && (isWordChar(shadow.charAt(i - 1)) || isPlaceholder(shadow.charAt(i - 1))))
+					throw NotEquivalentException.INSTANCE;
+
+				if (i < shadow.length() - 1
+						&& (isWordChar(shadow.charAt(i + 1)) || isPlaceholder(shadow.charAt(i + 1))))
+					throw NotEquivalentException.INSTANCE;
+			}
+		}
+
+		private void compileColumns() throws FormulaException {
+
+			for (IFormula f : FormulaFinder.findColumnFormulas(shadow))
+				replace(f.getUnsolvedFormula(), new RowFormulaNode(f), COLUMN_VALUE);
+
+			markBrackets();
+		}
+
+		private void compileRelations() throws FormulaException {
+
+			for (IFormula f : FormulaFinder.findRelationFormulas(shadow, null)) {
+
+				String unsolved = f.getUnsolvedFormula();
+
+				// the relation would be parsed on the solved values
+				if (hasPlaceholders(unsolved))
+					throw NotEquivalentException.INSTANCE;
+
+				replace(unsolved, new RelationNode((RelationFormula) f), 0);
+			}
+
+			markBrackets();
+		}
+
+		private void compileComparators() throws FormulaException {
+
+			List<String> texts = new ArrayList<>();
+			List<String> operators = new ArrayList<>();
+
+			find(EQUAL_PATTERN, ComparatorFormula.EQUAL, texts, operators);
+			find(DISEQUAL_PATTERN, ComparatorFormula.DISEQUAL, texts, operators);
+
+			for (int i = 0; i < texts.size(); ++i) {
+
+				String text = texts.get(i);
+				String operator = operators.get(i);
+
+				if (!shadow.contains(text))
+					continue;
+
+				// constant comparison, solve it now if it is a real comparator
+				if (!hasPlaceholders(text)) {
+
+					FormulaList list = FormulaFinder.findComparatorFormulas(text, operator);
+
+					if (list.size() == 1 && list.get(0).getUnsolvedFormula().equals(text))
+						shadow = shadow.replace(text, list.get(0).solve());
+
+					continue;
+				}
+
+				int opIndex = text.indexOf(operator);
+				Text left = new Text(text.substring(1, opIndex));
+				Text right = new Text(text.substring(opIndex + operator.length(), text.length() - 1));
+
+				replace(text, new ComparatorNode(operator, left, right), 0);
+			}
+
+			markBrackets();
+		}
+
+		private void find(Pattern pattern, String operator, List<String> texts, List<String> operators) {
+
+			Matcher m = pattern.matcher(shadow);
+
+			while (m.find()) {
+				texts.add(m.group());
+				operators.add(operator);
+			}
+		}
+
+		private void compileFunctions() throws FormulaException {
+
+			for (String function : FUNCTIONS_ORDER) {
+
+				for (IFormula f : FormulaFinder.findFunctionFormulas(shadow, function)) {
+
+					FunctionFormula func = (FunctionFormula) f;
+					String text = func.getUnsolvedFormula();
+
+					if (!shadow.contains(text))
+						continue;
+
+					// commas in the values would change the operands
+					for (int i = 0; i < text.length(); ++i) {
+						char c = text.charAt(i);
+						if (isPlaceholder(c))
+							nodes.get(c - PLACEHOLDER_START).flags |= FUNCTION_OPERAND;
+					}
+
+					List<String> operands = func.getOperands();
+					Text[] texts = new Text[operands.size()];
+					for (int i = 0; i < texts.length; ++i)
+						texts[i] = new Text(operands.get(i));
+
+					replace(text, new FunctionNode(text, func.getFunctionName(), texts), 0);
+				}
+
+				markBrackets();
+			}
+		}
+
+		/**
+		 * Mark the values which are followed by an open bracket. If they end with
+		 * a letter they could become part of a function name or of a relation.
+		 */
+		private void markBrackets() {
+
+			for (int i = 0; i < shadow.length(); ++i) {
+
+				char c = shadow.charAt(i);
+
+				if (!isPlaceholder(c))
+					continue;
+
+				int j = i + 1;
+				while (j < shadow.length() && (isNameChar(shadow.charAt(j)) || isPlaceholder(shadow.charAt(j))))
+					j++;
+
+				if (j < shadow.length() && (shadow.charAt(j) == '(' || shadow.charAt(j) == '{'))
+					nodes.get(c - PLACEHOLDER_START).flags |= BEFORE_BRACKET;
+			}
+		}
+
+		private void replace(String text, Node node, int flags) {
+
+			if (shadow.contains(text))
+				shadow = shadow.replace(text, add(node, flags));
+		}
+
+		private String add(Node node, int flags) {
+
+			if (nodes.size() > PLACEHOLDER_END - PLACEHOLDER_START)
+				throw NotEquivalentException.INSTANCE;
+
+			node.flags = flags;
+			nodes.add(node);
+
+			return String.valueOf((char) (PLACEHOLDER_START + nodes.size() - 1));
+		}
+
+		private static boolean hasPlaceholders(String text) {
+
+			for (int i = 0; i < text.length(); ++i) {
+				if (isPlaceholder(text.charAt(i)))
+					return true;
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * The tree cannot reproduce the text passes
+	 */
+	private static class NotEquivalentException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final NotEquivalentException INSTANCE = new NotEquivalentException();
+
+		private NotEquivalentException() {
+			super(null, null, false, false);
+		}
+	}
+}
@@ -2,12 +2,14 @@ package formula;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import app_config.PropertiesReader;
 import providers.ITableDaoService;
 import table_skeleton.TableColumn;
 import table_skeleton.TableRow;
@@ -36,6 +38,14 @@ public class Formula {
 
 	private ITableDaoService daoService;
 
+	/**
+	 * Use of the compiled formulas, read from the configuration at the first
+	 * formula
+	 */
+	private static class Compiled {
+		private static final boolean ENABLED = PropertiesReader.isCompiledFormulaEnabled();
+	}
+
 	// private long debugTime;
 
 	public Formula(TableRow row, TableColumn column, String fieldHeader, ITableDaoService daoService) {
@@ -55,6 +65,15 @@ public class Formula {
 
 	}
 
+	/**
+	 * Remove the cached dependencies and the compiled formulas. To be called when
+	 * the tables schemas are reloaded.
+	 */
+	public static void clearCache() {
+		dependenciesCache = null;
+		CompiledFormula.clearCache();
+	}
+
 	/**
 	 * Get the number of dependencies in terms of \columnname.field
 	 * 
@@ -96,7 +115,34 @@ public class Formula {
 
 		if (formula == null || formula.isEmpty())
 			return "";
-		
+
+		// use the precompiled formula if possible, it avoids parsing the text
+		// for each row
+		CompiledFormula compiled = Compiled.ENABLED ? CompiledFormula.get(row, column, fieldHeader, formula) : null;
+		if (compiled != null) {
+
+			String solved = compiled.solve(row, daoService);
+
+			if (solved != null) {
+				this.solvedFormula = solved;
+				return solvedFormula;
+			}
+		}
+
+		return solveText();
+	}
+
+	/**
+	 * Solve the formula parsing its text
+	 * 
+	 * @return
+	 * @throws FormulaException
+	 */
+	String solveText() throws FormulaException {
+
+		if (formula == null || formula.isEmpty())
+			return "";
+
 		String value = formula;
 
 		// solve special characters
@@ -359,5 +405,10 @@ public class Formula {
 			return tableName.equals(cell.tableName) && columnId.equals(cell.columnId)
 					&& columnHeader.equals(cell.columnHeader);
 		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(tableName, columnId, columnHeader);
+		}
 	}
 }
@@ -0,0 +1,271 @@
+package formula;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import table_relations.Relation;
+import table_skeleton.TableColumn;
+import xlsx_reader.TableHeaders.XlsxHeader;
+import xlsx_reader.TableSchema;
+
+/**
+ * Dependencies between the columns of a {@link TableSchema} which are created
+ * by the formulas. A column depends on another one if one of its code, label or
+ * editable formulas contains %column.code/label, or if it contains a
+ * RELATION{parent,...} statement which is solved using the foreign key column
+ * of the parent.
+ *
+ * The columns are ordered such that each column comes after all the columns it
+ * depends on. If some formulas create a cycle, the columns of the cycle are put
+ * at the end in the schema order.
+ *
+ * @author shahaal
+ *
+ */
+public class FormulaDependencyGraph {
+
+	private static final Logger LOGGER = LogManager.getLogger(FormulaDependencyGraph.class);
+
+	private static final Pattern COLUMN_PATTERN = Pattern.compile("\\%(\\w+?)\\.(code|label)");
+	private static final Pattern RELATION_PATTERN = Pattern.compile(FormulaFinder.RELATION_REGEX);
+
+	// fields which are solved using the row values
+	private static final XlsxHeader[] HEADERS = new XlsxHeader[] {
+			XlsxHeader.CODE_FORMULA,
+			XlsxHeader.LABEL_FORMULA,
+			XlsxHeader.EDITABLE };
+
+	private final TableSchema schema;
+
+	// column index => indexes of the columns which use it
+	private final List<Set<Integer>> dependents;
+
+	private final List<TableColumn> order;
+	private final int[] position;
+	private final List<String> cyclicColumns;
+
+	/**
+	 * Build the graph of the schema
+	 *
+	 * @param schema
+	 */
+	public FormulaDependencyGraph(TableSchema schema) {
+
+		this.schema = schema;
+		this.dependents = new ArrayList<>();
+		this.order = new ArrayList<>();
+		this.position = new int[schema.size()];
+		this.cyclicColumns = new ArrayList<>();
+
+		Map<String, Integer> indexes = new HashMap<>();
+		for (int i = 0; i < schema.size(); ++i) {
+			indexes.put(schema.get(i).getId(), i);
+			dependents.add(new LinkedHashSet<Integer>());
+		}
+
+		for (int i = 0; i < schema.size(); ++i) {
+			for (String id : getReferencedColumns(schema.get(i))) {
+
+				Integer index = indexes.get(id);
+
+				// self references are solved with the previous value
+				if (index != null && index != i)
+					dependents.get(index).add(i);
+			}
+		}
+
+		sort();
+	}
+
+	/**
+	 * Get the ids of the columns which are used in the formulas of the column
+	 *
+	 * @param column
+	 * @return
+	 */
+	private Collection<String> getReferencedColumns(TableColumn column) {
+
+		Collection<String> ids = new LinkedHashSet<>();
+
+		for (XlsxHeader header : HEADERS) {
+
+			String formula = column.getFieldByHeader(header.getHeaderName());
+
+			if (formula == null || formula.isEmpty())
+				continue;
+
+			Matcher m = COLUMN_PATTERN.matcher(formula);
+			while (m.find())
+				ids.add(m.group(1));
+
+			m = RELATION_PATTERN.matcher(formula);
+			while (m.find()) {
+
+				String foreignKey = getForeignKey(m.group());
+
+				if (foreignKey != null)
+					ids.add(foreignKey);
+			}
+		}
+
+		return ids;
+	}
+
+	/**
+	 * Get the foreign key column used to solve a relation formula
+	 *
+	 * @param relationFormula
+	 * @return
+	 */
+	private String getForeignKey(String relationFormula) {
+
+		if (schema.getRelations() == null)
+			return null;
+
+		try {
+			RelationFormula formula = new RelationFormula(relationFormula, null);
+
+			Relation r = schema.getRelationByParentTable(formula.getParentTable());
+
+			return r == null ? null : r.getForeignKey();
+
+		} catch (FormulaException e) {
+			// the error is reported when the formula is solved
+			return null;
+		}
+	}
+
+	/**
+	 * Topological sort of the columns. Columns without dependencies between them
+	 * are kept in the schema order.
+	 */
+	private void sort() {
+
+		int[] inDegree = new int[schema.size()];
+
+		for (Set<Integer> deps : dependents) {
+			for (int dep : deps)
+				inDegree[dep]++;
+		}
+
+		PriorityQueue<Integer> ready = new PriorityQueue<>();
+		for (int i = 0; i < inDegree.length; ++i) {
+			if (inDegree[i] == 0)
+				ready.add(i);
+		}
+
+		boolean[] sorted = new boolean[schema.size()];
+
+		while (!ready.isEmpty()) {
+
+			int current = ready.poll();
+
+			sorted[current] = true;
+			position[current] = order.size();
+			order.add(schema.get(current));
+
+			for (int dep : dependents.get(current)) {
+				if (--inDegree[dep] == 0)
+					ready.add(dep);
+			}
+		}
+
+		// columns in cycles (or depending on them)
+		for (int i = 0; i < sorted.length; ++i) {
+			if (!sorted[i]) {
+				position[i] = order.size();
+				order.add(schema.get(i));
+				cyclicColumns.add(schema.get(i).getId());
+			}
+		}
+
+		if (!cyclicColumns.isEmpty())
+			LOGGER.error("Cyclic formulas dependencies found in " + schema.getSheetName() + " for the columns "
+					+ cyclicColumns);
+	}
+
+	/**
+	 * Get all the columns of the schema sorted by dependencies
+	 *
+	 * @return
+	 */
+	public List<TableColumn> getOrder() {
+		return Collections.unmodifiableList(order);
+	}
+
+	/**
+	 * Get the columns which need to be solved again when the values of some
+	 * columns change: the changed columns themselves and all the columns which
+	 * depend on them, directly or not
+	 *
+	 * @param changedColumns ids of the changed columns
+	 * @return the columns sorted by dependencies
+	 */
+	public List<TableColumn> getAffectedColumns(Collection<String> changedColumns) {
+
+		boolean[] affected = new boolean[schema.size()];
+		Deque<Integer> toVisit = new ArrayDeque<>();
+
+		for (int i = 0; i < schema.size(); ++i) {
+			if (changedColumns.contains(schema.get(i).getId())) {
+				affected[i] = true;
+				toVisit.add(i);
+			}
+		}
+
+		while (!toVisit.isEmpty()) {
+			for (int dep : dependents.get(toVisit.poll())) {
+				if (!affected[dep]) {
+					affected[dep] = true;
+					toVisit.add(dep);
+				}
+			}
+		}
+
+		TableColumn[] sorted = new TableColumn[order.size()];
+		for (int i = 0; i < affected.length; ++i) {
+			if (affected[i])
+				sorted[position[i]] = schema.get(i);
+		}
+
+		List<TableColumn> out = new ArrayList<>();
+		for (TableColumn column : sorted) {
+			if (column != null)
+				out.add(column);
+		}
+
+		return out;
+	}
+
+	/**
+	 * Check if some formulas depend on each other
+	 *
+	 * @return
+	 */
+	public boolean hasCycles() {
+		return !cyclicColumns.isEmpty();
+	}
+
+	/**
+	 * Get the ids of the columns which are part of a cycle (or depend on one)
+	 *
+	 * @return
+	 */
+	public List<String> getCyclicColumns() {
+		return Collections.unmodifiableList(cyclicColumns);
+	}
+}
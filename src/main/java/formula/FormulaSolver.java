@@ -1,8 +1,8 @@
 package formula;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.List;
 
 import providers.ITableDaoService;
 import providers.TableDaoService;
@@ -65,20 +65,41 @@ public class FormulaSolver {
 	 * @throws FormulaException 
 	 */
 	public ArrayList<Formula> solveAll(String fieldHeader) throws FormulaException {
+		return solve(row.getSchema().getFormulaDependencies().getOrder(), fieldHeader);
+	}
+	
+	/**
+	 * Solve the formulas related to a single column property
+	 * ({@link XlsxHeader}) only for the changed columns and for the
+	 * columns which depend on them (see {@link FormulaDependencyGraph}).
+	 * @param fieldHeader
+	 * @param changedColumns ids of the columns whose value was changed
+	 * @return
+	 * @throws FormulaException
+	 */
+	public ArrayList<Formula> solveDependents(String fieldHeader, Collection<String> changedColumns) 
+			throws FormulaException {
+		return solve(row.getSchema().getFormulaDependencies().getAffectedColumns(changedColumns), fieldHeader);
+	}
+	
+	/**
+	 * Solve the formulas of the columns in the given order
+	 * @param columns columns sorted by dependencies
+	 * @param fieldHeader
+	 * @return
+	 * @throws FormulaException
+	 */
+	private ArrayList<Formula> solve(List<TableColumn> columns, String fieldHeader) throws FormulaException {
 
 		ArrayList<Formula> solvedFormulas = new ArrayList<>();
 		
-		// get all the formulas
 		FormulaParser parser = new FormulaParser(row, daoService);
 		
-		ArrayList<Formula> formulas = parser.parse(fieldHeader);
+		// solve the formulas starting from the
+		// columns without dependencies
+		for (TableColumn column : columns) {
 
-		// sort the formulas based on their number of dependencies
-		Collections.sort(formulas, new DependenciesSorter());
-		
-		// solve all the formulas starting from the
-		// formulas with 0 dependencies
-		for (Formula formula : formulas) {
+			Formula formula = parser.parse(column, fieldHeader);
 
 			// solve the formula and get the resolved text
 			String solvedFormula = formula.solve();
@@ -95,26 +116,4 @@ public class FormulaSolver {
 		
 		return solvedFormulas;
 	}
-
-	/**
-	 * Sorter that sort the formulas based on their number of dependencies
-	 * @author avonva
-	 *
-	 */
-	private class DependenciesSorter implements Comparator<Formula> {
-
-		@Override
-		public int compare(Formula arg0, Formula arg1) {
-			
-			int dep0 = arg0.getDependenciesCount();
-			int dep1 = arg1.getDependenciesCount();
-			
-			if (dep0 == dep1)
-				return 0;
-			else if (dep0 < dep1)
-				return -1;
-			else
-				return 1;
-		}
-	}
 }
@@ -47,6 +47,26 @@ public class FunctionFormula implements IFormula {
 		compile();
 	}
 	
+	/**
+	 * Create an already compiled function (used by {@link CompiledFormula})
+	 * @param formula text of the function, used in the error messages
+	 * @param functionName
+	 * @param operands
+	 */
+	FunctionFormula(String formula, String functionName, List<String> operands) {
+		this.formula = formula;
+		this.functionName = functionName;
+		this.operands = operands;
+	}
+	
+	String getFunctionName() {
+		return functionName;
+	}
+	
+	List<String> getOperands() {
+		return operands;
+	}
+	
 	@Override
 	public String getUnsolvedFormula() {
 		return formula;
@@ -6,7 +6,6 @@ import org.apache.logging.log4j.Logger;
 import app_config.AppPaths;
 import providers.ITableDaoService;
 import table_relations.Relation;
-import table_skeleton.TableCell;
 import table_skeleton.TableRow;
 
 /**
@@ -88,6 +87,18 @@ public class RelationFormula implements IFormula {
 
 	@Override
 	public String solve(TableRow row) throws FormulaException {
+		return solve(row, daoService);
+	}
+
+	/**
+	 * Solve the formula using the given dao service
+	 * 
+	 * @param row
+	 * @param daoService
+	 * @return
+	 * @throws FormulaException
+	 */
+	String solve(TableRow row, ITableDaoService daoService) throws FormulaException {
 
 		// get the relation with the parent
 		Relation r = row.getSchema().getRelationByParentTable(parentTable);
@@ -98,9 +109,7 @@ public class RelationFormula implements IFormula {
 		}
 
 		// get the parent foreign key from the child row
-		TableCell colVal = row.get(r.getForeignKey());
-
-		if (colVal == null) {
+		if (!row.containsKey(r.getForeignKey())) {
 			LOGGER.warn("No value was found for relation " + r + " for formula " + formula + " in " + row);
 			return "";
 			// throw new FormulaException("Formula: " + formula + ": No parent data found
@@ -108,7 +117,7 @@ public class RelationFormula implements IFormula {
 		}
 
 		// get from the child row the foreign key for the parent
-		String foreignKey = row.get(r.getForeignKey()).getCode();
+		String foreignKey = row.getCode(r.getForeignKey());
 
 		// if no foreign key => error
 		if (foreignKey == null || foreignKey.isEmpty()) {
@@ -123,9 +132,7 @@ public class RelationFormula implements IFormula {
 		}
 
 		// get the required field and put it into the formula
-		TableCell parentValue = parent.get(parentColumnId);
-
-		if (parentValue == null) {
+		if (!parent.containsKey(parentColumnId)) {
 			throw new FormulaException("No parent data value found for " + parentColumnId + " in the row " + row
 					+ " with parent " + parent);
 		}
@@ -134,10 +141,10 @@ public class RelationFormula implements IFormula {
 
 		switch (parentFieldType) {
 		case "code":
-			solvedFormula = parentValue.getCode();
+			solvedFormula = parent.getCode(parentColumnId);
 			break;
 		case "label":
-			solvedFormula = parentValue.getLabel();
+			solvedFormula = parent.getLabel(parentColumnId);
 			break;
 		default:
 			throw new FormulaException("Field type " + parentFieldType + " not recognized");
@@ -0,0 +1,56 @@
+package global_utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers to write and read the strings of the binary files used as caches
+ * (schemas, picklists and spilled records). A string is written as its length
+ * in UTF-8 bytes followed by the bytes, -1 is the length of a null string.
+ *
+ * @author shahaal
+ *
+ */
+public class DataStreams {
+
+	/**
+	 * Write a string which can be null
+	 * 
+	 * @param out
+	 * @param value
+	 * @throws IOException
+	 */
+	public static void writeString(DataOutputStream out, String value) throws IOException {
+
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Read a string written with {@link #writeString(DataOutputStream, String)}
+	 * 
+	 * @param in
+	 * @return the string, or null if a null string was written
+	 * @throws IOException
+	 */
+	public static String readString(DataInputStream in) throws IOException {
+
+		int length = in.readInt();
+
+		if (length < 0)
+			return null;
+
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
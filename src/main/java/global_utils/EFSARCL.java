@@ -7,6 +7,7 @@ import java.sql.SQLException;
 import app_config.AppPaths;
 import table_database.Database;
 import table_database.DatabaseVersionException;
+import xml_catalog_reader.XmlLoader;
 
 /**
  * Component which initialises the EFSA Report Creator Library
@@ -28,6 +29,7 @@ public class EFSARCL {
 		FileUtils.createFolder(AppPaths.CONFIG_FOLDER);
 		FileUtils.createFolder(AppPaths.TEMP_FOLDER);
 		FileUtils.createFolder(AppPaths.XML_FOLDER);
+		FileUtils.createFolder(AppPaths.CACHE_FOLDER);
 		
 		checkConfigFiles(AppPaths.APP_CONFIG_FILE, AppPaths.CONFIG_FOLDER);
 		checkConfigFiles(AppPaths.MESSAGE_GDE2_XSD, AppPaths.CONFIG_FOLDER);
@@ -39,6 +41,9 @@ public class EFSARCL {
 		// update the database if needed
 		Database db = new Database();
 		db.update();
+		
+		// load the picklists in background if required
+		XmlLoader.warmUp();
 	}
 	
 	/**
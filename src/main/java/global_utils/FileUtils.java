@@ -1,6 +1,10 @@
 package global_utils;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -34,6 +38,26 @@ public class FileUtils {
 		}
 	}
 	
+	/**
+	 * Compute the CRC32 checksum of the contents of a file
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static long checksum(File file) throws IOException {
+		
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[1 << 16];
+		
+		try (InputStream in = new FileInputStream(file);) {
+			int read;
+			while ((read = in.read(buffer)) != -1)
+				crc.update(buffer, 0, read);
+		}
+		
+		return crc.getValue();
+	}
+	
 	/**
 	 * Generate a temporary file
 	 * @return
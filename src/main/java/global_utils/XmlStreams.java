@@ -0,0 +1,59 @@
+package global_utils;
+
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Shared factory of the {@link XMLStreamReader} used by the parsers of the
+ * .xml files, and helpers to read the text of the nodes from the buffer of the
+ * reader without creating strings.
+ *
+ * @author shahaal
+ *
+ */
+public class XmlStreams {
+
+	// configured once, the factory is only used to create the readers
+	private static final XMLInputFactory FACTORY = createFactory();
+
+	private static XMLInputFactory createFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return factory;
+	}
+
+	/**
+	 * Create a reader of an .xml stream. The adjacent text of a node is reported
+	 * as a single event
+	 *
+	 * @param input
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	public static XMLStreamReader createReader(InputStream input) throws XMLStreamException {
+		return FACTORY.createXMLStreamReader(input);
+	}
+
+	/**
+	 * Check if the current text of the reader contains only white spaces (as
+	 * {@link String#trim()})
+	 *
+	 * @param reader reader positioned on a text event
+	 * @return
+	 */
+	public static boolean isBlank(XMLStreamReader reader) {
+
+		char[] text = reader.getTextCharacters();
+		int end = reader.getTextStart() + reader.getTextLength();
+
+		for (int i = reader.getTextStart(); i < end; ++i) {
+			if (text[i] > ' ')
+				return false;
+		}
+
+		return true;
+	}
+}
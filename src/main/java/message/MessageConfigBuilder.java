@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.util.Collection;
 
 import app_config.AppPaths;
+import app_config.PropertiesReader;
 import global_utils.TimeUtils;
 import message_creator.OperationType;
 import providers.IFormulaService;
@@ -18,6 +19,8 @@ public class MessageConfigBuilder {
 	private Collection<TableRow> messageParents;
 	private OperationType opType;
 	private File out;
+	private boolean compressed;
+	private int compressionLevel;
 	
 	private IFormulaService formulaService;
 	
@@ -25,6 +28,8 @@ public class MessageConfigBuilder {
 			Collection<TableRow> messageParents) {
 		this.messageParents = messageParents;
 		this.formulaService = formulaService;
+		this.compressed = PropertiesReader.isCompressedExportEnabled();
+		this.compressionLevel = PropertiesReader.getExportCompressionLevel();
 	}
 	
 	/**
@@ -68,6 +73,31 @@ public class MessageConfigBuilder {
 		return out;
 	}
 	
+	/**
+	 * Zip the message while it is written. The .xml file is
+	 * replaced by a .zip file which contains it
+	 * @param compressed
+	 */
+	public void setCompressed(boolean compressed) {
+		this.compressed = compressed;
+	}
+	
+	public boolean isCompressed() {
+		return compressed;
+	}
+	
+	/**
+	 * Set the compression level of the zipped message
+	 * @param compressionLevel from 0 (no compression) to 9 (best compression)
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+	
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+	
 	/**
 	 * Get the configuration for the export
 	 * @return
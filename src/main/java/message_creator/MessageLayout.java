@@ -0,0 +1,220 @@
+package message_creator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import table_skeleton.TableColumn;
+import xlsx_reader.TableSchema;
+
+/**
+ * Ordered elements of the header and of the operation blocks of a message,
+ * read from the GDE2 .xsd and joined with the columns of the message
+ * configuration schema. The layouts are cached for the whole process: the .xsd
+ * is parsed again only if its size or last modification time change, and the
+ * columns are joined again only if the configuration schema is reloaded.
+ *
+ * @author shahaal
+ *
+ */
+public class MessageLayout {
+
+	private static final Logger LOGGER = LogManager.getLogger(MessageLayout.class);
+
+	// loaded layouts, using the absolute path of the .xsd as key
+	private static final Map<String, MessageLayout> cache = new HashMap<>();
+
+	private final long size;
+	private final long lastModified;
+	private final TableSchema configSchema;
+
+	private final List<Element> header;
+	private final List<Element> operation;
+
+	/**
+	 * Element of the .xsd with the related column of the configuration
+	 */
+	public static class Element {
+
+		private final String name;
+		private final TableColumn column;
+
+		private Element(String name, TableColumn column) {
+			this.name = name;
+			this.column = column;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Get the column of the configuration schema
+		 *
+		 * @return the column or null if the schema does not contain the element
+		 */
+		public TableColumn getColumn() {
+			return column;
+		}
+	}
+
+	private MessageLayout(long size, long lastModified, TableSchema configSchema, List<Element> header,
+			List<Element> operation) {
+		this.size = size;
+		this.lastModified = lastModified;
+		this.configSchema = configSchema;
+		this.header = header;
+		this.operation = operation;
+	}
+
+	/**
+	 * Get the layout of the messages defined by an .xsd file
+	 *
+	 * @param xsdFilename  the GDE2 .xsd
+	 * @param configSchema schema of the message configuration
+	 * @return
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws IOException
+	 */
+	public static synchronized MessageLayout get(String xsdFilename, TableSchema configSchema)
+			throws ParserConfigurationException, SAXException, IOException {
+
+		File file = new File(xsdFilename).getAbsoluteFile();
+
+		MessageLayout layout = cache.get(file.getPath());
+
+		if (layout != null && layout.size == file.length() && layout.lastModified == file.lastModified()) {
+
+			if (layout.configSchema == configSchema)
+				return layout;
+
+			// the schema was reloaded, the .xsd is still valid
+			layout = new MessageLayout(layout.size, layout.lastModified, configSchema,
+					join(getNames(layout.header), configSchema), join(getNames(layout.operation), configSchema));
+		} else {
+			layout = load(file, configSchema);
+		}
+
+		cache.put(file.getPath(), layout);
+
+		return layout;
+	}
+
+	/**
+	 * Remove the loaded layouts from memory
+	 */
+	public static synchronized void clearCache() {
+		cache.clear();
+	}
+
+	/**
+	 * Parse the .xsd and join its elements with the columns
+	 *
+	 * @param file
+	 * @param configSchema
+	 * @return
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws IOException
+	 */
+	private static MessageLayout load(File file, TableSchema configSchema)
+			throws ParserConfigurationException, SAXException, IOException {
+
+		long size = file.length();
+		long lastModified = file.lastModified();
+
+		XmlReader reader = new XmlReader(file);
+		Document xsd = reader.parse();
+
+		XsdParser parser = new XsdParser(xsd);
+
+		List<Element> header = join(getXsdNames(parser.getHeaderElements()), configSchema);
+		List<Element> operation = join(getXsdNames(parser.getOperationElements()), configSchema);
+
+		LOGGER.debug("Loaded the message layout of " + file + ": " + header.size() + " header elements, "
+				+ operation.size() + " operation elements");
+
+		return new MessageLayout(size, lastModified, configSchema, header, operation);
+	}
+
+	private static List<String> getXsdNames(List<XSElement> elements) {
+
+		List<String> names = new ArrayList<>();
+
+		for (XSElement element : elements) {
+
+			if (element.getName() == null) {
+				LOGGER.warn("Null element name found in the xsd file");
+				continue;
+			}
+
+			names.add(element.getName());
+		}
+
+		return names;
+	}
+
+	private static List<String> getNames(List<Element> elements) {
+
+		List<String> names = new ArrayList<>();
+
+		for (Element element : elements)
+			names.add(element.getName());
+
+		return names;
+	}
+
+	/**
+	 * Join the names of the elements with the columns of the schema
+	 *
+	 * @param names
+	 * @param configSchema
+	 * @return
+	 */
+	private static List<Element> join(List<String> names, TableSchema configSchema) {
+
+		List<Element> elements = new ArrayList<>();
+
+		for (String name : names) {
+
+			TableColumn column = configSchema.getById(name);
+
+			if (column == null)
+				LOGGER.warn("No column found in the message config schema for xsd field " + name);
+
+			elements.add(new Element(name, column));
+		}
+
+		return Collections.unmodifiableList(elements);
+	}
+
+	/**
+	 * Get the elements of the header, in the .xsd order
+	 *
+	 * @return
+	 */
+	public List<Element> getHeader() {
+		return header;
+	}
+
+	/**
+	 * Get the elements of the operation, in the .xsd order
+	 *
+	 * @return
+	 */
+	public List<Element> getOperation() {
+		return operation;
+	}
+}
@@ -1,31 +1,55 @@
 package message_creator;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
 import amend_manager.DatasetComparison;
 import app_config.AppPaths;
+import app_config.PropertiesReader;
 import message.MessageConfigBuilder;
 import table_skeleton.TableCell;
 import table_skeleton.TableColumn;
+import table_skeleton.RowXmlSerializer;
 import table_skeleton.TableRow;
+import xlsx_reader.TableSchemaList;
 
 /**
  * Export a collection of {@link TableRow} into an .xml file which contains also
  * an header and an operation block. The header and the operation blocks are
  * defined in the {@link AppPaths#MESSAGE_CONFIG_SHEET} schema.
  * 
+ * By default the message is written with an {@link XMLStreamWriter} over a
+ * buffered file channel, which escapes the header values and writes the
+ * records while they are consumed, without building the nodes as strings.
+ * 
+ * If required by the {@link MessageConfigBuilder}, the message is zipped in
+ * the same pass and the .xml file is replaced by a .zip file.
+ * 
  * @author avonva
  *
  */
@@ -33,14 +57,33 @@ public class MessageXmlBuilder implements AutoCloseable {
 
 	private static final Logger LOGGER = LogManager.getLogger(MessageXmlBuilder.class);
 
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+	/**
+	 * Writer mode, read from the configuration at the first export
+	 */
+	private static class Output {
+		private static final boolean STREAMING = PropertiesReader.isStreamingWriterEnabled();
+		private static final int BUFFER_SIZE = Math.max(8, PropertiesReader.getExportWriteBufferKb()) * 1024;
+	}
+
 	private int rowCounter; // number of processed rows
 
 	private File file; // file to create
 	private MessageConfigBuilder messageConfig; // configuration to create the message
-	private Document gde2Xsd; // schema of a generic message
+	private MessageLayout layout; // header and operation elements of a generic message
+	private TableRow config; // values of the header and operation elements
 
 	private PrintWriter writer; // writer of the file
 
+	private Writer out; // buffered channel of the file
+	private XMLStreamWriter xml; // xml writer over the channel (streaming mode)
+
+	private ZipEntry entry; // entry of the message if zipped
+	private long start; // when the writing started
+	private long millis; // time spent to write the file
+	private long rawBytes; // size of the message before compression
+
 	/**
 	 * Export a dataset into the selected file default operation type = Insert
 	 * 
@@ -52,14 +95,103 @@ public class MessageXmlBuilder implements AutoCloseable {
 	 */
 	public MessageXmlBuilder(File file, MessageConfigBuilder messageConfig)
 			throws ParserConfigurationException, SAXException, IOException {
+		this(file, messageConfig, Output.STREAMING);
+	}
+
+	/**
+	 * Export a dataset into the selected file choosing how the file is written
+	 * 
+	 * @param file
+	 * @param messageConfig
+	 * @param streaming     true to write the message with an
+	 *                      {@link XMLStreamWriter}, false to print the nodes
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws IOException
+	 */
+	public MessageXmlBuilder(File file, MessageConfigBuilder messageConfig, boolean streaming)
+			throws ParserConfigurationException, SAXException, IOException {
 
-		// get the gde2 .xsd
-		XmlReader reader = new XmlReader(AppPaths.MESSAGE_GDE2_XSD);
-		this.gde2Xsd = reader.parse();
+		// get the layout of the gde2 .xsd (parsed only once)
+		this.layout = MessageLayout.get(AppPaths.MESSAGE_GDE2_XSD,
+				TableSchemaList.getByName(AppPaths.MESSAGE_CONFIG_SHEET));
 
-		this.file = file;
 		this.messageConfig = messageConfig;
-		this.writer = new PrintWriter(file, "UTF-8");
+		this.file = messageConfig.isCompressed() ? getZipFile(file) : file;
+		this.start = System.currentTimeMillis();
+
+		openFile(file.getName());
+
+		if (streaming)
+			openStream();
+		else
+			this.writer = new PrintWriter(out);
+	}
+
+	/**
+	 * Get the .zip file which replaces an .xml file
+	 * 
+	 * @param xmlFile
+	 * @return
+	 */
+	private static File getZipFile(File xmlFile) {
+
+		String name = xmlFile.getName();
+
+		if (name.toLowerCase().endsWith(".xml"))
+			name = name.substring(0, name.length() - 4);
+
+		return new File(xmlFile.getParentFile(), name + ".zip");
+	}
+
+	/**
+	 * Open a buffered channel of the file, zipping the message in a single entry
+	 * if required
+	 * 
+	 * @param entryName name of the message in the .zip file
+	 * @throws IOException
+	 */
+	private void openFile(String entryName) throws IOException {
+
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+
+		if (!messageConfig.isCompressed()) {
+			this.out = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), Output.BUFFER_SIZE);
+			return;
+		}
+
+		ZipOutputStream zip = new ZipOutputStream(
+				new BufferedOutputStream(Channels.newOutputStream(channel), Output.BUFFER_SIZE));
+
+		try {
+			zip.setLevel(Math.min(Deflater.BEST_COMPRESSION,
+					Math.max(Deflater.NO_COMPRESSION, messageConfig.getCompressionLevel())));
+
+			this.entry = new ZipEntry(entryName);
+			zip.putNextEntry(entry);
+		} catch (IOException e) {
+			zip.close();
+			throw e;
+		}
+
+		this.out = Channels.newWriter(Channels.newChannel(zip), StandardCharsets.UTF_8.newEncoder(),
+				Output.BUFFER_SIZE);
+	}
+
+	/**
+	 * Open the xml writer over the buffered channel of the file
+	 * 
+	 * @throws IOException
+	 */
+	private void openStream() throws IOException {
+
+		try {
+			this.xml = OUTPUT_FACTORY.createXMLStreamWriter(out);
+		} catch (XMLStreamException e) {
+			out.close();
+			throw new IOException("Cannot create the xml writer for " + file, e);
+		}
 	}
 
 	/**
@@ -79,23 +211,124 @@ public class MessageXmlBuilder implements AutoCloseable {
 	 * @return a handle to the exported file
 	 */
 	public File export(Collection<DatasetComparison> data) throws IOException {
+		return export(data.iterator());
+	}
 
-		// print the header
-		printMessage(data);
+	/**
+	 * Export the records into an xml, consuming them while they are written.
+	 * 
+	 * @param data
+	 * @return a handle to the exported file
+	 * @throws IOException
+	 */
+	public File export(Iterator<DatasetComparison> data) throws IOException {
+
+		if (xml != null) {
+			try {
+				writeMessage(data);
+			} catch (XMLStreamException e) {
+				throw new IOException("Cannot write the message " + file, e);
+			}
+		} else {
+			// print the header
+			printMessage(data);
+		}
 
 		// close the writer
-		writer.close();
+		close();
 
 		return file;
 	}
 
+	/**
+	 * Write the entire message with the xml writer
+	 * 
+	 * @param data
+	 * @throws XMLStreamException
+	 * @throws IOException
+	 */
+	private void writeMessage(Iterator<DatasetComparison> data) throws XMLStreamException, IOException {
+
+		xml.writeStartDocument("UTF-8", "1.0");
+		xml.writeStartElement("message");
+
+		writeElementList(layout.getHeader(), "header");
+
+		xml.writeStartElement("payload");
+
+		writeElementList(layout.getOperation(), "operation");
+
+		xml.writeStartElement("dataset");
+
+		while (data.hasNext()) {
+			write(data.next());
+		}
+
+		xml.writeEndElement(); // dataset
+		xml.writeEndElement(); // payload
+		xml.writeEndElement(); // message
+		xml.writeEndDocument();
+	}
+
+	/**
+	 * Write a list of elements with their escaped values
+	 * 
+	 * @param list
+	 * @param nodeName
+	 * @throws XMLStreamException
+	 * @throws IOException
+	 */
+	private void writeElementList(List<MessageLayout.Element> list, String nodeName)
+			throws XMLStreamException, IOException {
+
+		xml.writeStartElement(nodeName);
+
+		for (Map.Entry<String, String> element : getElementValues(list).entrySet()) {
+			xml.writeStartElement(element.getKey());
+			xml.writeCharacters(element.getValue());
+			xml.writeEndElement();
+		}
+
+		xml.writeEndElement();
+	}
+
+	/**
+	 * Write a single row. The values of the record are written directly if the
+	 * record has no xml, otherwise the xml fragment is copied as it is into the
+	 * file
+	 * 
+	 * @param row
+	 * @throws XMLStreamException
+	 * @throws IOException
+	 */
+	private void write(DatasetComparison row) throws XMLStreamException, IOException {
+
+		logRow(row);
+
+		xml.writeStartElement("result");
+
+		if (row.getXmlRecord() == null && row.getRow() != null) {
+			TableRow record = row.getRow();
+			RowXmlSerializer.of(record.getSchema()).write(record, xml);
+		} else {
+
+			// close the start tag before copying the record
+			xml.writeCharacters("");
+			xml.flush();
+
+			out.write(row.getXmlRecord());
+		}
+
+		xml.writeEndElement();
+	}
+
 	/**
 	 * Print the entire message
 	 * 
 	 * @param root
 	 * @throws IOException
 	 */
-	private void printMessage(Collection<DatasetComparison> data) throws IOException {
+	private void printMessage(Iterator<DatasetComparison> data) throws IOException {
 
 		// add xml header
 		writer.println("<?xml version='1.0' encoding='UTF-8'?>");
@@ -117,7 +350,7 @@ public class MessageXmlBuilder implements AutoCloseable {
 	 * 
 	 * @throws IOException
 	 */
-	private void printPayload(Collection<DatasetComparison> data) throws IOException {
+	private void printPayload(Iterator<DatasetComparison> data) throws IOException {
 		writer.println("<payload>");
 		printOperation();
 		printDataset(data);
@@ -130,9 +363,7 @@ public class MessageXmlBuilder implements AutoCloseable {
 	 * @throws IOException
 	 */
 	private void printHeader() throws IOException {
-		XsdParser parser = new XsdParser(gde2Xsd);
-		List<XSElement> headerNodes = parser.getHeaderElements();
-		printElementList(headerNodes, "header");
+		printElementList(layout.getHeader(), "header");
 	}
 
 	/**
@@ -141,9 +372,7 @@ public class MessageXmlBuilder implements AutoCloseable {
 	 * @throws IOException
 	 */
 	private void printOperation() throws IOException {
-		XsdParser parser = new XsdParser(gde2Xsd);
-		List<XSElement> opNodes = parser.getOperationElements();
-		printElementList(opNodes, "operation");
+		printElementList(layout.getOperation(), "operation");
 	}
 
 	/**
@@ -153,30 +382,46 @@ public class MessageXmlBuilder implements AutoCloseable {
 	 * @param nodeName node that will contain all the node of the list in the .xml
 	 * @throws IOException
 	 */
-	private void printElementList(List<XSElement> list, String nodeName) throws IOException {
+	private void printElementList(List<MessageLayout.Element> list, String nodeName) throws IOException {
 
 		StringBuilder sb = new StringBuilder();
 
+		for (Map.Entry<String, String> element : getElementValues(list).entrySet()) {
+			// append the value of the configuration to the xml node
+			sb.append(getXmlNode(element.getKey(), element.getValue()));
+		}
+
+		String text = getXmlNode(nodeName, sb.toString());
+
+		writer.println(text);
+	}
+
+	/**
+	 * Get the values of the configuration for a list of elements, in the order
+	 * of the .xsd. The elements without value are skipped
+	 * 
+	 * @param list
+	 * @return element name => value
+	 * @throws IOException
+	 */
+	private Map<String, String> getElementValues(List<MessageLayout.Element> list) throws IOException {
+
+		Map<String, String> values = new LinkedHashMap<>();
+
 		// get the configuration of the element
-		TableRow config = messageConfig.getMessageConfig();
+		if (config == null)
+			config = messageConfig.getMessageConfig();
 
 		// for each element of the .xsd (in order!)
-		for (XSElement element : list) {
+		for (MessageLayout.Element element : list) {
 
 			String elementName = element.getName();
 
-			if (elementName == null) {
-				LOGGER.warn("Null element name found in the xsd file");
-				continue;
-			}
+			// get the schema of the column (missing columns are logged with the layout)
+			TableColumn column = element.getColumn();
 
-			// get the schema of the column
-			TableColumn column = config.getSchema().getById(elementName);
-
-			if (column == null) {
-				LOGGER.warn("No column found in the message config schema for xsd field " + elementName);
+			if (column == null)
 				continue;
-			}
 
 			if (!column.isPutInOutput(config)) {
 				LOGGER.debug("Skipping " + elementName + " since it should not be put in output");
@@ -200,13 +445,10 @@ public class MessageXmlBuilder implements AutoCloseable {
 				continue;
 			}
 
-			// append the value of the configuration to the xml node
-			sb.append(getXmlNode(elementName, nodeValue));
+			values.put(elementName, nodeValue);
 		}
 
-		String text = getXmlNode(nodeName, sb.toString());
-
-		writer.println(text);
+		return values;
 	}
 
 	/**
@@ -214,12 +456,12 @@ public class MessageXmlBuilder implements AutoCloseable {
 	 * 
 	 * @throws IOException
 	 */
-	private void printDataset(Collection<DatasetComparison> data) throws IOException {
+	private void printDataset(Iterator<DatasetComparison> data) throws IOException {
 
 		writer.println("<dataset>");
 
-		for (DatasetComparison comp : data) {
-			print(comp);
+		while (data.hasNext()) {
+			print(data.next());
 		}
 
 		writer.println("</dataset>");
@@ -232,15 +474,28 @@ public class MessageXmlBuilder implements AutoCloseable {
 	 */
 	private void print(DatasetComparison row) {
 
-		rowCounter++;
+		logRow(row);
 
-		StringBuilder sb = new StringBuilder();
-		sb.append(rowCounter).append(" - Exported row id=").append(row.getRowId());
+		String record = row.getXmlRecord();
 
-		LOGGER.debug(sb.toString());
+		if (record == null && row.getRow() != null)
+			record = row.getRow().toXml(false);
 
 		// print the row nodes into the file
-		writer.println(getXmlNode("result", row.getXmlRecord()));
+		writer.println(getXmlNode("result", record));
+	}
+
+	/**
+	 * Count an exported row
+	 * 
+	 * @param row
+	 */
+	private void logRow(DatasetComparison row) {
+
+		rowCounter++;
+
+		if (LOGGER.isDebugEnabled())
+			LOGGER.debug(rowCounter + " - Exported row id=" + row.getRowId());
 	}
 
 	/**
@@ -260,8 +515,77 @@ public class MessageXmlBuilder implements AutoCloseable {
 		return node.toString();
 	}
 
+	/**
+	 * Get the number of records written in the dataset
+	 * 
+	 * @return
+	 */
+	public int getExportedCount() {
+		return rowCounter;
+	}
+
+	/**
+	 * Get the size of the message before the compression (available after
+	 * closing the builder)
+	 * 
+	 * @return
+	 */
+	public long getRawBytes() {
+		return rawBytes;
+	}
+
+	/**
+	 * Get the size of the written file (available after closing the builder)
+	 * 
+	 * @return
+	 */
+	public long getFileBytes() {
+		return file.length();
+	}
+
+	/**
+	 * Get the milliseconds spent to write the file (available after closing the
+	 * builder)
+	 * 
+	 * @return
+	 */
+	public long getWriteMillis() {
+		return millis;
+	}
+
 	@Override
 	public void close() throws IOException {
-		this.writer.close();
+
+		if (this.writer != null)
+			this.writer.close();
+
+		if (this.xml != null) {
+
+			try {
+				this.xml.close();
+			} catch (XMLStreamException e) {
+				LOGGER.error("Cannot close the xml writer of " + file, e);
+			}
+
+			this.xml = null;
+		}
+
+		if (this.out != null) {
+
+			this.out.close();
+			this.out = null;
+
+			this.millis = System.currentTimeMillis() - start;
+
+			// the size of the entry is set when the zip is closed
+			this.rawBytes = entry != null ? entry.getSize() : file.length();
+
+			if (entry != null) {
+				LOGGER.info("Message " + file + " written in " + millis + " ms: " + rawBytes + " bytes compressed to "
+						+ getFileBytes() + " bytes");
+			} else {
+				LOGGER.info("Message " + file + " written in " + millis + " ms: " + rawBytes + " bytes");
+			}
+		}
 	}
 }
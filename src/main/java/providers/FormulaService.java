@@ -1,5 +1,7 @@
 package providers;
 
+import java.util.Collection;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -95,4 +97,24 @@ public class FormulaService implements IFormulaService {
 			LOGGER.error("Cannot solve row formulas", e);
 		}
 	}
+
+	@Override
+	public void updateFormulas(TableRow row, Collection<String> changedColumns) {
+
+		FormulaSolver solver = new FormulaSolver(row, daoService);
+
+		try {
+			solver.solveDependents(XlsxHeader.CODE_FORMULA.getHeaderName(), changedColumns);
+		} catch (FormulaException e) {
+			e.printStackTrace();
+			LOGGER.error("Cannot solve row formulas", e);
+		}
+
+		try {
+			solver.solveDependents(XlsxHeader.LABEL_FORMULA.getHeaderName(), changedColumns);
+		} catch (FormulaException e) {
+			e.printStackTrace();
+			LOGGER.error("Cannot solve row formulas", e);
+		}
+	}
 }
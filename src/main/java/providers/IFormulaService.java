@@ -1,5 +1,7 @@
 package providers;
 
+import java.util.Collection;
+
 import formula.FormulaException;
 import table_skeleton.TableColumn;
 import table_skeleton.TableRow;
@@ -23,6 +25,14 @@ public interface IFormulaService {
 	 */
 	public void updateFormulas(TableRow row);
 	
+	/**
+	 * Update the code and label formulas of the changed columns
+	 * and of the columns which depend on them
+	 * @param row
+	 * @param changedColumns ids of the columns whose value was changed
+	 */
+	public void updateFormulas(TableRow row, Collection<String> changedColumns);
+	
 	/**
 	 * Initialise the row with the default values
 	 * note that this will override all the values of the row
@@ -1,5 +1,10 @@
 package providers;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
 import table_skeleton.TableRow;
 import table_skeleton.TableRowList;
 import xlsx_reader.TableSchema;
@@ -27,6 +32,15 @@ public interface ITableDaoService {
 	 */
 	public TableRowList getAll(TableSchema schema);
 	
+	/**
+	 * Stream all the records of a table, reading them from the
+	 * database only while the stream is consumed. The stream
+	 * must be closed if it is not fully consumed
+	 * @param schema
+	 * @return
+	 */
+	public Stream<TableRow> streamAll(TableSchema schema);
+	
 	/**
 	 * Get a row by its id in the chosen table
 	 * @param schema
@@ -55,6 +69,27 @@ public interface ITableDaoService {
 	 */
 	public TableRowList getByParentId(TableSchema schema, String parentTable, int parentId, boolean solveFormulas, String order);
 	
+	/**
+	 * Stream rows by parent (see {@link #streamAll(TableSchema)})
+	 * @param schema
+	 * @param parentTable
+	 * @param parentId
+	 * @param solveFormulas
+	 * @param order
+	 * @return
+	 */
+	public Stream<TableRow> streamByParentId(TableSchema schema, String parentTable, int parentId, boolean solveFormulas, String order);
+	
+	/**
+	 * Get rows of many parents at once
+	 * @param schema
+	 * @param parentTable
+	 * @param parentIds
+	 * @param solveFormulas
+	 * @return the rows by parent id, with an empty list for the parents without children
+	 */
+	public Map<Integer, TableRowList> getByParentIds(TableSchema schema, String parentTable, Collection<Integer> parentIds, boolean solveFormulas);
+	
 	/**
 	 * Delete all the records with the same parent id in the selected schema.
 	 * @param schema
@@ -64,6 +99,19 @@ public interface ITableDaoService {
 	 */
 	public boolean deleteByParentId(TableSchema schema, String parentTable, int parentId);
 	
+	/**
+	 * Replace the children of a parent (with all their descendants) with the copy of
+	 * the children of another parent of the same table, in a single transaction and
+	 * without reading the rows
+	 * @param childSchema schema of the children
+	 * @param parentToCopy parent whose rows will be copied
+	 * @param parentToWrite parent whose rows will be replaced by the copied ones
+	 * @param overrides values which replace the copied ones, for each table (column id => value)
+	 * @return
+	 */
+	public boolean copyChildren(TableSchema childSchema, TableRow parentToCopy, TableRow parentToWrite,
+			Function<TableSchema, Map<String, String>> overrides);
+	
 	/**
 	 * Get rows by string field value
 	 * @param schema
@@ -73,6 +121,15 @@ public interface ITableDaoService {
 	 */
 	public TableRowList getByStringField(TableSchema schema, String fieldName, String value);
 	
+	/**
+	 * Stream rows by string field value (see {@link #streamAll(TableSchema)})
+	 * @param schema
+	 * @param fieldName
+	 * @param value
+	 * @return
+	 */
+	public Stream<TableRow> streamByStringField(TableSchema schema, String fieldName, String value);
+	
 	/**
 	 * Delete all the rows
 	 * @param list
@@ -59,6 +59,7 @@ import soap_interface.IGetAck;
 import soap_interface.IGetDataset;
 import soap_interface.IGetDatasetsList;
 import soap_interface.ISendMessage;
+import table_database.RowWriteQueue;
 import table_relations.Relation;
 import table_skeleton.TableCell;
 import table_skeleton.TableColumn;
@@ -178,6 +179,10 @@ public class ReportService implements IReportService {
 
 			Relation.emptyCache();
 
+			// the message is built from the database, save the last edits first
+			if (!RowWriteQueue.flush())
+				throw new ReportException("Cannot export the report, some edited rows were not saved in the database");
+
 			// get the previous report version to process amendments
 			try (ReportXmlBuilder creator = new ReportXmlBuilder(report, messageConfig, report.getRowIdFieldName(),
 					daoService, formulaService);) {
@@ -199,9 +204,14 @@ public class ReportService implements IReportService {
 	 */
 	private MessageResponse send(File file, OperationType opType) throws DetailedSOAPException, IOException {
 
+		long start = System.currentTimeMillis();
+
 		// send the report and get the response to the message
 		MessageResponse response = sendMessage.send(Config.getEnvironment(), User.getInstance(), file);
 
+		LOGGER.info("Message " + file.getName() + " of " + file.length() + " bytes sent in "
+				+ (System.currentTimeMillis() - start) + " ms");
+
 		return response;
 	}
 
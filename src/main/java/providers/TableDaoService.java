@@ -1,5 +1,10 @@
 package providers;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
 import table_database.ITableDao;
 import table_skeleton.TableRow;
 import table_skeleton.TableRowList;
@@ -29,6 +34,11 @@ public class TableDaoService implements ITableDaoService {
 	public TableRowList getAll(TableSchema schema) {
 		return dao.getAll(schema);
 	}
+	
+	@Override
+	public Stream<TableRow> streamAll(TableSchema schema) {
+		return dao.streamAll(schema);
+	}
 
 	@Override
 	public TableRow getById(TableSchema schema, int id) {
@@ -45,11 +55,26 @@ public class TableDaoService implements ITableDaoService {
 		return dao.getByParentId(schema, parentTable, parentId, solveFormulas, order);
 	}
 	
+	@Override
+	public Stream<TableRow> streamByParentId(TableSchema schema, String parentTable, int parentId, boolean solveFormulas, String order) {
+		return dao.streamByParentId(schema, parentTable, parentId, solveFormulas, order);
+	}
+	
+	@Override
+	public Map<Integer, TableRowList> getByParentIds(TableSchema schema, String parentTable, Collection<Integer> parentIds, boolean solveFormulas) {
+		return dao.getByParentIds(schema, parentTable, parentIds, solveFormulas);
+	}
+	
 	@Override
 	public TableRowList getByStringField(TableSchema schema, String fieldName, String value) {
 		return dao.getByStringField(schema, fieldName, value);
 	}
 	
+	@Override
+	public Stream<TableRow> streamByStringField(TableSchema schema, String fieldName, String value) {
+		return dao.streamByStringField(schema, fieldName, value);
+	}
+	
 	@Override
 	public boolean delete(TableRowList list) {
 		return dao.delete(list);
@@ -65,6 +90,12 @@ public class TableDaoService implements ITableDaoService {
 		return dao.deleteByParentId(schema, parentTable, parentId);
 	}
 	
+	@Override
+	public boolean copyChildren(TableSchema childSchema, TableRow parentToCopy, TableRow parentToWrite,
+			Function<TableSchema, Map<String, String>> overrides) {
+		return dao.copyChildren(childSchema, parentToCopy, parentToWrite, overrides);
+	}
+	
 	@Override
 	public boolean deleteByStringField(TableSchema schema, String fieldName, String value) {
 		return dao.deleteByStringField(schema, fieldName, value);
@@ -1,6 +1,7 @@
 package report;
 
 import java.util.Collection;
+import java.util.stream.Stream;
 
 import dataset.IDataset;
 import dataset.RCLDatasetStatus;
@@ -23,6 +24,19 @@ public interface EFSAReport extends IDataset {
 	 * @return
 	 */
 	public Collection<TableRow> getRecords(ITableDaoService daoService);
+	
+	/**
+	 * Stream all the report records (see {@link #getRecords(ITableDaoService)}).
+	 * By default the records are taken from {@link #getRecords(ITableDaoService)},
+	 * reports with many records should override it using the stream methods
+	 * of the {@link ITableDaoService}, in order to load one record at a time.
+	 * The stream must be closed after its use.
+	 * @param daoService
+	 * @return
+	 */
+	public default Stream<TableRow> streamRecords(ITableDaoService daoService) {
+		return getRecords(daoService).stream();
+	}
 
 	/**
 	 * Force the report to be editable
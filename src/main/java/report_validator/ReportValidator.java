@@ -14,6 +14,7 @@ import app_config.AppPaths;
 import global_utils.FileUtils;
 import html_viewer.HtmlViewer;
 import i18n_messages.Messages;
+import table_database.RowWriteQueue;
 
 /**
  * Validate a report and show the errors to the user
@@ -26,6 +27,14 @@ public abstract class ReportValidator {
 
 	private static final Logger LOGGER = LogManager.getLogger(ReportValidator.class);
 
+	/**
+	 * The report is validated reading its rows from the database, so the edits
+	 * which are still queued are saved first
+	 */
+	public ReportValidator() {
+		RowWriteQueue.flush();
+	}
+
 	/**
 	 * Show the found errors in the default browser
 	 * 
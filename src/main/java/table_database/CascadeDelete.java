@@ -0,0 +1,359 @@
+package table_database;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import app_config.PropertiesReader;
+import table_relations.Relation;
+import xlsx_reader.TableSchema;
+import xlsx_reader.TableSchemaList;
+
+/**
+ * Delete rows together with all their descendants following the relations of
+ * the tables. The ids of the descendants are collected level by level with
+ * chunked {@code in} queries, then the rows are deleted table by table (the
+ * children before their parents) with chunked {@code in} queries, all in a
+ * single transaction. The number of deleted rows and the time spent are kept
+ * for each table.
+ *
+ * @author shahaal
+ *
+ */
+public class CascadeDelete {
+
+	private static final Logger LOGGER = LogManager.getLogger(CascadeDelete.class);
+
+	// table => ids to delete
+	private final Map<String, Set<Integer>> ids;
+	private final Map<String, TableSchema> schemas;
+
+	// table => deleted rows and milliseconds
+	private final Map<String, Integer> counts;
+	private final Map<String, Long> millis;
+
+	private boolean ok;
+
+	private CascadeDelete() {
+		this.ids = new LinkedHashMap<>();
+		this.schemas = new HashMap<>();
+		this.counts = new LinkedHashMap<>();
+		this.millis = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Delete the rows of a table and all their descendants
+	 *
+	 * @param schema table of the rows
+	 * @param rowIds ids of the rows
+	 * @return the result of the operation
+	 */
+	public static CascadeDelete delete(TableSchema schema, Collection<Integer> rowIds) {
+
+		CascadeDelete delete = new CascadeDelete();
+
+		if (rowIds.isEmpty()) {
+			delete.ok = true;
+			return delete;
+		}
+
+		int chunkSize = Math.max(1, PropertiesReader.getDbInListSize());
+
+		long start = System.currentTimeMillis();
+
+		try (Connection con = Database.getConnection();) {
+
+			con.setAutoCommit(false);
+
+			try {
+
+				delete.collect(con, schema, rowIds, chunkSize);
+
+				for (String table : delete.getDeleteOrder())
+					delete.deleteRows(con, table, chunkSize);
+
+				con.commit();
+
+				delete.ok = true;
+
+			} catch (SQLException | IOException e) {
+				con.rollback();
+				throw e;
+			} finally {
+				con.setAutoCommit(true);
+			}
+
+		} catch (SQLException | IOException e) {
+			e.printStackTrace();
+			LOGGER.error("Cannot delete the rows of " + schema.getSheetName() + " and their children", e);
+			delete.ok = false;
+			delete.counts.clear();
+		}
+
+		// the cached parents are not valid anymore
+		for (String table : delete.ids.keySet())
+			Relation.removeFromCache(table);
+
+		if (delete.ok) {
+			LOGGER.info("Deleted " + delete.getTotalCount() + " rows in " + (System.currentTimeMillis() - start)
+					+ " ms: " + delete.getSummary());
+		}
+
+		return delete;
+	}
+
+	/**
+	 * Collect the ids of the rows and of all their descendants
+	 *
+	 * @param con
+	 * @param schema
+	 * @param rowIds
+	 * @param chunkSize
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	private void collect(Connection con, TableSchema schema, Collection<Integer> rowIds, int chunkSize)
+			throws SQLException, IOException {
+
+		ids.put(schema.getSheetName(), new LinkedHashSet<>(rowIds));
+		schemas.put(schema.getSheetName(), schema);
+
+		// tables with the ids whose children were not searched yet
+		Deque<String> tables = new ArrayDeque<>();
+		Map<String, List<Integer>> newIds = new HashMap<>();
+
+		tables.add(schema.getSheetName());
+		newIds.put(schema.getSheetName(), new ArrayList<>(rowIds));
+
+		while (!tables.isEmpty()) {
+
+			String table = tables.poll();
+			List<Integer> parentIds = newIds.remove(table);
+
+			TableSchema parentSchema = schemas.get(table);
+
+			for (Relation relation : parentSchema.getChildrenTables()) {
+
+				TableSchema childSchema = TableSchemaList.getByName(relation.getChild());
+
+				if (childSchema == null || childSchema.getById(relation.getForeignKey()) == null) {
+					LOGGER.warn("Skipping the relation " + relation + " without foreign key column");
+					continue;
+				}
+
+				String childTable = childSchema.getSheetName();
+				schemas.put(childTable, childSchema);
+
+				Set<Integer> known = ids.computeIfAbsent(childTable, k -> new LinkedHashSet<>());
+
+				String query = "select " + childSchema.getTableIdField() + " from APP." + childTable + " where "
+						+ relation.getForeignKey() + " in (" + getMarks(chunkSize) + ")";
+
+				List<Integer> found = new ArrayList<>();
+
+				try (PreparedStatement stmt = con.prepareStatement(query);) {
+
+					for (int start = 0; start < parentIds.size(); start += chunkSize) {
+
+						setChunk(stmt, parentIds, start, chunkSize);
+
+						try (ResultSet rs = stmt.executeQuery();) {
+							while (rs.next()) {
+								int id = rs.getInt(1);
+								if (known.add(id))
+									found.add(id);
+							}
+						}
+					}
+				}
+
+				// search also the children of the new rows
+				if (!found.isEmpty()) {
+
+					List<Integer> waiting = newIds.get(childTable);
+
+					if (waiting == null) {
+						newIds.put(childTable, found);
+						tables.add(childTable);
+					} else
+						waiting.addAll(found);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the tables in the order in which they should be emptied: the children
+	 * before their parents (the cycles are ignored)
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	private List<String> getDeleteOrder() throws IOException {
+
+		List<String> order = new ArrayList<>();
+		Set<String> visited = new HashSet<>();
+
+		for (String table : ids.keySet())
+			addChildrenFirst(table, visited, order);
+
+		return order;
+	}
+
+	private void addChildrenFirst(String table, Set<String> visited, List<String> order) throws IOException {
+
+		if (!visited.add(table))
+			return;
+
+		for (Relation relation : schemas.get(table).getChildrenTables()) {
+			if (ids.containsKey(relation.getChild()))
+				addChildrenFirst(relation.getChild(), visited, order);
+		}
+
+		order.add(table);
+	}
+
+	/**
+	 * Delete the collected rows of a table
+	 *
+	 * @param con
+	 * @param table
+	 * @param chunkSize
+	 * @throws SQLException
+	 */
+	private void deleteRows(Connection con, String table, int chunkSize) throws SQLException {
+
+		List<Integer> rowIds = new ArrayList<>(ids.get(table));
+
+		if (rowIds.isEmpty())
+			return;
+
+		long start = System.currentTimeMillis();
+
+		TableSchema schema = schemas.get(table);
+
+		String query = "delete from APP." + table + " where " + schema.getTableIdField() + " in ("
+				+ getMarks(chunkSize) + ")";
+
+		int count = 0;
+
+		try (PreparedStatement stmt = con.prepareStatement(query);) {
+
+			for (int i = 0; i < rowIds.size(); i += chunkSize) {
+				setChunk(stmt, rowIds, i, chunkSize);
+				count += stmt.executeUpdate();
+			}
+		}
+
+		counts.put(table, count);
+		millis.put(table, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Set the ids of a chunk, the last chunk is filled repeating its last id
+	 * such that all the chunks use the same statement
+	 */
+	private static void setChunk(PreparedStatement stmt, List<Integer> list, int start, int chunkSize)
+			throws SQLException {
+		for (int i = 0; i < chunkSize; ++i)
+			stmt.setInt(i + 1, list.get(Math.min(start + i, list.size() - 1)));
+	}
+
+	private static String getMarks(int count) {
+
+		StringBuilder marks = new StringBuilder();
+
+		for (int i = 0; i < count; ++i) {
+
+			if (i > 0)
+				marks.append(",");
+
+			marks.append("?");
+		}
+
+		return marks.toString();
+	}
+
+	/**
+	 * Check if all the rows were deleted
+	 *
+	 * @return
+	 */
+	public boolean isOk() {
+		return ok;
+	}
+
+	/**
+	 * Get the number of deleted rows of a table
+	 *
+	 * @param table
+	 * @return
+	 */
+	public int getDeletedCount(String table) {
+		Integer count = counts.get(table);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * Get the milliseconds spent to delete the rows of a table
+	 *
+	 * @param table
+	 * @return
+	 */
+	public long getMillis(String table) {
+		Long time = millis.get(table);
+		return time == null ? 0 : time;
+	}
+
+	/**
+	 * Get the total number of deleted rows
+	 *
+	 * @return
+	 */
+	public int getTotalCount() {
+
+		int total = 0;
+
+		for (int count : counts.values())
+			total += count;
+
+		return total;
+	}
+
+	/**
+	 * Get the deleted rows and the time for each table, for logging purposes
+	 *
+	 * @return
+	 */
+	public String getSummary() {
+
+		StringBuilder summary = new StringBuilder();
+
+		for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+
+			if (summary.length() > 0)
+				summary.append("; ");
+
+			summary.append(entry.getKey()).append("=").append(entry.getValue()).append(" (")
+					.append(millis.get(entry.getKey())).append(" ms)");
+		}
+
+		return summary.toString();
+	}
+}
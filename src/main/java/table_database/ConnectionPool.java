@@ -0,0 +1,624 @@
+package table_database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Bounded pool of physical JDBC connections. The connections handed out by
+ * {@link #getConnection()} are logical wrappers: closing them gives the
+ * physical connection back to the pool instead of closing it. Each physical
+ * connection also keeps a small LRU cache of its prepared statements, so that
+ * the same query issued many times (e.g. during imports) is compiled only once.
+ *
+ * @author shahaal
+ *
+ */
+public class ConnectionPool {
+
+	private static final Logger LOGGER = LogManager.getLogger(ConnectionPool.class);
+
+	private final String url;
+	private final int maxSize;
+	private final long timeoutMillis;
+	private final int statementCacheSize;
+
+	private final Deque<PooledConnection> idle = new ArrayDeque<>();
+
+	// number of physical connections currently open (idle + active)
+	private int opened;
+	private int active;
+	private boolean closed;
+
+	// incremented each time the database structure changes, to
+	// discard the statements compiled on the old structure
+	private int generation;
+
+	// metrics
+	private long acquired;
+	private long waits;
+	private long totalWaitNanos;
+	private long maxWaitNanos;
+	private long statementHits;
+	private long statementMisses;
+
+	/**
+	 * Create a new pool
+	 *
+	 * @param url                the jdbc url of the database
+	 * @param maxSize            maximum number of physical connections
+	 * @param timeoutMillis      maximum time to wait for a free connection
+	 * @param statementCacheSize number of prepared statements cached for each
+	 *                           connection (0 to disable the cache)
+	 */
+	public ConnectionPool(String url, int maxSize, long timeoutMillis, int statementCacheSize) {
+		this.url = url;
+		this.maxSize = Math.max(1, maxSize);
+		this.timeoutMillis = Math.max(0, timeoutMillis);
+		this.statementCacheSize = Math.max(0, statementCacheSize);
+	}
+
+	/**
+	 * Get a connection from the pool. If all the connections are in use and the
+	 * pool is full, wait until one is released.
+	 *
+	 * @return a logical connection, which must be closed to give it back
+	 * @throws SQLException if the pool was closed, the timeout expired or the
+	 *                      database is not reachable
+	 */
+	public Connection getConnection() throws SQLException {
+
+		PooledConnection pooled = null;
+		boolean create = false;
+
+		synchronized (this) {
+
+			long start = System.nanoTime();
+			long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			boolean waited = false;
+
+			while (true) {
+
+				if (closed)
+					throw new SQLException("The connection pool was closed");
+
+				if (!idle.isEmpty()) {
+					pooled = idle.pop();
+					break;
+				}
+
+				if (opened < maxSize) {
+					opened++;
+					create = true;
+					break;
+				}
+
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					throw new SQLException("Timeout of " + timeoutMillis
+							+ "ms expired while waiting for a database connection. Active connections=" + active);
+				}
+
+				waited = true;
+
+				try {
+					TimeUnit.NANOSECONDS.timedWait(this, remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted while waiting for a database connection", e);
+				}
+			}
+
+			if (waited) {
+				long wait = System.nanoTime() - start;
+				waits++;
+				totalWaitNanos += wait;
+				maxWaitNanos = Math.max(maxWaitNanos, wait);
+			}
+
+			active++;
+			acquired++;
+		}
+
+		if (create) {
+			try {
+				pooled = new PooledConnection(DriverManager.getConnection(url));
+			} catch (SQLException e) {
+				synchronized (this) {
+					opened--;
+					active--;
+					notifyAll();
+				}
+				throw e;
+			}
+		}
+
+		pooled.checkGeneration();
+
+		return pooled.open();
+	}
+
+	/**
+	 * Give back a physical connection to the pool
+	 *
+	 * @param pooled
+	 */
+	private void release(PooledConnection pooled) {
+
+		boolean reusable = pooled.reset();
+
+		synchronized (this) {
+
+			active--;
+
+			if (reusable && !closed) {
+				idle.push(pooled);
+			} else {
+				opened--;
+			}
+
+			notifyAll();
+		}
+
+		if (!reusable || isClosed())
+			pooled.closePhysical();
+	}
+
+	/**
+	 * Discard all the cached prepared statements. Call it after the structure of
+	 * the database was changed.
+	 */
+	public synchronized void clearStatementCache() {
+		generation++;
+	}
+
+	/**
+	 * Close all the idle connections and refuse new requests. Active connections
+	 * are closed as soon as they are released.
+	 */
+	public void close() {
+
+		Deque<PooledConnection> toClose;
+
+		synchronized (this) {
+
+			if (closed)
+				return;
+
+			closed = true;
+
+			toClose = new ArrayDeque<>(idle);
+			opened -= idle.size();
+			idle.clear();
+
+			notifyAll();
+		}
+
+		for (PooledConnection pooled : toClose)
+			pooled.closePhysical();
+
+		LOGGER.info("Connection pool closed. " + getStatistics());
+	}
+
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Get the number of connections currently in use
+	 *
+	 * @return
+	 */
+	public synchronized int getActiveCount() {
+		return active;
+	}
+
+	/**
+	 * Get the number of open connections which are not in use
+	 *
+	 * @return
+	 */
+	public synchronized int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * Get how many times a connection was requested
+	 *
+	 * @return
+	 */
+	public synchronized long getAcquiredCount() {
+		return acquired;
+	}
+
+	/**
+	 * Get how many requests had to wait for a free connection
+	 *
+	 * @return
+	 */
+	public synchronized long getWaitCount() {
+		return waits;
+	}
+
+	/**
+	 * Get the total time spent waiting for a free connection
+	 *
+	 * @return
+	 */
+	public synchronized long getTotalWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos);
+	}
+
+	/**
+	 * Get the longest time spent waiting for a free connection
+	 *
+	 * @return
+	 */
+	public synchronized long getMaxWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos);
+	}
+
+	public synchronized long getStatementCacheHits() {
+		return statementHits;
+	}
+
+	public synchronized long getStatementCacheMisses() {
+		return statementMisses;
+	}
+
+	/**
+	 * Get a summary of the pool metrics, for logging purposes
+	 *
+	 * @return
+	 */
+	public synchronized String getStatistics() {
+		return "active=" + active + "; idle=" + idle.size() + "; max=" + maxSize + "; acquired=" + acquired
+				+ "; waits=" + waits + "; totalWaitMs=" + TimeUnit.NANOSECONDS.toMillis(totalWaitNanos)
+				+ "; maxWaitMs=" + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + "; statementHits=" + statementHits
+				+ "; statementMisses=" + statementMisses;
+	}
+
+	private synchronized void countStatement(boolean hit) {
+		if (hit)
+			statementHits++;
+		else
+			statementMisses++;
+	}
+
+	private synchronized int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Unwrap the exception thrown by a reflective call
+	 *
+	 * @param e
+	 * @return
+	 */
+	private static Throwable unwrap(InvocationTargetException e) {
+		return e.getCause() != null ? e.getCause() : e;
+	}
+
+	/**
+	 * Key of the statements cache
+	 */
+	private static class StatementKey {
+
+		private final String sql;
+		private final int autoGeneratedKeys;
+
+		public StatementKey(String sql, int autoGeneratedKeys) {
+			this.sql = sql;
+			this.autoGeneratedKeys = autoGeneratedKeys;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+
+			if (!(obj instanceof StatementKey))
+				return false;
+
+			StatementKey other = (StatementKey) obj;
+			return autoGeneratedKeys == other.autoGeneratedKeys && sql.equals(other.sql);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(sql, autoGeneratedKeys);
+		}
+	}
+
+	/**
+	 * Prepared statement kept open across logical connections
+	 */
+	private static class CachedStatement {
+
+		private final PreparedStatement stmt;
+		private boolean inUse;
+
+		public CachedStatement(PreparedStatement stmt) {
+			this.stmt = stmt;
+		}
+	}
+
+	/**
+	 * Physical connection owned by the pool
+	 */
+	private class PooledConnection {
+
+		private final Connection physical;
+		private final LinkedHashMap<StatementKey, CachedStatement> statements;
+		private int statementsGeneration;
+		private LogicalConnection current;
+
+		public PooledConnection(Connection physical) {
+
+			this.physical = physical;
+			this.statementsGeneration = getGeneration();
+
+			// access ordered map => least recently used statement is evicted
+			this.statements = new LinkedHashMap<StatementKey, CachedStatement>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<StatementKey, CachedStatement> eldest) {
+
+					if (size() <= statementCacheSize || eldest.getValue().inUse)
+						return false;
+
+					closeQuietly(eldest.getValue().stmt);
+					return true;
+				}
+			};
+		}
+
+		/**
+		 * Discard the cached statements if the database structure changed
+		 */
+		public void checkGeneration() {
+
+			int gen = getGeneration();
+
+			if (gen == statementsGeneration)
+				return;
+
+			for (CachedStatement cached : statements.values())
+				closeQuietly(cached.stmt);
+
+			statements.clear();
+			statementsGeneration = gen;
+		}
+
+		/**
+		 * Create a new logical connection over the physical one
+		 *
+		 * @return
+		 */
+		public Connection open() {
+			current = new LogicalConnection(this);
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, current);
+		}
+
+		/**
+		 * Get a prepared statement, from the cache if possible
+		 *
+		 * @param sql
+		 * @param autoGeneratedKeys
+		 * @param logical           the proxy of the logical connection
+		 * @return
+		 * @throws SQLException
+		 */
+		public PreparedStatement prepare(String sql, int autoGeneratedKeys, Connection logical) throws SQLException {
+
+			if (statementCacheSize == 0)
+				return physical.prepareStatement(sql, autoGeneratedKeys);
+
+			StatementKey key = new StatementKey(sql, autoGeneratedKeys);
+
+			CachedStatement cached = statements.get(key);
+
+			// the same query is already in use on this connection (nested
+			// calls), use a throwaway statement
+			if (cached != null && cached.inUse) {
+				countStatement(false);
+				return physical.prepareStatement(sql, autoGeneratedKeys);
+			}
+
+			// statement closed by the database, compile it again
+			if (cached != null && cached.stmt.isClosed()) {
+				statements.remove(key);
+				cached = null;
+			}
+
+			countStatement(cached != null);
+
+			if (cached == null) {
+				cached = new CachedStatement(physical.prepareStatement(sql, autoGeneratedKeys));
+				statements.put(key, cached);
+			}
+
+			cached.inUse = true;
+
+			return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+					new Class<?>[] { PreparedStatement.class }, new LogicalStatement(cached, logical));
+		}
+
+		/**
+		 * Bring the connection back to its default state
+		 *
+		 * @return true if the connection can be reused
+		 */
+		public boolean reset() {
+
+			for (CachedStatement cached : statements.values())
+				cached.inUse = false;
+
+			try {
+
+				if (physical.isClosed())
+					return false;
+
+				if (!physical.getAutoCommit()) {
+					physical.rollback();
+					physical.setAutoCommit(true);
+				}
+
+				physical.clearWarnings();
+
+				return true;
+
+			} catch (SQLException e) {
+				LOGGER.warn("Discarding pooled connection which cannot be reset", e);
+				return false;
+			}
+		}
+
+		public void closePhysical() {
+
+			for (CachedStatement cached : statements.values())
+				closeQuietly(cached.stmt);
+
+			statements.clear();
+
+			try {
+				physical.close();
+			} catch (SQLException e) {
+				// the database may have already been shut down
+			}
+		}
+
+		private void closeQuietly(PreparedStatement stmt) {
+			try {
+				stmt.close();
+			} catch (SQLException e) {
+			}
+		}
+	}
+
+	/**
+	 * Connection handed out to the callers
+	 */
+	private class LogicalConnection implements InvocationHandler {
+
+		private final PooledConnection pooled;
+		private boolean closed;
+
+		public LogicalConnection(PooledConnection pooled) {
+			this.pooled = pooled;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			String name = method.getName();
+
+			switch (name) {
+			case "close":
+				if (!closed) {
+					closed = true;
+					release(pooled);
+				}
+				return null;
+			case "isClosed":
+				return closed || pooled.physical.isClosed();
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "Pooled" + pooled.physical.toString();
+			default:
+				break;
+			}
+
+			if (closed)
+				throw new SQLException("Connection is closed");
+
+			if (name.equals("prepareStatement") && args.length <= 2 && args[0] instanceof String) {
+
+				if (args.length == 1)
+					return pooled.prepare((String) args[0], java.sql.Statement.NO_GENERATED_KEYS, (Connection) proxy);
+
+				if (args[1] instanceof Integer)
+					return pooled.prepare((String) args[0], (Integer) args[1], (Connection) proxy);
+			}
+
+			try {
+				return method.invoke(pooled.physical, args);
+			} catch (InvocationTargetException e) {
+				throw unwrap(e);
+			}
+		}
+	}
+
+	/**
+	 * Cached statement handed out to the callers
+	 */
+	private static class LogicalStatement implements InvocationHandler {
+
+		private final CachedStatement cached;
+		private final Connection connection;
+		private boolean closed;
+
+		public LogicalStatement(CachedStatement cached, Connection connection) {
+			this.cached = cached;
+			this.connection = connection;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			switch (method.getName()) {
+			case "close":
+				if (!closed) {
+					closed = true;
+					try {
+						cached.stmt.clearParameters();
+						cached.stmt.clearBatch();
+					} finally {
+						cached.inUse = false;
+					}
+				}
+				return null;
+			case "isClosed":
+				return closed || cached.stmt.isClosed();
+			case "getConnection":
+				return connection;
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			default:
+				break;
+			}
+
+			if (closed)
+				throw new SQLException("Statement is closed");
+
+			try {
+				return method.invoke(cached.stmt, args);
+			} catch (InvocationTargetException e) {
+				throw unwrap(e);
+			}
+		}
+	}
+}
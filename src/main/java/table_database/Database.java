@@ -32,6 +32,9 @@ public class Database {
 	private static final String DB_URL = "jdbc:derby:" + AppPaths.DB_FOLDER;
 	private static final String CLOSE_DB_URL = DB_URL + ";shutdown=true";
 
+	// pool shared by all the daos, created on the first request
+	private static ConnectionPool pool;
+
 	private IDatabaseBuilder dbBuilder;
 
 	public Database(IDatabaseBuilder dbBuilder) {
@@ -124,6 +127,9 @@ public class Database {
 			DatabaseUpdater upd = new DatabaseUpdater(dbBuilder);
 			upd.update(oldSchema, newSchema);
 
+			// statements compiled on the old structure are not valid anymore
+			clearStatementCache();
+
 			// update the version with the current
 			this.updateVersion(PropertiesReader.getAppVersion());
 		} else {
@@ -252,6 +258,12 @@ public class Database {
 
 		LOGGER.info("Shutting down database");
 
+		// save the edited rows which are still in the queue
+		RowWriteQueue.shutdown();
+
+		// close the pooled connections before stopping the engine
+		closePool();
+
 		try {
 			DriverManager.getConnection(CLOSE_DB_URL);
 		} catch (SQLException e) {
@@ -265,7 +277,43 @@ public class Database {
 	 * @throws SQLException
 	 */
 	public static Connection getConnection() throws SQLException {
-		Connection con = DriverManager.getConnection(DB_URL);
-		return con;
+		return getConnectionPool().getConnection();
+	}
+
+	/**
+	 * Get the pool which provides the database connections. It is created if it
+	 * does not exist yet or if it was closed by a previous shutdown.
+	 * 
+	 * @return
+	 */
+	public static synchronized ConnectionPool getConnectionPool() {
+
+		if (pool == null || pool.isClosed()) {
+			pool = new ConnectionPool(DB_URL, PropertiesReader.getDbPoolSize(), PropertiesReader.getDbPoolTimeout(),
+					PropertiesReader.getDbStatementCacheSize());
+		}
+
+		return pool;
+	}
+
+	/**
+	 * Discard the prepared statements cached by the pool. Needed when the
+	 * structure of the tables changes.
+	 */
+	public static synchronized void clearStatementCache() {
+		if (pool != null)
+			pool.clearStatementCache();
+	}
+
+	/**
+	 * Close all the pooled connections
+	 */
+	private static synchronized void closePool() {
+
+		if (pool == null)
+			return;
+
+		pool.close();
+		pool = null;
 	}
 }
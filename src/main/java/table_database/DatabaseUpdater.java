@@ -53,6 +53,9 @@ public class DatabaseUpdater {
 				LOGGER.info("Creating new table " + newTable.getSheetName());
 				addTable(newTable);
 			}
+
+			// the statements of the table need to be computed again
+			TablePlan.invalidate(newTable.getSheetName());
 		}
 
 		LOGGER.info("Database updated!");
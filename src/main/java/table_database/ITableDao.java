@@ -2,6 +2,10 @@ package table_database;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import table_skeleton.TableRow;
 import table_skeleton.TableRowList;
@@ -30,6 +34,13 @@ public interface ITableDao {
 	 * @return
 	 */
 	public boolean update(TableRow row);
+	
+	/**
+	 * Update a group of rows (also of different tables) in a single transaction
+	 * @param rows
+	 * @return true if all the rows were updated
+	 */
+	public boolean updateAll(Collection<TableRow> rows);
 
 	/**
 	 * Delete all the rows from the table
@@ -45,6 +56,19 @@ public interface ITableDao {
 	 */
 	public boolean deleteByParentId(TableSchema schema, String parentTable, int parentId);
 	
+	/**
+	 * Replace the children of a parent (with all their descendants) with the copy of
+	 * the children of another parent of the same table, in a single transaction and
+	 * without reading the rows
+	 * @param childSchema schema of the children
+	 * @param parentToCopy parent whose rows will be copied
+	 * @param parentToWrite parent whose rows will be replaced by the copied ones
+	 * @param overrides values which replace the copied ones, for each table (column id => value)
+	 * @return
+	 */
+	public boolean copyChildren(TableSchema childSchema, TableRow parentToCopy, TableRow parentToWrite,
+			Function<TableSchema, Map<String, String>> overrides);
+	
 	/**
 	 * Get a row from the result set
 	 * @param rs
@@ -64,6 +88,17 @@ public interface ITableDao {
 	 */
 	public TableRowList getByParentId(TableSchema schema, String parentTable, int parentId, boolean solveFormulas, String order);
 	
+	/**
+	 * Get all the rows that have as parent one of the {@code parentIds} in the parent table {@code parentTable},
+	 * with a query for each chunk of parents instead of a query for each parent
+	 * @param schema
+	 * @param parentTable
+	 * @param parentIds
+	 * @param solveFormulas
+	 * @return the rows by parent id, with an empty list for the parents without children
+	 */
+	public Map<Integer, TableRowList> getByParentIds(TableSchema schema, String parentTable, Collection<Integer> parentIds, boolean solveFormulas);
+	
 	/**
 	 * Get all the rows from the table
 	 * @param row
@@ -78,6 +113,12 @@ public interface ITableDao {
 	 */
 	public boolean delete(TableSchema schema, int rowId);
 	
+	/**
+	 * Remove the rows of a list (all of the same table) together with
+	 * all their children, in a single transaction
+	 * @param list
+	 * @return
+	 */
 	public boolean delete(TableRowList list);
 
 	/**
@@ -100,4 +141,35 @@ public interface ITableDao {
 	 * @return
 	 */
 	public TableRowList getByStringField(TableSchema schema, String fieldName, String value);
+	
+	/**
+	 * Stream all the rows from the table. The rows are created only while
+	 * the stream is consumed. The stream must be closed if it is not
+	 * fully consumed
+	 * @param schema
+	 * @return
+	 */
+	public Stream<TableRow> streamAll(TableSchema schema);
+	
+	/**
+	 * Stream all the rows that has as parent the {@code parentId} in the parent table {@code parentTable}
+	 * (see {@link #streamAll(TableSchema)})
+	 * @param schema
+	 * @param parentTable
+	 * @param parentId
+	 * @param solveFormulas
+	 * @param order
+	 * @return
+	 */
+	public Stream<TableRow> streamByParentId(TableSchema schema, String parentTable, int parentId, boolean solveFormulas, String order);
+	
+	/**
+	 * Stream all the rows that matches the fieldName with value
+	 * (see {@link #streamAll(TableSchema)})
+	 * @param schema
+	 * @param fieldName
+	 * @param value
+	 * @return
+	 */
+	public Stream<TableRow> streamByStringField(TableSchema schema, String fieldName, String value);
 }
@@ -0,0 +1,249 @@
+package table_database;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import app_config.AppPaths;
+import table_skeleton.PicklistCells;
+import table_skeleton.TableCell;
+import table_skeleton.TableColumn;
+import table_skeleton.TableRow;
+import xlsx_reader.ColumnSlots;
+import xlsx_reader.TableSchema;
+import xml_catalog_reader.Selection;
+import xml_catalog_reader.XmlContents;
+import xml_catalog_reader.XmlLoader;
+
+/**
+ * Create the {@link TableRow}s of a {@link TableSchema} from a result set. The
+ * position of each column in the result set and in the row, and the kind of
+ * each column are computed once for each schema and result set structure, so
+ * that the values of the rows are read without searching the columns by name.
+ *
+ * @author shahaal
+ *
+ */
+class RowMapper {
+
+	private static final Logger LOGGER = LogManager.getLogger(RowMapper.class);
+
+	private static final int FOREIGN_KEY = 0;
+	private static final int PICKLIST = 1;
+	private static final int PLAIN = 2;
+
+	// table name => mapper of the last result set structure
+	private static final Map<String, RowMapper> mappers = new ConcurrentHashMap<>();
+
+	private final TableSchema schema;
+	private final ColumnSlots slots;
+	private final String[] labels;
+
+	// position of the id in the result set and in the row
+	private final int idIndex;
+	private final int idSlot;
+
+	// for each column: position in the result set (0 if not present), kind and
+	// position in the row
+	private final String[] ids;
+	private final String[] picklistKeys;
+	private final int[] indexes;
+	private final int[] kinds;
+	private final int[] rowSlots;
+
+	private RowMapper(TableSchema schema, ColumnSlots slots, String[] labels) throws SQLException {
+
+		this.schema = schema;
+		this.slots = slots;
+		this.labels = labels;
+
+		// result set column => position (the names are not case sensitive)
+		Map<String, Integer> positions = new HashMap<>(labels.length * 2);
+		for (int i = labels.length - 1; i >= 0; --i)
+			positions.put(labels[i].toUpperCase(Locale.ROOT), i + 1);
+
+		Integer id = positions.get(schema.getTableIdField().toUpperCase(Locale.ROOT));
+
+		if (id == null)
+			throw new SQLException("Column " + schema.getTableIdField() + " not found in the result set of "
+					+ schema.getSheetName());
+
+		this.idIndex = id;
+		this.idSlot = slots.indexOf(schema.getTableIdField());
+
+		int size = schema.size();
+
+		this.ids = new String[size];
+		this.picklistKeys = new String[size];
+		this.indexes = new int[size];
+		this.kinds = new int[size];
+		this.rowSlots = new int[size];
+
+		for (int i = 0; i < size; ++i) {
+
+			TableColumn column = schema.get(i);
+
+			ids[i] = column.getId();
+			rowSlots[i] = slots.indexOf(column.getId());
+
+			Integer index = positions.get(column.getId().toUpperCase(Locale.ROOT));
+			indexes[i] = index == null ? 0 : index;
+
+			if (index == null)
+				LOGGER.debug("Column " + column.getId() + " of " + schema.getSheetName() + " not in the result set");
+
+			if (column.isForeignKey())
+				kinds[i] = FOREIGN_KEY;
+			else if (column.isPicklist()) {
+				kinds[i] = PICKLIST;
+				picklistKeys[i] = column.getPicklistKey();
+			} else
+				kinds[i] = PLAIN;
+		}
+	}
+
+	/**
+	 * Get the mapper of a result set of a schema
+	 *
+	 * @param schema
+	 * @param rs
+	 * @return
+	 * @throws SQLException if the result set does not contain the id of the
+	 *                      table
+	 */
+	public static RowMapper of(TableSchema schema, ResultSet rs) throws SQLException {
+
+		ResultSetMetaData meta = rs.getMetaData();
+
+		String[] labels = new String[meta.getColumnCount()];
+		for (int i = 0; i < labels.length; ++i)
+			labels[i] = meta.getColumnLabel(i + 1);
+
+		ColumnSlots slots = schema.getColumnSlots();
+
+		RowMapper mapper = mappers.get(schema.getSheetName());
+
+		// same schema with the same columns and the same result set structure
+		if (mapper != null && mapper.schema == schema && mapper.slots == slots
+				&& Arrays.equals(mapper.labels, labels))
+			return mapper;
+
+		mapper = new RowMapper(schema, slots, labels);
+
+		mappers.put(schema.getSheetName(), mapper);
+
+		return mapper;
+	}
+
+	/**
+	 * Create the row of the current position of the result set
+	 *
+	 * @param rs
+	 * @param solveFormulas true to compute the automatic values of the row
+	 * @return
+	 * @throws SQLException
+	 */
+	public TableRow map(ResultSet rs, boolean solveFormulas) throws SQLException {
+
+		// here we need all the columns because we also
+		// compute composite fields
+		TableRow row = new TableRow(schema);
+
+		// put the id
+		row.putTextAt(idSlot, schema.getTableIdField(), String.valueOf(rs.getInt(idIndex)));
+
+		for (int i = 0; i < ids.length; ++i) {
+
+			// column not selected
+			if (indexes[i] == 0)
+				continue;
+
+			switch (kinds[i]) {
+			case FOREIGN_KEY:
+
+				// we don't need the description for foreign id
+				// (code and label are the same)
+				row.putTextAt(rowSlots[i], ids[i], String.valueOf(rs.getInt(indexes[i])));
+				break;
+
+			case PICKLIST:
+
+				String code = rs.getString(indexes[i]);
+
+				// if no value go to the next field
+				if (code != null)
+					row.putAt(rowSlots[i], ids[i], getPicklistCell(i, code));
+				break;
+
+			default:
+
+				String value = rs.getString(indexes[i]);
+
+				// if simple element, then it is sufficient the
+				// description (which is the label), stored once
+				if (value != null)
+					row.putTextAt(rowSlots[i], ids[i], value);
+				break;
+			}
+		}
+
+		// solve automatic fields
+		if (solveFormulas)
+			row.updateFormulas();
+
+		return row;
+	}
+
+	/**
+	 * Get the cell of a picklist code, with both code and description
+	 *
+	 * @param column position of the column
+	 * @param code
+	 * @return
+	 */
+	private TableCell getPicklistCell(int column, String code) {
+
+		if (code.isEmpty())
+			return new TableCell();
+
+		String picklistKey = picklistKeys[column];
+
+		// get the description from the .xml using the code
+		XmlContents contents = XmlLoader.getByPicklistKey(picklistKey);
+
+		if (contents == null) {
+
+			LOGGER.error("IMPORTANT: Check that the picklist " + picklistKey + " is in your " + AppPaths.XML_FOLDER
+					+ " folder. Note that also the root node of the xml should have " + "the name " + picklistKey
+					+ ". Putting an empty value.");
+
+			return new TableCell();
+		}
+
+		Selection selection = contents.getElementByCode(code);
+
+		if (selection == null) {
+
+			LOGGER.error("IMPORTANT: The element " + code + " is missing in the picklist " + picklistKey + " in the "
+					+ AppPaths.XML_FOLDER + " folder. Putting an empty value.");
+
+			return new TableCell();
+		}
+
+		TableCell cell = PicklistCells.get(picklistKey, selection);
+
+		// the shared cells already show the code if there is no label
+		if (!cell.isShared() && cell.getLabel().isEmpty())
+			cell.setLabel(cell.getCode());
+
+		return cell;
+	}
+}
@@ -0,0 +1,20 @@
+package table_database;
+
+import java.util.Collection;
+
+import table_skeleton.TableRow;
+
+/**
+ * Notified when the edits queued in the {@link RowWriteQueue} cannot be saved
+ * and are discarded. It can be called by the background thread of the queue.
+ * 
+ * @author shahaal
+ *
+ */
+public interface RowWriteErrorListener {
+	
+	/**
+	 * @param rows copies of the rows whose edits were not saved
+	 */
+	public void rowsNotSaved(Collection<TableRow> rows);
+}
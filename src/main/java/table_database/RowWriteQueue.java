@@ -0,0 +1,292 @@
+package table_database;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import app_config.PropertiesReader;
+import table_skeleton.TableRow;
+
+/**
+ * Write-behind queue for the rows edited in the tables. A copy of the edited
+ * row is queued and saved in the database by a background thread after a short
+ * delay, so that the interface does not wait for the disk. More edits of the
+ * same row made in the meanwhile are saved with a single update, and all the
+ * queued rows are saved in a single transaction. If the transaction fails the
+ * copies are queued again, up to {@link #MAX_ATTEMPTS} times, then they are
+ * discarded and the {@link RowWriteErrorListener}s are notified. The changes of
+ * the edited row are cleared only after its copy was saved, when the row is
+ * queued again.
+ *
+ * @author shahaal
+ *
+ */
+public class RowWriteQueue {
+
+	private static final Logger LOGGER = LogManager.getLogger(RowWriteQueue.class);
+
+	// table and id => last copy of the row
+	private static final Map<String, TableRow> pending = new LinkedHashMap<>();
+
+	// writes of a group of rows before discarding them
+	private static final int MAX_ATTEMPTS = 3;
+
+	// saved copies kept for the rows which are not queued again
+	private static final int MAX_SAVED_ROWS = 500;
+
+	// table and id => last copy of the row which was saved, until the edited
+	// row is queued again (the oldest copies are removed)
+	private static final Map<String, TableRow> saved = new LinkedHashMap<String, TableRow>() {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, TableRow> eldest) {
+			return size() > MAX_SAVED_ROWS;
+		}
+	};
+
+	// table and id => failed writes of the queued copy
+	private static final Map<String, Integer> failures = new HashMap<>();
+
+	private static final List<RowWriteErrorListener> listeners = new CopyOnWriteArrayList<>();
+
+	// only one group of rows is written at a time
+	private static final Object writeLock = new Object();
+
+	private static ScheduledExecutorService executor;
+	private static boolean scheduled;
+
+	/**
+	 * Delay, read from the configuration at the first edit
+	 */
+	private static class Delay {
+		private static final int MILLIS = PropertiesReader.getDbWriteBehindDelay();
+	}
+
+	/**
+	 * Save the changes of a row. The row is saved immediately if the queue is
+	 * disabled or if the row was never saved
+	 *
+	 * @param row
+	 */
+	public static void enqueue(TableRow row) {
+
+		// the update saves also the rows already queued
+		if (Delay.MILLIS <= 0 || row.getDatabaseId() < 0) {
+			row.update();
+			return;
+		}
+
+		synchronized (pending) {
+
+			String key = getKey(row);
+
+			// the columns already saved by a previous copy are not written again
+			TableRow savedCopy = saved.remove(key);
+
+			if (savedCopy != null)
+				row.clearSavedChanges(savedCopy);
+
+			// the copy is saved, the row can be edited again
+			TableRow copy = new TableRow(row);
+
+			TableRow previous = pending.put(key, copy);
+
+			if (previous != null)
+				copy.mergeChanges(previous);
+
+			schedule();
+		}
+	}
+
+	/**
+	 * Schedule the writing of the queued rows, if not already scheduled
+	 */
+	private static void schedule() {
+
+		if (scheduled)
+			return;
+
+		getExecutor().schedule(RowWriteQueue::write, Delay.MILLIS, TimeUnit.MILLISECONDS);
+		scheduled = true;
+	}
+
+	/**
+	 * Add a listener called when queued edits are discarded
+	 *
+	 * @param listener
+	 */
+	public static void addErrorListener(RowWriteErrorListener listener) {
+		listeners.add(listener);
+	}
+
+	public static void removeErrorListener(RowWriteErrorListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Save all the queued rows and wait the end of the operation
+	 *
+	 * @return true if all the queued rows were saved
+	 */
+	public static boolean flush() {
+		return write();
+	}
+
+	/**
+	 * Save all the queued rows and stop the background thread (it is started
+	 * again at the next edit)
+	 */
+	public static void shutdown() {
+
+		flush();
+
+		Collection<TableRow> lost;
+
+		synchronized (pending) {
+
+			lost = new ArrayList<>(pending.values());
+
+			pending.clear();
+			saved.clear();
+			failures.clear();
+
+			if (executor != null) {
+				executor.shutdown();
+				executor = null;
+				scheduled = false;
+			}
+		}
+
+		notifyLost(lost);
+	}
+
+	/**
+	 * Get the number of rows waiting to be saved
+	 *
+	 * @return
+	 */
+	public static int getPendingCount() {
+		synchronized (pending) {
+			return pending.size();
+		}
+	}
+
+	/**
+	 * Write the queued rows
+	 *
+	 * @return true if all the rows were saved
+	 */
+	private static boolean write() {
+
+		synchronized (writeLock) {
+
+			Map<String, TableRow> rows;
+
+			synchronized (pending) {
+
+				scheduled = false;
+
+				if (pending.isEmpty())
+					return true;
+
+				rows = new LinkedHashMap<>(pending);
+				pending.clear();
+			}
+
+			TableDao dao = new TableDao();
+
+			boolean ok = dao.updateAll(rows.values());
+
+			Collection<TableRow> lost = new ArrayList<>();
+
+			synchronized (pending) {
+
+				// the edited rows compare their values with the saved copies
+				if (ok) {
+					saved.putAll(rows);
+					failures.keySet().removeAll(rows.keySet());
+					return true;
+				}
+
+				// queue again the rows, keeping the edits made in the meanwhile
+				for (Map.Entry<String, TableRow> entry : rows.entrySet()) {
+
+					String key = entry.getKey();
+					TableRow newer = pending.get(key);
+
+					int attempts = failures.merge(key, 1, Integer::sum);
+
+					// the error will not pass by itself
+					if (attempts >= MAX_ATTEMPTS) {
+						pending.remove(key);
+						failures.remove(key);
+						lost.add(entry.getValue());
+						continue;
+					}
+
+					if (newer != null)
+						newer.mergeChanges(entry.getValue());
+					else
+						pending.put(key, entry.getValue());
+				}
+
+				if (!pending.isEmpty()) {
+
+					LOGGER.error("Cannot save " + pending.size() + " edited rows, retrying later");
+
+					if (executor != null)
+						schedule();
+				}
+			}
+
+			notifyLost(lost);
+
+			return false;
+		}
+	}
+
+	/**
+	 * Notify the listeners that the edits of some rows were discarded
+	 *
+	 * @param rows
+	 */
+	private static void notifyLost(Collection<TableRow> rows) {
+
+		if (rows.isEmpty())
+			return;
+
+		LOGGER.error("Cannot save " + rows.size() + " edited rows, the changes are lost");
+
+		for (RowWriteErrorListener listener : listeners)
+			listener.rowsNotSaved(rows);
+	}
+
+	private static String getKey(TableRow row) {
+		return row.getSchema().getSheetName() + "_" + row.getDatabaseId();
+	}
+
+	private static ScheduledExecutorService getExecutor() {
+
+		if (executor == null) {
+			executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "row-write-behind");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		return executor;
+	}
+}
@@ -0,0 +1,432 @@
+package table_database;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import table_relations.Relation;
+import table_skeleton.TableColumn;
+import table_skeleton.TableRow;
+import xlsx_reader.TableSchema;
+import xlsx_reader.TableSchemaList;
+
+/**
+ * Copy the children of a parent row, with all their descendants, into another
+ * parent row of the same table without reading the rows. Each table is copied
+ * with a single {@code insert into ... select}; the foreign keys of the copied
+ * rows are replaced with the new ids of their parents through a mapping table
+ * (old id, new id) of the connection. Everything is done in a single
+ * transaction.
+ * <p>
+ * The new ids are assigned in the order of the old ids (the table is locked
+ * during the copy), so that the i-th new id is the copy of the i-th old id.
+ *
+ * @author shahaal
+ *
+ */
+class SubtreeCopy {
+
+	private static final Logger LOGGER = LogManager.getLogger(SubtreeCopy.class);
+
+	private static final String MAP_TABLE = "SESSION.RCL_COPY_MAP";
+
+	// sql state of an already declared temporary table
+	private static final String TABLE_EXISTS = "X0Y32";
+
+	private final Connection con;
+	private final Function<TableSchema, Map<String, String>> overrides;
+
+	// tables of the copy, parents first
+	private final List<TableSchema> tables;
+
+	// tables whose rows are in the mapping table
+	private final Set<String> mappedTables;
+
+	// table => copied rows
+	private final Map<String, Integer> counts;
+
+	private SubtreeCopy(Connection con, Function<TableSchema, Map<String, String>> overrides) {
+		this.con = con;
+		this.overrides = overrides;
+		this.tables = new ArrayList<>();
+		this.mappedTables = new HashSet<>();
+		this.counts = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Replace the children (and their descendants) of a parent with the copy of
+	 * the children of another parent of the same table
+	 *
+	 * @param childSchema   table of the children
+	 * @param parentToCopy  parent whose rows will be copied
+	 * @param parentToWrite parent whose rows will be replaced by the copied ones
+	 * @param overrides     values which replace the copied values, for each
+	 *                      table (column id => value)
+	 * @return true if the rows were copied
+	 */
+	public static boolean copy(TableSchema childSchema, TableRow parentToCopy, TableRow parentToWrite,
+			Function<TableSchema, Map<String, String>> overrides) {
+
+		boolean ok = true;
+
+		long start = System.currentTimeMillis();
+
+		String parentTable = parentToCopy.getSchema().getSheetName();
+
+		SubtreeCopy copy = null;
+
+		try (Connection con = Database.getConnection();) {
+
+			con.setAutoCommit(false);
+
+			try {
+
+				copy = new SubtreeCopy(con, overrides);
+				copy.collectTables(childSchema);
+				copy.prepareMap();
+
+				// the parent is the first mapped row
+				copy.addToMap(parentTable, Collections.singletonList(parentToCopy.getDatabaseId()),
+						Collections.singletonList(parentToWrite.getDatabaseId()));
+
+				// remove the current children of the parent (with their children)
+				try (PreparedStatement stmt = con.prepareStatement("delete from APP." + childSchema.getSheetName()
+						+ " where " + Relation.foreignKeyFromParent(parentTable) + " = ?");) {
+					stmt.setInt(1, parentToWrite.getDatabaseId());
+					stmt.executeUpdate();
+				}
+
+				for (TableSchema table : copy.tables)
+					copy.copyTable(table);
+
+				con.commit();
+
+			} catch (SQLException | IOException e) {
+				con.rollback();
+				throw e;
+			} finally {
+				con.setAutoCommit(true);
+			}
+
+		} catch (SQLException | IOException e) {
+			e.printStackTrace();
+			LOGGER.error("Cannot copy the children of " + parentTable + " " + parentToCopy.getDatabaseId() + " into "
+					+ parentToWrite.getDatabaseId(), e);
+			ok = false;
+		}
+
+		if (copy != null) {
+
+			// the cached parents are not valid anymore
+			for (TableSchema table : copy.tables)
+				Relation.removeFromCache(table.getSheetName());
+
+			if (ok) {
+				LOGGER.info("Copied the children of " + parentTable + " " + parentToCopy.getDatabaseId() + " into "
+						+ parentToWrite.getDatabaseId() + " in " + (System.currentTimeMillis() - start) + " ms: "
+						+ copy.counts);
+			}
+		}
+
+		return ok;
+	}
+
+	/**
+	 * Get the tables which descend from the child table, such that each table
+	 * comes after all its parents
+	 *
+	 * @param childSchema
+	 * @throws IOException
+	 */
+	private void collectTables(TableSchema childSchema) throws IOException {
+
+		Map<String, TableSchema> subtree = new LinkedHashMap<>();
+
+		Deque<TableSchema> queue = new ArrayDeque<>();
+		queue.add(childSchema);
+		subtree.put(childSchema.getSheetName(), childSchema);
+
+		while (!queue.isEmpty()) {
+
+			TableSchema table = queue.poll();
+
+			for (Relation relation : table.getDirectChildren()) {
+
+				TableSchema child = TableSchemaList.getByName(relation.getChild());
+
+				if (child != null && !subtree.containsKey(child.getSheetName())) {
+					subtree.put(child.getSheetName(), child);
+					queue.add(child);
+				}
+			}
+		}
+
+		// a table is ready when all its parents of the copy are ready
+		while (!subtree.isEmpty()) {
+
+			TableSchema next = null;
+
+			for (TableSchema table : subtree.values()) {
+
+				boolean parentsReady = true;
+
+				for (Relation relation : getRelations(table)) {
+					if (subtree.containsKey(relation.getParent()) && !relation.getParent().equals(table.getSheetName()))
+						parentsReady = false;
+				}
+
+				if (parentsReady) {
+					next = table;
+					break;
+				}
+			}
+
+			if (next == null)
+				throw new IOException("Cyclic relations found among the tables " + subtree.keySet());
+
+			subtree.remove(next.getSheetName());
+			tables.add(next);
+		}
+	}
+
+	private static Collection<Relation> getRelations(TableSchema schema) {
+		return schema.getRelations() == null ? Collections.emptyList() : schema.getRelations();
+	}
+
+	/**
+	 * Create the mapping table of the connection, or empty it if it was already
+	 * created
+	 *
+	 * @throws SQLException
+	 */
+	private void prepareMap() throws SQLException {
+
+		try (Statement stmt = con.createStatement();) {
+
+			try {
+				stmt.execute("declare global temporary table " + MAP_TABLE
+						+ " (TABLE_NAME varchar(128) not null, OLD_ID integer not null, NEW_ID integer not null)"
+						+ " on commit preserve rows not logged");
+			} catch (SQLException e) {
+
+				if (!TABLE_EXISTS.equals(e.getSQLState()))
+					throw e;
+
+				stmt.executeUpdate("delete from " + MAP_TABLE);
+			}
+		}
+	}
+
+	/**
+	 * Add the new ids of the copied rows of a table to the mapping table
+	 *
+	 * @param table
+	 * @param oldIds
+	 * @param newIds
+	 * @throws SQLException
+	 */
+	private void addToMap(String table, List<Integer> oldIds, List<Integer> newIds) throws SQLException {
+
+		try (PreparedStatement stmt = con
+				.prepareStatement("insert into " + MAP_TABLE + " (TABLE_NAME, OLD_ID, NEW_ID) values (?,?,?)");) {
+
+			for (int i = 0; i < oldIds.size(); ++i) {
+				stmt.setString(1, table);
+				stmt.setInt(2, oldIds.get(i));
+				stmt.setInt(3, newIds.get(i));
+				stmt.addBatch();
+			}
+
+			stmt.executeBatch();
+		}
+
+		mappedTables.add(table);
+	}
+
+	/**
+	 * Copy the rows of a table whose parents were copied
+	 *
+	 * @param schema
+	 * @throws SQLException
+	 */
+	private void copyTable(TableSchema schema) throws SQLException {
+
+		String table = schema.getSheetName();
+		String idField = schema.getTableIdField();
+
+		// copy the rows which have at least a copied parent
+		Map<String, String> mapped = new LinkedHashMap<>();
+
+		StringBuilder from = new StringBuilder(" from APP.").append(table).append(" T");
+		StringBuilder where = new StringBuilder();
+
+		for (Relation relation : getRelations(schema)) {
+
+			if (!mappedTables.contains(relation.getParent()) || mapped.containsKey(relation.getForeignKey()))
+				continue;
+
+			String alias = "M" + mapped.size();
+			mapped.put(relation.getForeignKey(), alias);
+
+			from.append(" left join ").append(MAP_TABLE).append(" ").append(alias).append(" on ").append(alias)
+					.append(".TABLE_NAME = '").append(relation.getParent()).append("' and ").append(alias)
+					.append(".OLD_ID = T.").append(relation.getForeignKey());
+
+			where.append(where.length() == 0 ? " where " : " or ").append(alias).append(".NEW_ID is not null");
+		}
+
+		if (where.length() == 0) {
+			counts.put(table, 0);
+			mappedTables.add(table);
+			return;
+		}
+
+		String selection = from.toString() + where;
+
+		// lock the table such that the new ids follow the order of the old ids
+		try (Statement stmt = con.createStatement();) {
+			stmt.execute("lock table APP." + table + " in exclusive mode");
+		}
+
+		int maxId = getInt("select max(" + idField + ") from APP." + table);
+		List<Integer> oldIds = getIds("select T." + idField + selection + " order by T." + idField);
+
+		if (oldIds.isEmpty()) {
+			counts.put(table, 0);
+			mappedTables.add(table);
+			return;
+		}
+
+		StringBuilder columns = new StringBuilder();
+		StringBuilder values = new StringBuilder();
+
+		for (TableColumn column : schema) {
+
+			if (columns.length() > 0) {
+				columns.append(",");
+				values.append(",");
+			}
+
+			columns.append(column.getId());
+
+			String alias = mapped.get(column.getId());
+
+			// use the new parent if the parent was copied
+			if (alias == null)
+				values.append("T.").append(column.getId());
+			else
+				values.append("coalesce(").append(alias).append(".NEW_ID, T.").append(column.getId()).append(")");
+		}
+
+		try (PreparedStatement stmt = con.prepareStatement("insert into APP." + table + " (" + columns + ") select "
+				+ values + selection + " order by T." + idField);) {
+			stmt.executeUpdate();
+		}
+
+		List<Integer> newIds = getIds(
+				"select " + idField + " from APP." + table + " where " + idField + " > " + maxId + " order by " + idField);
+
+		if (newIds.size() != oldIds.size())
+			throw new SQLException("Copied " + newIds.size() + " rows of " + table + " instead of " + oldIds.size());
+
+		addToMap(table, oldIds, newIds);
+
+		applyOverrides(schema, maxId);
+
+		counts.put(table, newIds.size());
+	}
+
+	/**
+	 * Replace the copied values with the overrides of the table
+	 *
+	 * @param schema
+	 * @param maxId  last id before the copy
+	 * @throws SQLException
+	 */
+	private void applyOverrides(TableSchema schema, int maxId) throws SQLException {
+
+		Map<String, String> values = overrides == null ? null : overrides.apply(schema);
+
+		if (values == null || values.isEmpty())
+			return;
+
+		List<TableColumn> columns = new ArrayList<>();
+		StringBuilder sets = new StringBuilder();
+
+		for (Map.Entry<String, String> entry : values.entrySet()) {
+
+			TableColumn column = schema.getById(entry.getKey());
+
+			if (column == null) {
+				LOGGER.warn("Cannot override the column " + entry.getKey() + " not present in "
+						+ schema.getSheetName());
+				continue;
+			}
+
+			if (sets.length() > 0)
+				sets.append(",");
+
+			sets.append(column.getId()).append(" = ?");
+			columns.add(column);
+		}
+
+		if (columns.isEmpty())
+			return;
+
+		try (PreparedStatement stmt = con.prepareStatement("update APP." + schema.getSheetName() + " set " + sets
+				+ " where " + schema.getTableIdField() + " > ?");) {
+
+			for (int i = 0; i < columns.size(); ++i) {
+
+				String value = values.get(columns.get(i).getId());
+
+				if (columns.get(i).isForeignKey())
+					stmt.setInt(i + 1, Integer.valueOf(value));
+				else
+					stmt.setString(i + 1, value);
+			}
+
+			stmt.setInt(columns.size() + 1, maxId);
+			stmt.executeUpdate();
+
+		} catch (NumberFormatException e) {
+			throw new SQLException("Wrong integer override for " + schema.getSheetName() + ": " + values, e);
+		}
+	}
+
+	private int getInt(String query) throws SQLException {
+
+		try (Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery(query);) {
+			return rs.next() ? rs.getInt(1) : 0;
+		}
+	}
+
+	private List<Integer> getIds(String query) throws SQLException {
+
+		List<Integer> ids = new ArrayList<>();
+
+		try (Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery(query);) {
+			while (rs.next())
+				ids.add(rs.getInt(1));
+		}
+
+		return ids;
+	}
+}
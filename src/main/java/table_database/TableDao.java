@@ -6,19 +6,24 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import app_config.AppPaths;
+import app_config.PropertiesReader;
 import table_relations.Relation;
-import table_skeleton.TableCell;
-import table_skeleton.TableColumn;
 import table_skeleton.TableRow;
 import table_skeleton.TableRowList;
 import xlsx_reader.TableSchema;
-import xml_catalog_reader.XmlContents;
-import xml_catalog_reader.XmlLoader;
 
 /**
  * Dao which communicates with the database and all the tables that follow a
@@ -33,6 +38,13 @@ public class TableDao implements ITableDao {
 
 	private static final Logger LOGGER = LogManager.getLogger(TableDao.class);
 
+	/**
+	 * Update mode, read from the configuration at the first update
+	 */
+	private static class Updates {
+		private static final boolean PARTIAL = PropertiesReader.isPartialUpdateEnabled();
+	}
+
 	private String getTable(TableSchema schema) {
 		return "APP." + schema.getSheetName();
 	}
@@ -42,171 +54,6 @@ public class TableDao implements ITableDao {
 		return "APP." + schemaName;
 	}*/
 
-	/**
-	 * Get the query needed to add a row to the table
-	 * 
-	 * @return
-	 */
-	private String getAddQuery(TableSchema schema) {
-
-		StringBuilder query = new StringBuilder();
-		query.append("insert into " + getTable(schema) + " (");
-
-		// set the columns names
-		Iterator<TableColumn> iterator = schema.iterator();
-		while (iterator.hasNext()) {
-
-			TableColumn col = iterator.next();
-
-			query.append(col.getId());
-
-			// append the comma if there is another field
-			if (iterator.hasNext())
-				query.append(",");
-			else
-				query.append(")"); // else, close statement
-		}
-
-		// values statement
-		query.append(" values (");
-
-		// add the ?
-		iterator = schema.iterator();
-		while (iterator.hasNext()) {
-
-			// go to the next
-			iterator.next();
-
-			query.append("?");
-
-			// append the comma if there is another field
-			if (iterator.hasNext())
-				query.append(",");
-			else
-				query.append(")"); // else, close statement
-		}
-
-		return query.toString();
-	}
-
-	/**
-	 * Get the query needed to update a row to the table
-	 * 
-	 * @return
-	 */
-	private String getUpdateQuery(TableSchema schema) {
-
-		StringBuilder query = new StringBuilder();
-		query.append("update " + getTable(schema) + " set ");
-
-		// set the columns names
-		Iterator<TableColumn> iterator = schema.iterator();
-		while (iterator.hasNext()) {
-
-			TableColumn col = iterator.next();
-
-			query.append(col.getId());
-			query.append(" = ?");
-
-			// append the comma if there is another field
-			if (iterator.hasNext())
-				query.append(",");
-		}
-
-		query.append(" where ").append(schema.getTableIdField()).append(" = ?");
-
-		return query.toString();
-	}
-
-	/**
-	 * Check if the id is a foreignKey for a parent table of the current table
-	 * 
-	 * @param id
-	 * @return
-	 * @throws IOException
-	 */
-	private boolean isRelationId(TableSchema schema, String id) throws IOException {
-
-		if (schema.getRelations() == null)
-			return false;
-
-		for (Relation r : schema.getRelations()) {
-			if (r.getForeignKey().equals(id))
-				return true;
-		}
-
-		return false;
-	}
-
-	/**
-	 * Set the parameter of the statement using the row values and the table name
-	 * 
-	 * @param row
-	 * @param stmt
-	 * @throws SQLException
-	 */
-	private void setParameters(TableRow row, PreparedStatement stmt, boolean setWhereId) throws SQLException {
-
-		int currentIndex = 1;
-
-		for (int i = 0; i < row.getSchema().size(); ++i) {
-
-			TableColumn col = row.getSchema().get(i);
-
-			TableCell colValue = row.get(col.getId());
-
-			// TODO here it is possible to flag the columns which are null
-			/*
-			 * if (colValue == null) {
-			 * 
-			 * if(col.getId()==CustomStrings.AN_METH_TYPE_COL) { //set its default value
-			 * colValue= }
-			 * 
-			 * LOGGER.info("No value found for " + col.getId() + " in table " +
-			 * row.getSchema().getSheetName() + ". Putting an empty value.");
-			 * 
-			 * colValue = new TableCell(); }
-			 */
-
-			if (colValue == null) {
-
-				LOGGER.info("No value found for " + col.getId() + " in table " + row.getSchema().getSheetName()
-						+ ". Putting an empty value.");
-
-				colValue = new TableCell();
-			}
-
-			// save always the code
-			String value = colValue.getCode();
-
-			// if no code is found, use the label
-			if (value == null || value.isEmpty())
-				value = colValue.getLabel();
-
-			// If we have a relation ID => then convert into integer
-			try {
-
-				if (isRelationId(row.getSchema(), col.getId()))
-					stmt.setInt(currentIndex, Integer.valueOf(value));
-				else {
-					stmt.setString(currentIndex, value);
-				}
-
-			} catch (NumberFormatException | IOException e) {
-				e.printStackTrace();
-				LOGGER.error("Wrong integer field " + col.getId() + " with value " + value, e);
-			}
-
-			// increase current index
-			currentIndex++;
-		}
-
-		// set also the id of the row
-		if (setWhereId) {
-			stmt.setInt(currentIndex, row.getDatabaseId());
-		}
-	}
-
 	/**
 	 * Add a new row to the table
 	 * 
@@ -218,11 +65,11 @@ public class TableDao implements ITableDao {
 		int id = -1;
 
 		try (Connection con = Database.getConnection();
-				PreparedStatement stmt = con.prepareStatement(getAddQuery(row.getSchema()),
+				PreparedStatement stmt = con.prepareStatement(TablePlan.of(row.getSchema()).getAddQuery(),
 						Statement.RETURN_GENERATED_KEYS);) {
 
 			// set the row values in the parameters
-			setParameters(row, stmt, false);
+			TablePlan.of(row.getSchema()).bind(row, stmt, false);
 
 			// insert the element
 			stmt.executeUpdate();
@@ -240,6 +87,7 @@ public class TableDao implements ITableDao {
 		}
 
 		if (id != -1) {
+			row.clearChanges();
 			LOGGER.debug("Row " + id + " successfully added in " + getTable(row.getSchema()));
 		} else {
 			LOGGER.error("Errors in adding " + row + " to " + getTable(row.getSchema()));
@@ -258,12 +106,22 @@ public class TableDao implements ITableDao {
 
 		boolean ok = true;
 
+		TablePlan plan = TablePlan.of(row.getSchema());
+
+		// write only the changed columns
+		int[] columns = Updates.PARTIAL ? plan.getChangedColumns(row) : plan.getAllColumns();
+
+		if (columns.length == 0) {
+			LOGGER.debug("Row " + row.getDatabaseId() + " not changed, skipping update in " + getTable(row.getSchema()));
+			return ok;
+		}
+
 		try (Connection con = Database.getConnection();
-				PreparedStatement stmt = con.prepareStatement(getUpdateQuery(row.getSchema()));) {
+				PreparedStatement stmt = con.prepareStatement(plan.getUpdateQuery(columns));) {
 
 			// set the row values in the parameters
 			// with the where id included
-			setParameters(row, stmt, true);
+			plan.bind(row, stmt, columns, true);
 
 			// insert the element
 			stmt.executeUpdate();
@@ -275,7 +133,11 @@ public class TableDao implements ITableDao {
 			ok = false;
 		}
 
+		// the cached parent is not valid anymore
+		Relation.removeFromCache(row.getSchema().getSheetName(), row.getDatabaseId());
+
 		if (ok) {
+			row.clearChanges();
 			LOGGER.debug("Row " + row.getDatabaseId() + " successfully updated in " + getTable(row.getSchema()));
 		} else {
 			LOGGER.error("Errors in updating " + row + " for " + getTable(row.getSchema()));
@@ -284,6 +146,87 @@ public class TableDao implements ITableDao {
 		return ok;
 	}
 
+	/**
+	 * Update a group of rows (also of different tables) in a single
+	 * transaction. Only the changed columns of each row are written, the rows
+	 * which use the same statement are sent in a single batch.
+	 * 
+	 * @param rows
+	 * @return true if all the rows were updated
+	 */
+	public boolean updateAll(Collection<TableRow> rows) {
+
+		boolean ok = true;
+
+		// statement => rows
+		Map<String, List<TableRow>> batches = new LinkedHashMap<>();
+		Map<TableRow, int[]> positions = new IdentityHashMap<>();
+
+		for (TableRow row : rows) {
+
+			TablePlan plan = TablePlan.of(row.getSchema());
+
+			int[] columns = Updates.PARTIAL ? plan.getChangedColumns(row) : plan.getAllColumns();
+
+			if (columns.length == 0)
+				continue;
+
+			positions.put(row, columns);
+			batches.computeIfAbsent(plan.getUpdateQuery(columns), k -> new ArrayList<>()).add(row);
+		}
+
+		if (batches.isEmpty())
+			return ok;
+
+		try (Connection con = Database.getConnection();) {
+
+			con.setAutoCommit(false);
+
+			try {
+
+				for (Map.Entry<String, List<TableRow>> batch : batches.entrySet()) {
+
+					try (PreparedStatement stmt = con.prepareStatement(batch.getKey());) {
+
+						for (TableRow row : batch.getValue()) {
+							TablePlan.of(row.getSchema()).bind(row, stmt, positions.get(row), true);
+							stmt.addBatch();
+						}
+
+						stmt.executeBatch();
+					}
+				}
+
+				con.commit();
+
+			} catch (SQLException e) {
+				con.rollback();
+				throw e;
+			} finally {
+				con.setAutoCommit(true);
+			}
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error("Cannot update " + positions.size() + " rows", e);
+			ok = false;
+		}
+
+		for (TableRow row : positions.keySet()) {
+
+			// the cached parent is not valid anymore
+			Relation.removeFromCache(row.getSchema().getSheetName(), row.getDatabaseId());
+
+			if (ok)
+				row.clearChanges();
+		}
+
+		if (ok)
+			LOGGER.debug("Updated " + positions.size() + " rows with " + batches.size() + " statements");
+
+		return ok;
+	}
+
 	/**
 	 * Delete all the rows from the table
 	 * 
@@ -306,6 +249,8 @@ public class TableDao implements ITableDao {
 			ok = false;
 		}
 
+		Relation.removeFromCache(schema.getSheetName());
+
 		if (ok) {
 			LOGGER.debug("All rows successfully deleted from " + getTable(schema));
 		} else {
@@ -343,9 +288,28 @@ public class TableDao implements ITableDao {
 			ok = false;
 		}
 
+		Relation.removeFromCache(schema.getSheetName());
+
 		return ok;
 	}
 
+	/**
+	 * Replace the children of a parent (with all their descendants) with the
+	 * copy of the children of another parent of the same table. The rows are
+	 * copied by the database, see {@link SubtreeCopy}
+	 * 
+	 * @param childSchema   schema of the children
+	 * @param parentToCopy  parent whose rows will be copied
+	 * @param parentToWrite parent whose rows will be replaced by the copied ones
+	 * @param overrides     values which replace the copied ones, for each table
+	 *                      (column id => value)
+	 * @return
+	 */
+	public boolean copyChildren(TableSchema childSchema, TableRow parentToCopy, TableRow parentToWrite,
+			Function<TableSchema, Map<String, String>> overrides) {
+		return SubtreeCopy.copy(childSchema, parentToCopy, parentToWrite, overrides);
+	}
+
 	/**
 	 * Get a row from the result set
 	 * 
@@ -354,103 +318,7 @@ public class TableDao implements ITableDao {
 	 * @throws SQLException
 	 */
 	public TableRow getByResultSet(TableSchema schema, ResultSet rs, boolean solveFormulas) throws SQLException {
-
-		// here we need all the columns because we also
-		// compute composite fields
-		TableRow row = new TableRow(schema);
-
-		// put the id
-		int id = rs.getInt(schema.getTableIdField());
-
-		TableCell sel = new TableCell();
-		sel.setCode(String.valueOf(id));
-		sel.setLabel(String.valueOf(id));
-		row.put(schema.getTableIdField(), sel);
-
-		for (TableColumn column : schema) {
-
-			TableCell selection = null;
-
-			// create foreign key if necessary
-			if (column.isForeignKey()) {
-
-				// the foreign key is an integer id
-				int value = rs.getInt(column.getId());
-
-				selection = new TableCell();
-
-				// we don't need the description for foreign id
-				selection.setCode(String.valueOf(value));
-
-				row.put(column.getId(), selection);
-			} else {
-
-				String value = null;
-
-				try {
-					value = rs.getString(column.getId());
-				} catch (SQLException e) {
-				}
-
-				// if no value go to the next field
-				if (value == null)
-					continue;
-
-				// if we have a picklist, we need both code and description
-				if (column.isPicklist()) {
-
-					String code = String.valueOf(value);
-
-					// get the description from the .xml using the code
-					if (code != null && !code.isEmpty()) {
-
-						XmlContents contents = XmlLoader.getByPicklistKey(column.getPicklistKey());
-
-						if (contents == null) {
-
-							LOGGER.error("IMPORTANT: Check that the picklist " + column.getPicklistKey()
-									+ " is in your " + AppPaths.XML_FOLDER
-									+ " folder. Note that also the root node of the xml should have " + "the name "
-									+ column.getPicklistKey() + ". Putting an empty value.");
-
-							selection = new TableCell();
-						} else if (contents.getElementByCode(code) == null) {
-
-							LOGGER.error("IMPORTANT: The element " + code + " is missing in the picklist "
-									+ column.getPicklistKey() + " in the " + AppPaths.XML_FOLDER
-									+ " folder. Putting an empty value.");
-
-							selection = new TableCell();
-						} else {
-							selection = new TableCell(contents.getElementByCode(code));
-						}
-					} else
-						selection = new TableCell();
-				} else {
-
-					// if simple element, then it is sufficient the
-					// description (which is the label)
-					selection = new TableCell();
-					selection.setCode(String.valueOf(value));
-					selection.setLabel(String.valueOf(value));
-				}
-			}
-
-			// set also the id of the row
-			row.setId(rs.getInt(schema.getTableIdField()));
-
-			if (selection.getLabel().isEmpty())
-				selection.setLabel(selection.getCode());
-
-			// insert the element into the row
-			row.put(column.getId(), selection);
-		}
-
-		// solve automatic fields
-		if (solveFormulas)
-			row.updateFormulas();
-
-		return row;
+		return RowMapper.of(schema, rs).map(rs, solveFormulas);
 	}
 
 	public TableRowList getByParentId(TableSchema schema, String parentTable, int parentId) {
@@ -485,9 +353,11 @@ public class TableDao implements ITableDao {
 
 			try (ResultSet rs = stmt.executeQuery();) {
 
+				RowMapper mapper = RowMapper.of(schema, rs);
+
 				while (rs.next()) {
 
-					TableRow row = getByResultSet(schema, rs, solveFormulas);
+					TableRow row = mapper.map(rs, solveFormulas);
 
 					if (row != null)
 						rows.add(row);
@@ -505,6 +375,77 @@ public class TableDao implements ITableDao {
 		return rows;
 	}
 
+	/**
+	 * Get all the rows that have as parent one of the {@code parentIds} in the
+	 * parent table {@code parentTable}. The ids are sent to the database in
+	 * chunks, using one query for each chunk instead of one query for each
+	 * parent.
+	 * 
+	 * @param schema
+	 * @param parentTable
+	 * @param parentIds
+	 * @param solveFormulas
+	 * @return the rows by parent id (sorted by row id), with an empty list for
+	 *         the parents without children
+	 */
+	public Map<Integer, TableRowList> getByParentIds(TableSchema schema, String parentTable,
+			Collection<Integer> parentIds, boolean solveFormulas) {
+
+		Map<Integer, TableRowList> rows = new LinkedHashMap<>();
+
+		for (Integer parentId : parentIds)
+			rows.put(parentId, new TableRowList(schema));
+
+		if (rows.isEmpty())
+			return rows;
+
+		Relation r = schema.getRelationByParentTable(parentTable);
+
+		List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(parentIds));
+
+		int chunkSize = Math.max(1, Math.min(PropertiesReader.getDbInListSize(), ids.size()));
+
+		// all the chunks have the same size, so that the statement is prepared once
+		StringBuilder query = new StringBuilder();
+		query.append("select * from ").append(getTable(schema)).append(" where ").append(r.getForeignKey())
+				.append(" in (");
+
+		for (int i = 0; i < chunkSize; ++i)
+			query.append(i == 0 ? "?" : ", ?");
+
+		query.append(") order by ").append(schema.getTableIdField()).append(" asc");
+
+		try (Connection con = Database.getConnection();
+				PreparedStatement stmt = con.prepareStatement(query.toString());) {
+
+			for (int start = 0; start < ids.size(); start += chunkSize) {
+
+				// the last chunk is filled repeating its last id
+				for (int i = 0; i < chunkSize; ++i)
+					stmt.setInt(i + 1, ids.get(Math.min(start + i, ids.size() - 1)));
+
+				try (ResultSet rs = stmt.executeQuery();) {
+
+					RowMapper mapper = RowMapper.of(schema, rs);
+
+					while (rs.next()) {
+
+						TableRow row = mapper.map(rs, solveFormulas);
+
+						if (row != null)
+							rows.get(rs.getInt(r.getForeignKey())).add(row);
+					}
+				}
+			}
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error("Cannot get rows by parentIds=" + ids, e);
+		}
+
+		return rows;
+	}
+
 	/**
 	 * Get all the rows from the table
 	 * 
@@ -520,9 +461,12 @@ public class TableDao implements ITableDao {
 		try (Connection con = Database.getConnection(); PreparedStatement stmt = con.prepareStatement(query);) {
 
 			try (ResultSet rs = stmt.executeQuery();) {
+
+				RowMapper mapper = RowMapper.of(schema, rs);
+
 				while (rs.next()) {
 
-					TableRow row = getByResultSet(schema, rs, true);
+					TableRow row = mapper.map(rs, true);
 					if (row != null)
 						rows.add(row);
 				}
@@ -563,6 +507,8 @@ public class TableDao implements ITableDao {
 			ok = false;
 		}
 
+		Relation.removeFromCache(schema.getSheetName(), rowId);
+
 		if (ok) {
 			LOGGER.info("Row " + rowId + " successfully deleted from " + getTable(schema));
 		} else {
@@ -575,32 +521,17 @@ public class TableDao implements ITableDao {
 	
 	public boolean delete(TableRowList list) {
 
-		boolean ok = true;
-
 		if (list.isEmpty())
 			return true;
 
 		TableSchema schema = list.get(0).getSchema();
 
-		String query = "delete from " + getTable(schema) + " where " + schema.getTableIdField() + " = ?";
-
-		try (Connection con = Database.getConnection(); PreparedStatement stmt = con.prepareStatement(query);) {
-
-			for (TableRow row : list) {
-				stmt.setInt(1, row.getDatabaseId());
-
-				stmt.addBatch();
-			}
-
-			stmt.executeBatch();
-
-		} catch (SQLException e) {
-			e.printStackTrace();
-			LOGGER.error("Cannot delete rows", e);
-			ok = false;
-		}
+		Collection<Integer> ids = new ArrayList<>();
+		for (TableRow row : list)
+			ids.add(row.getDatabaseId());
 
-		return ok;
+		// delete also the children in a single transaction
+		return CascadeDelete.delete(schema, ids).isOk();
 	}
 
 	/**
@@ -673,15 +604,16 @@ public class TableDao implements ITableDao {
 			return ok;
 
 		TableSchema schema = list.get(0).getSchema();
+		TablePlan plan = TablePlan.of(schema);
 
 		try (Connection con = Database.getConnection();
-				PreparedStatement stmt = con.prepareStatement(getAddQuery(schema), Statement.RETURN_GENERATED_KEYS);) {
+				PreparedStatement stmt = con.prepareStatement(plan.getAddQuery(), Statement.RETURN_GENERATED_KEYS);) {
 
 			int count = 0;
 
 			for (TableRow row : list) {
 				// set the row values in the parameters
-				setParameters(row, stmt, false);
+				plan.bind(row, stmt, false);
 
 				// add the batch and increment the counter
 				// stmt.addBatch();
@@ -714,12 +646,19 @@ public class TableDao implements ITableDao {
 
 		boolean ok = true;
 
-		String query = "delete from " + getTable(schema) + " where " + fieldName + " = ?";
+		String query = "select " + schema.getTableIdField() + " from " + getTable(schema) + " where " + fieldName
+				+ " = ?";
+
+		Collection<Integer> ids = new ArrayList<>();
 
 		try (Connection con = Database.getConnection(); PreparedStatement stmt = con.prepareStatement(query);) {
 
 			stmt.setString(1, value);
-			stmt.executeUpdate();
+
+			try (ResultSet rs = stmt.executeQuery();) {
+				while (rs.next())
+					ids.add(rs.getInt(1));
+			}
 
 		} catch (SQLException e) {
 			e.printStackTrace();
@@ -727,6 +666,10 @@ public class TableDao implements ITableDao {
 			ok = false;
 		}
 
+		// delete the rows with their children in a single transaction
+		if (ok)
+			ok = CascadeDelete.delete(schema, ids).isOk();
+
 		if (ok) {
 			LOGGER.info("Rows with " + fieldName + " = " + value + " successfully deleted from " + getTable(schema));
 		} else {
@@ -787,8 +730,11 @@ public class TableDao implements ITableDao {
 			stmt.setString(1, value);
 
 			try (ResultSet rs = stmt.executeQuery();) {
+
+				RowMapper mapper = RowMapper.of(schema, rs);
+
 				while (rs.next()) {
-					TableRow row = getByResultSet(schema, rs, true);
+					TableRow row = mapper.map(rs, true);
 					rows.add(row);
 				}
 			} catch (SQLException e) {
@@ -803,4 +749,104 @@ public class TableDao implements ITableDao {
 
 		return rows;
 	}
+
+	/**
+	 * Stream all the rows from the table. The rows are read from the database
+	 * only while the stream is consumed, and the stream must be closed to
+	 * release the connection if it is not fully consumed. A
+	 * {@link TableReadException} is thrown if the rows cannot be read.
+	 * 
+	 * @param schema
+	 * @return
+	 */
+	public Stream<TableRow> streamAll(TableSchema schema) {
+
+		String query = "select * from " + getTable(schema) + " order by " + schema.getTableIdField() + " asc";
+
+		return stream(schema, query, true);
+	}
+
+	/**
+	 * Stream all the rows that has as parent the {@code parentId} in the parent
+	 * table {@code parentTable} (see {@link #streamAll(TableSchema)})
+	 * 
+	 * @param schema
+	 * @param parentTable
+	 * @param parentId
+	 * @param solveFormulas
+	 * @param order
+	 * @return
+	 */
+	public Stream<TableRow> streamByParentId(TableSchema schema, String parentTable, int parentId,
+			boolean solveFormulas, String order) {
+
+		Relation r = schema.getRelationByParentTable(parentTable);
+
+		String query = "select * from " + getTable(schema) + " where " + r.getForeignKey() + " = ? order by "
+				+ schema.getTableIdField() + " " + order;
+
+		return stream(schema, query, solveFormulas, parentId);
+	}
+
+	/**
+	 * Stream all the rows that matches the fieldName with value (see
+	 * {@link #streamAll(TableSchema)})
+	 * 
+	 * @param schema
+	 * @param fieldName
+	 * @param value
+	 * @return
+	 */
+	public Stream<TableRow> streamByStringField(TableSchema schema, String fieldName, String value) {
+
+		String query = "select * from " + getTable(schema) + " where " + fieldName + " = ? order by "
+				+ schema.getTableIdField() + " asc";
+
+		return stream(schema, query, true, value);
+	}
+
+	/**
+	 * Open a cursor on the query
+	 * 
+	 * @param schema
+	 * @param query
+	 * @param solveFormulas
+	 * @param parameters    values of the query parameters, in order
+	 * @return
+	 * @throws TableReadException if the query cannot be executed
+	 */
+	private Stream<TableRow> stream(TableSchema schema, String query, boolean solveFormulas, Object... parameters) {
+
+		Connection con = null;
+		PreparedStatement stmt = null;
+
+		try {
+
+			con = Database.getConnection();
+			stmt = con.prepareStatement(query);
+
+			for (int i = 0; i < parameters.length; ++i)
+				stmt.setObject(i + 1, parameters[i]);
+
+			// the cursor closes the statement and the connection
+			return new TableRowCursor(schema, con, stmt, solveFormulas, PropertiesReader.getDbFetchSize())
+					.stream();
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error("Cannot open cursor on " + getTable(schema), e);
+
+			try {
+				if (stmt != null)
+					stmt.close();
+				if (con != null)
+					con.close();
+			} catch (SQLException e1) {
+				LOGGER.error("Cannot close the connection", e1);
+			}
+
+			// an empty stream would export a report without records
+			throw new TableReadException("Cannot open cursor on " + getTable(schema), e);
+		}
+	}
 }
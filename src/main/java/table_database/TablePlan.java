@@ -0,0 +1,301 @@
+package table_database;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import table_relations.Relation;
+import table_skeleton.TableRow;
+import xlsx_reader.ColumnSlots;
+import xlsx_reader.TableSchema;
+
+/**
+ * Insert and update statements of a {@link TableSchema} with the order and the
+ * type of their parameters. The plan is computed once for each schema and it is
+ * immutable; it is computed again if the columns of the schema change or if the
+ * table is altered by the {@link DatabaseUpdater}.
+ *
+ * @author shahaal
+ *
+ */
+class TablePlan {
+
+	private static final Logger LOGGER = LogManager.getLogger(TablePlan.class);
+
+	// table name => plan
+	private static final Map<String, TablePlan> plans = new ConcurrentHashMap<>();
+
+	// maximum number of partial updates kept for each table
+	private static final int MAX_PARTIAL_UPDATES = 64;
+
+	private final TableSchema schema;
+	private final ColumnSlots slots;
+
+	private final String addQuery;
+	private final String updateQuery;
+
+	private final String[] columns;
+	private final int[] types;
+	private final int[] allColumns;
+
+	// changed columns => update statement
+	private final Map<BitSet, String> partialUpdates = new ConcurrentHashMap<>();
+
+	private TablePlan(TableSchema schema, ColumnSlots slots, Set<String> foreignKeys) {
+
+		this.schema = schema;
+		this.slots = slots;
+
+		this.columns = new String[schema.size()];
+		this.types = new int[schema.size()];
+		this.allColumns = new int[schema.size()];
+
+		String table = "APP." + schema.getSheetName();
+
+		StringBuilder names = new StringBuilder();
+		StringBuilder marks = new StringBuilder();
+		StringBuilder sets = new StringBuilder();
+
+		for (int i = 0; i < schema.size(); ++i) {
+
+			String id = schema.get(i).getId();
+
+			columns[i] = id;
+			allColumns[i] = i;
+
+			// the foreign keys are integers
+			types[i] = foreignKeys.contains(id) ? Types.INTEGER : Types.VARCHAR;
+
+			if (i > 0) {
+				names.append(",");
+				marks.append(",");
+				sets.append(",");
+			}
+
+			names.append(id);
+			marks.append("?");
+			sets.append(id).append(" = ?");
+		}
+
+		this.addQuery = "insert into " + table + " (" + names + ") values (" + marks + ")";
+		this.updateQuery = "update " + table + " set " + sets + " where " + schema.getTableIdField() + " = ?";
+	}
+
+	/**
+	 * Get the plan of a schema
+	 *
+	 * @param schema
+	 * @return
+	 */
+	public static TablePlan of(TableSchema schema) {
+
+		TablePlan plan = plans.get(schema.getSheetName());
+
+		// same schema object with the same columns
+		if (plan != null && plan.schema == schema && plan.slots == schema.getColumnSlots())
+			return plan;
+
+		Set<String> foreignKeys = new HashSet<>();
+
+		try {
+
+			if (schema.getRelations() != null) {
+				for (Relation r : schema.getRelations())
+					foreignKeys.add(r.getForeignKey());
+			}
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			LOGGER.error("Cannot read the relations of " + schema.getSheetName()
+					+ ". The plan of the table is not cached", e);
+
+			return new TablePlan(schema, schema.getColumnSlots(), foreignKeys);
+		}
+
+		plan = new TablePlan(schema, schema.getColumnSlots(), foreignKeys);
+
+		plans.put(schema.getSheetName(), plan);
+
+		LOGGER.debug("Created the statements plan of " + schema.getSheetName());
+
+		return plan;
+	}
+
+	/**
+	 * Remove the plan of a table, for example because its columns were changed
+	 *
+	 * @param table
+	 */
+	public static void invalidate(String table) {
+		plans.remove(table);
+	}
+
+	/**
+	 * Remove all the plans
+	 */
+	public static void clear() {
+		plans.clear();
+	}
+
+	/**
+	 * Get the query needed to add a row to the table
+	 *
+	 * @return
+	 */
+	public String getAddQuery() {
+		return addQuery;
+	}
+
+	/**
+	 * Get the query needed to update a row of the table
+	 *
+	 * @return
+	 */
+	public String getUpdateQuery() {
+		return updateQuery;
+	}
+
+	/**
+	 * Get the positions of all the columns of the table
+	 *
+	 * @return
+	 */
+	public int[] getAllColumns() {
+		return allColumns;
+	}
+
+	/**
+	 * Get the positions of the columns changed in a row
+	 *
+	 * @param row
+	 * @return the positions, empty if the row was not changed
+	 */
+	public int[] getChangedColumns(TableRow row) {
+
+		if (!row.hasChanges())
+			return new int[0];
+
+		int[] changed = new int[columns.length];
+		int count = 0;
+
+		for (int i = 0; i < columns.length; ++i) {
+			if (row.isChanged(columns[i]))
+				changed[count++] = i;
+		}
+
+		return count == columns.length ? allColumns : Arrays.copyOf(changed, count);
+	}
+
+	/**
+	 * Get the query needed to update some columns of a row of the table
+	 *
+	 * @param positions positions of the columns to update
+	 * @return
+	 */
+	public String getUpdateQuery(int[] positions) {
+
+		if (positions == allColumns || positions.length == columns.length)
+			return updateQuery;
+
+		BitSet key = new BitSet(columns.length);
+		for (int position : positions)
+			key.set(position);
+
+		String query = partialUpdates.get(key);
+
+		if (query != null)
+			return query;
+
+		StringBuilder sets = new StringBuilder();
+
+		for (int position : positions) {
+
+			if (sets.length() > 0)
+				sets.append(",");
+
+			sets.append(columns[position]).append(" = ?");
+		}
+
+		query = "update APP." + schema.getSheetName() + " set " + sets + " where " + schema.getTableIdField()
+				+ " = ?";
+
+		// the same columns are usually updated many times (formulas)
+		if (partialUpdates.size() < MAX_PARTIAL_UPDATES)
+			partialUpdates.put(key, query);
+
+		return query;
+	}
+
+	/**
+	 * Set the parameters of the statement using the row values
+	 *
+	 * @param row
+	 * @param stmt
+	 * @param setWhereId true to set also the id of the row (update)
+	 * @throws SQLException
+	 */
+	public void bind(TableRow row, PreparedStatement stmt, boolean setWhereId) throws SQLException {
+		bind(row, stmt, allColumns, setWhereId);
+	}
+
+	/**
+	 * Set the parameters of the statement using the values of some columns of
+	 * the row
+	 *
+	 * @param row
+	 * @param stmt
+	 * @param positions  positions of the columns, in the order of the statement
+	 * @param setWhereId true to set also the id of the row (update)
+	 * @throws SQLException
+	 */
+	public void bind(TableRow row, PreparedStatement stmt, int[] positions, boolean setWhereId)
+			throws SQLException {
+
+		for (int p = 0; p < positions.length; ++p) {
+
+			int i = positions[p];
+			String id = columns[i];
+
+			// save always the code, if no code is found use the label
+			String value = row.getCode(id);
+
+			if (value.isEmpty())
+				value = row.getLabel(id);
+
+			if (value.isEmpty() && row.get(id) == null) {
+				LOGGER.info("No value found for " + id + " in table " + schema.getSheetName()
+						+ ". Putting an empty value.");
+			}
+
+			try {
+
+				switch (types[i]) {
+				case Types.INTEGER:
+					stmt.setInt(p + 1, Integer.valueOf(value));
+					break;
+				default:
+					stmt.setString(p + 1, value);
+					break;
+				}
+
+			} catch (NumberFormatException e) {
+				e.printStackTrace();
+				LOGGER.error("Wrong integer field " + id + " with value " + value, e);
+			}
+		}
+
+		// set also the id of the row
+		if (setWhereId)
+			stmt.setInt(positions.length + 1, row.getDatabaseId());
+	}
+}
@@ -0,0 +1,19 @@
+package table_database;
+
+import java.sql.SQLException;
+
+/**
+ * Error while reading the rows of a table from a stream. It is unchecked
+ * since it is thrown while the stream is consumed.
+ * 
+ * @author shahaal
+ *
+ */
+public class TableReadException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public TableReadException(String text, SQLException cause) {
+		super(text, cause);
+	}
+}
@@ -0,0 +1,171 @@
+package table_database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import table_skeleton.TableRow;
+import xlsx_reader.TableSchema;
+
+/**
+ * Iterate the rows of a query one at a time. Each row is created from the
+ * result set only when it is requested. The connection is kept open until all
+ * the rows are read or the cursor is closed.
+ *
+ * @author shahaal
+ *
+ */
+class TableRowCursor implements Iterator<TableRow>, AutoCloseable {
+
+	private static final Logger LOGGER = LogManager.getLogger(TableRowCursor.class);
+
+	private final TableSchema schema;
+	private final boolean solveFormulas;
+
+	private Connection con;
+	private PreparedStatement stmt;
+	private ResultSet rs;
+	private RowMapper mapper;
+
+	private TableRow next;
+	private boolean closed;
+
+	/**
+	 * Open the cursor on an already prepared statement (with all its parameters
+	 * set). The cursor takes ownership of the connection and of the statement.
+	 *
+	 * @param schema
+	 * @param con
+	 * @param stmt
+	 * @param solveFormulas
+	 * @param fetchSize     number of rows fetched from the database at once
+	 * @throws SQLException
+	 */
+	public TableRowCursor(TableSchema schema, Connection con, PreparedStatement stmt, boolean solveFormulas,
+			int fetchSize) throws SQLException {
+
+		this.schema = schema;
+		this.solveFormulas = solveFormulas;
+		this.con = con;
+		this.stmt = stmt;
+
+		try {
+
+			if (fetchSize > 0)
+				stmt.setFetchSize(fetchSize);
+
+			this.rs = stmt.executeQuery();
+			this.mapper = RowMapper.of(schema, rs);
+
+		} catch (SQLException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @throws TableReadException if the rows cannot be read from the database
+	 */
+	@Override
+	public boolean hasNext() {
+
+		if (next != null)
+			return true;
+
+		if (closed)
+			return false;
+
+		try {
+
+			while (rs.next()) {
+
+				next = mapper.map(rs, solveFormulas);
+
+				if (next != null)
+					return true;
+			}
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error("Cannot read the rows of " + schema.getSheetName(), e);
+
+			// the missing rows must not be confused with the end of the rows
+			close();
+			throw new TableReadException("Cannot read the rows of " + schema.getSheetName(), e);
+		}
+
+		// all the rows were read
+		close();
+
+		return false;
+	}
+
+	@Override
+	public TableRow next() {
+
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		TableRow row = next;
+		next = null;
+
+		return row;
+	}
+
+	/**
+	 * Close the result set, the statement and the connection (released to the
+	 * pool)
+	 */
+	@Override
+	public void close() {
+
+		if (closed)
+			return;
+
+		closed = true;
+
+		try {
+			if (rs != null)
+				rs.close();
+		} catch (SQLException e) {
+			LOGGER.error("Cannot close the result set", e);
+		}
+
+		try {
+			stmt.close();
+		} catch (SQLException e) {
+			LOGGER.error("Cannot close the statement", e);
+		}
+
+		try {
+			con.close();
+		} catch (SQLException e) {
+			LOGGER.error("Cannot close the connection", e);
+		}
+
+		rs = null;
+		stmt = null;
+		con = null;
+	}
+
+	/**
+	 * Get the rows as a sequential stream. Closing the stream closes the cursor
+	 *
+	 * @return
+	 */
+	public Stream<TableRow> stream() {
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(this::close);
+	}
+}
@@ -8,6 +8,8 @@ import org.eclipse.jface.viewers.DoubleClickEvent;
 import org.eclipse.jface.viewers.IDoubleClickListener;
 import org.eclipse.jface.viewers.ISelectionChangedListener;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.MouseEvent;
 import org.eclipse.swt.events.MouseListener;
 import org.eclipse.swt.events.SelectionEvent;
@@ -23,6 +25,8 @@ import org.eclipse.swt.widgets.Shell;
 
 import global_utils.Warnings;
 import i18n_messages.Messages;
+import table_database.RowWriteErrorListener;
+import table_database.RowWriteQueue;
 import table_database.TableDao;
 import table_dialog.DialogBuilder.RowCreationMode;
 import table_dialog.RowCreatorViewer.CatalogChangedListener;
@@ -150,6 +154,38 @@ public abstract class TableDialog {
 		} else
 			this.dialog = parent;
 
+		// warn the user if the queued edits cannot be saved
+		final RowWriteErrorListener writeErrorListener = new RowWriteErrorListener() {
+
+			@Override
+			public void rowsNotSaved(Collection<TableRow> rows) {
+
+				if (dialog.isDisposed())
+					return;
+
+				dialog.getDisplay().asyncExec(new Runnable() {
+
+					@Override
+					public void run() {
+						if (!dialog.isDisposed())
+							warnRowsNotSaved(rows.size());
+					}
+				});
+			}
+		};
+
+		RowWriteQueue.addErrorListener(writeErrorListener);
+
+		// save the edits still in the queue when the dialog is closed
+		this.dialog.addDisposeListener(new DisposeListener() {
+
+			@Override
+			public void widgetDisposed(DisposeEvent arg0) {
+				RowWriteQueue.removeErrorListener(writeErrorListener);
+				RowWriteQueue.flush();
+			}
+		});
+
 		this.dialog.setLayout(new GridLayout(1, false));
 		this.dialog.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
 
@@ -207,7 +243,7 @@ public abstract class TableDialog {
 					editorListener.editEnded(row, field, changed);
 
 				if (changed) {
-					panel.getTable().refreshAndSave(row, autoSave);
+					panel.getTable().refreshAndSave(row, TableEditor.getEditedColumns(row, field), autoSave);
 				}
 
 				if (saveButton != null)
@@ -311,6 +347,20 @@ public abstract class TableDialog {
 
 		for (TableRow row : rows)
 			panel.refreshAndSave(row, true);
+
+		// wait that the rows are saved (the discarded rows are reported by the
+		// error listener, the others are still in the queue)
+		if (!RowWriteQueue.flush() && RowWriteQueue.getPendingCount() > 0)
+			warnRowsNotSaved(RowWriteQueue.getPendingCount());
+	}
+
+	/**
+	 * Warn the user that the edits of some rows were not saved
+	 * 
+	 * @param count number of rows
+	 */
+	private void warnRowsNotSaved(int count) {
+		warnUser(Messages.get("error.title"), Messages.get("rows.not.saved", String.valueOf(count)));
 	}
 
 	/**
@@ -18,8 +18,10 @@ import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Image;
 
+import table_skeleton.PicklistCells;
 import table_skeleton.TableCell;
 import table_skeleton.TableColumn;
+import table_skeleton.TableColumn.ColumnType;
 import table_skeleton.TableRow;
 import xml_catalog_reader.Selection;
 import xml_catalog_reader.SelectionList;
@@ -221,13 +223,12 @@ public class TableEditor extends EditingSupport {
 
 		case PICKLIST:
 			Selection sel = (Selection) value;
-			TableCell newSelection = new TableCell(sel);
+			TableCell newSelection = PicklistCells.get(column.getPicklistKey(), sel);
 			
 			//shahaal: reset the cwdExtContext column if country is trigger
 			//shahaal: should be more generic!
-			if(column.getId().contains("country")) {
-				//get the cwdExtContext column at index 1 (starting from 0)
-				String cwdContexCol = row.getSchema().get(1).getId();
+			String cwdContexCol = getResetColumn(row, column);
+			if(cwdContexCol != null) {
 				//put in the row in the cwdExtContext the empty cell
 				row.put(cwdContexCol, new TableCell());
 			}
@@ -245,6 +246,40 @@ public class TableEditor extends EditingSupport {
 		}
 	}
 	
+	/**
+	 * Get the column which is emptied when the value of {@code column} is edited
+	 * @param row
+	 * @param column
+	 * @return the column id or null if no column is emptied
+	 */
+	private static String getResetColumn(TableRow row, TableColumn column) {
+		
+		if (column.getType() != ColumnType.PICKLIST || !column.getId().contains("country"))
+			return null;
+		
+		//get the cwdExtContext column at index 1 (starting from 0)
+		return row.getSchema().get(1).getId();
+	}
+	
+	/**
+	 * Get the ids of the columns whose value changes when
+	 * the value of {@code column} is edited
+	 * @param row
+	 * @param column
+	 * @return
+	 */
+	public static Collection<String> getEditedColumns(TableRow row, TableColumn column) {
+		
+		Collection<String> columns = new ArrayList<>();
+		columns.add(column.getId());
+		
+		String resetColumn = getResetColumn(row, column);
+		if (resetColumn != null)
+			columns.add(resetColumn);
+		
+		return columns;
+	}
+	
 	@Override
 	protected void setValue(Object arg0, Object value) {
 		
@@ -5,7 +5,6 @@ import org.eclipse.jface.viewers.ILabelProviderListener;
 import org.eclipse.swt.graphics.Image;
 
 import i18n_messages.Messages;
-import table_skeleton.TableCell;
 import table_skeleton.TableColumn;
 import table_skeleton.TableRow;
 
@@ -52,23 +51,24 @@ public class TableLabelProvider extends ColumnLabelProvider {
 	public String getText(Object arg0) {
 
 		TableRow row = (TableRow) arg0;
-		TableCell cell = row.get(key);
-
-		if (cell == null || cell.getLabel() == null)
+		// read the value without copying the shared cells
+		if (!row.containsKey(key))
 			return null;
 		
+		String label = row.getLabel(key);
+		
 		TableColumn col = row.getSchema().getById(key);
 		
-		if (!col.isEditable(row) && cell.isEmpty()) {
+		if (!col.isEditable(row) && label.isEmpty() && row.getCode(key).isEmpty()) {
 			return Messages.get("not.supported.field.cell.label");
 		}
 		
 		if (col.isPassword() && !showPwds) {
 			// show as password with dots
 			String ECHARSTR = Character.toString((char)9679);
-			return cell.getLabel().replaceAll(".", ECHARSTR);
+			return label.replaceAll(".", ECHARSTR);
 		}
 		else
-			return cell.getLabel();
+			return label;
 	}
 }
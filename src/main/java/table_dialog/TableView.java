@@ -24,6 +24,7 @@ import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.widgets.Table;
 import i18n_messages.Messages;
+import table_database.RowWriteQueue;
 import table_skeleton.TableColumn;
 import table_skeleton.TableRow;
 import table_skeleton.TableRowList;
@@ -585,6 +586,19 @@ public class TableView {
 	 * @param row
 	 */
 	public void refreshAndSave(TableRow row, boolean saveInDb) {
+		refreshAndSave(row, null, saveInDb);
+	}
+
+	/**
+	 * Refresh a single row of the table, solving again only the formulas which
+	 * depend on the changed columns
+	 * 
+	 * @param row
+	 * @param changedColumns ids of the edited columns, null to solve all the
+	 *                       formulas
+	 * @param saveInDb
+	 */
+	public void refreshAndSave(TableRow row, Collection<String> changedColumns, boolean saveInDb) {
 
 		TableRow oldRow = this.tableElements.getElementById(row.getDatabaseId());
 
@@ -595,14 +609,14 @@ public class TableView {
 
 		// update the edited values
 		oldRow.copyValues(row);
-		row.updateFormulas();
+		updateFormulas(row, changedColumns);
 
 		if (saveInDb) {
 			// update also the formulas using the new values
-			oldRow.updateFormulas();
+			updateFormulas(oldRow, changedColumns);
 
-			// save in db the changed values
-			oldRow.update();
+			// save in db the changed values in background
+			RowWriteQueue.enqueue(oldRow);
 		}
 
 		this.tableViewer.refresh(row);
@@ -615,6 +629,13 @@ public class TableView {
 		}
 	}
 
+	private void updateFormulas(TableRow row, Collection<String> changedColumns) {
+		if (changedColumns == null)
+			row.updateFormulas();
+		else
+			row.updateFormulas(changedColumns);
+	}
+
 	/**
 	 * Select a row of the table
 	 * 
@@ -1,10 +1,16 @@
 package table_importer;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import providers.ITableDaoService;
 import table_relations.Relation;
+import table_relations.RowHierarchy;
 import table_skeleton.TableRow;
+import table_skeleton.TableRowList;
 import xlsx_reader.TableSchema;
 
 /**
@@ -31,11 +37,77 @@ public abstract class TableImporter {
 	public void copyByParent(TableSchema childSchema, 
 			TableRow parentToCopy, TableRow parentToWrite) {
 		
+		// same query used for many parents
+		copyByParents(childSchema, Collections.singletonList(parentToCopy), 
+				Collections.singletonList(parentToWrite));
+	}
+	
+	/**
+	 * Copy all the children of a parent table into the children
+	 * of another parent table, taking the rows to copy from a loaded
+	 * hierarchy. If the hierarchy does not contain the parent to copy,
+	 * its children are read from the database.
+	 * @param hierarchy loaded rows which descend from a root row
+	 * @param childSchema schema of the children
+	 * @param parentToCopy parent whose rows will be copied
+	 * @param parentToWrite parent whose rows will be replaced by the copied ones
+	 */
+	public void copyByParent(RowHierarchy hierarchy, TableSchema childSchema, 
+			TableRow parentToCopy, TableRow parentToWrite) {
+		
+		if (!hierarchy.contains(parentToCopy)) {
+			copyByParent(childSchema, parentToCopy, parentToWrite);
+			return;
+		}
+		
 		String parentTable = parentToCopy.getSchema().getSheetName();
-		int parentToCopyId = parentToCopy.getDatabaseId();
 		
-		// load all the rows of the parent we want to copy
-		Collection<TableRow> rowsToCopy = daoService.getByParentId(childSchema, parentTable, parentToCopyId, true);
+		copyRows(childSchema, parentTable, hierarchy.getChildren(parentToCopy, childSchema.getSheetName()), 
+				parentToWrite);
+	}
+	
+	/**
+	 * Copy the children of many parents of the same table, reading the children
+	 * of all the parents with one query. The i-th parent to copy is copied into
+	 * the i-th parent to write.
+	 * @param childSchema schema of the children
+	 * @param parentsToCopy parents whose rows will be copied
+	 * @param parentsToWrite parents whose rows will be replaced by the copied ones
+	 */
+	public void copyByParents(TableSchema childSchema, 
+			List<TableRow> parentsToCopy, List<TableRow> parentsToWrite) {
+		
+		if (parentsToCopy.size() != parentsToWrite.size())
+			throw new IllegalArgumentException("Expected the same number of parents to copy and to write, found " 
+					+ parentsToCopy.size() + " and " + parentsToWrite.size());
+		
+		if (parentsToCopy.isEmpty())
+			return;
+		
+		String parentTable = parentsToCopy.get(0).getSchema().getSheetName();
+		
+		Collection<Integer> parentIds = new ArrayList<>();
+		for (TableRow parent : parentsToCopy)
+			parentIds.add(parent.getDatabaseId());
+		
+		// load all the rows of the parents we want to copy
+		Map<Integer, TableRowList> rowsToCopy = daoService.getByParentIds(childSchema, parentTable, parentIds, true);
+		
+		for (int i = 0; i < parentsToCopy.size(); ++i) {
+			copyRows(childSchema, parentTable, rowsToCopy.get(parentsToCopy.get(i).getDatabaseId()), 
+					parentsToWrite.get(i));
+		}
+	}
+	
+	/**
+	 * Replace the children of a parent with the copy of other rows
+	 * @param childSchema
+	 * @param parentTable
+	 * @param rowsToCopy
+	 * @param parentToWrite
+	 */
+	private void copyRows(TableSchema childSchema, String parentTable, 
+			Collection<TableRow> rowsToCopy, TableRow parentToWrite) {
 		
 		// remove all the rows from the parent we want to override
 		int parentToWriteId = parentToWrite.getDatabaseId();
@@ -57,9 +129,37 @@ public abstract class TableImporter {
 		}
 	}
 	
+	/**
+	 * Copy all the children of a parent table, together with all their
+	 * descendants, into the children of another parent table. The rows are
+	 * copied by the database without loading them, therefore
+	 * {@link #filterRowData(TableRow)} is not called: the changes to the
+	 * copied rows are given by {@link #getColumnOverrides(TableSchema)}.
+	 * @param childSchema schema of the children
+	 * @param parentToCopy parent whose rows will be copied
+	 * @param parentToWrite parent whose rows will be replaced by the copied ones
+	 * @return true if the rows were copied
+	 */
+	public boolean copyTreeByParent(TableSchema childSchema, 
+			TableRow parentToCopy, TableRow parentToWrite) {
+		return daoService.copyChildren(childSchema, parentToCopy, parentToWrite, this::getColumnOverrides);
+	}
+	
 	/**
 	 * Manage and filter the row which will be inserted in the new report
 	 * @param row
 	 */
 	public abstract void filterRowData(TableRow row);
+	
+	/**
+	 * Get the values which replace the copied ones in the rows of a table
+	 * copied by {@link #copyTreeByParent(TableSchema, TableRow, TableRow)},
+	 * the set based version of {@link #filterRowData(TableRow)}. By default
+	 * the values are copied as they are.
+	 * @param schema table of the copied rows
+	 * @return column id => new value
+	 */
+	public Map<String, String> getColumnOverrides(TableSchema schema) {
+		return Collections.emptyMap();
+	}
 }
@@ -0,0 +1,204 @@
+package table_relations;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import table_skeleton.TableRow;
+
+/**
+ * Least recently used cache of the parent rows which are used to solve the
+ * relation formulas, using the parent table and the parent id as key. All the
+ * methods are thread safe.
+ *
+ * @author shahaal
+ *
+ */
+class ParentRowCache {
+
+	private final int maxSize;
+	private final LinkedHashMap<Key, TableRow> rows;
+
+	// incremented at each invalidation, in order to discard the rows
+	// which were read from the database before the invalidation
+	private long generation;
+
+	// metrics
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * @param maxSize maximum number of rows kept in memory (0 to disable the
+	 *                cache)
+	 */
+	public ParentRowCache(int maxSize) {
+
+		this.maxSize = Math.max(0, maxSize);
+
+		// access order for the lru policy
+		this.rows = new LinkedHashMap<Key, TableRow>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, TableRow> eldest) {
+
+				boolean remove = size() > ParentRowCache.this.maxSize;
+
+				if (remove)
+					evictions++;
+
+				return remove;
+			}
+		};
+	}
+
+	/**
+	 * Get a cached row and update the metrics
+	 *
+	 * @param table
+	 * @param id
+	 * @return the row or null if it is not cached
+	 */
+	public synchronized TableRow get(String table, int id) {
+
+		TableRow row = rows.get(new Key(table, id));
+
+		if (row != null)
+			hits++;
+		else
+			misses++;
+
+		return row;
+	}
+
+	/**
+	 * Get the current generation of the cache, to be passed to
+	 * {@link #put(String, int, TableRow, long)}
+	 *
+	 * @return
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Cache a row read from the database
+	 *
+	 * @param table
+	 * @param id
+	 * @param row
+	 * @param generation the generation of the cache before reading the row. The
+	 *                   row is discarded if the cache was invalidated meanwhile
+	 */
+	public synchronized void put(String table, int id, TableRow row, long generation) {
+
+		if (row == null || maxSize == 0 || generation != this.generation)
+			return;
+
+		rows.put(new Key(table, id), row);
+	}
+
+	/**
+	 * Replace a row only if it is already cached
+	 *
+	 * @param table
+	 * @param id
+	 * @param row
+	 */
+	public synchronized void replace(String table, int id, TableRow row) {
+
+		Key key = new Key(table, id);
+
+		if (rows.containsKey(key))
+			rows.put(key, row);
+	}
+
+	/**
+	 * Remove a row from the cache
+	 *
+	 * @param table
+	 * @param id
+	 */
+	public synchronized void remove(String table, int id) {
+		generation++;
+		rows.remove(new Key(table, id));
+	}
+
+	/**
+	 * Remove all the rows of a table from the cache
+	 *
+	 * @param table
+	 */
+	public synchronized void remove(String table) {
+
+		generation++;
+
+		Iterator<Key> iterator = rows.keySet().iterator();
+
+		while (iterator.hasNext()) {
+			if (iterator.next().table.equals(table))
+				iterator.remove();
+		}
+	}
+
+	/**
+	 * Remove all the rows from the cache
+	 */
+	public synchronized void clear() {
+		generation++;
+		rows.clear();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Get a summary of the cache metrics, for logging purposes
+	 *
+	 * @return
+	 */
+	public synchronized String getStatistics() {
+		return "size=" + rows.size() + "; max=" + maxSize + "; hits=" + hits + "; misses=" + misses + "; evictions="
+				+ evictions;
+	}
+
+	/**
+	 * Parent table and parent id
+	 */
+	private static class Key {
+
+		private final String table;
+		private final int id;
+
+		public Key(String table, int id) {
+			this.table = table;
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+
+			if (!(obj instanceof Key))
+				return false;
+
+			Key other = (Key) obj;
+
+			return id == other.id && table.equals(other.table);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * table.hashCode() + id;
+		}
+	}
+}
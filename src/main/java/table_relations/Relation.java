@@ -3,12 +3,12 @@ package table_relations;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import app_config.AppPaths;
+import app_config.PropertiesReader;
 import providers.ITableDaoService;
 import providers.TableDaoService;
 import table_database.TableDao;
@@ -21,25 +21,16 @@ public class Relation {
 
 	private static final Logger LOGGER = LogManager.getLogger(Relation.class);
 
-	// caches for each table of the database, using the
-	// table name as key
-	private static HashMap<String, TableRow> parentValueCache;
-	private static HashMap<String, Integer> lastIds;
+	// parent rows used to solve the relation formulas, using
+	// the parent table and the parent id as key
+	private static final ParentRowCache parentValueCache = new ParentRowCache(
+			PropertiesReader.getParentCacheSize());
 
 	private String parent;
 	private String child;
 	private boolean directRelation;
 
 	public Relation(String parent, String child, boolean directRelation) {
-
-		// Initialise cache if necessary
-		if (parentValueCache == null)
-			parentValueCache = new HashMap<>();
-
-		// Initialise cache if necessary
-		if (lastIds == null)
-			lastIds = new HashMap<>();
-
 		this.parent = parent;
 		this.child = child;
 		this.directRelation = directRelation;
@@ -124,24 +115,24 @@ public class Relation {
 	 */
 	public TableRow getParentValue(int parentId, ITableDaoService daoService) {
 
-		Integer lastUsedId = lastIds.get(parent);
+		TableRow value = parentValueCache.get(parent, parentId);
 
-		// if we are not requiring the same parentId
-		// update cache
-		if (lastUsedId == null || parentId != lastUsedId) {
+		if (value != null)
+			return value;
 
-			// get the first (and unique) value related to this
-			// relation from the parent data
-			parentValueCache.put(parent, daoService.getById(getParentSchema(), parentId));
-			lastIds.put(parent, parentId);
-		}
+		long generation = parentValueCache.getGeneration();
+
+		// get the first (and unique) value related to this
+		// relation from the parent data
+		value = daoService.getById(getParentSchema(), parentId);
 
-		// return the cached value
-		return parentValueCache.get(parent);
+		parentValueCache.put(parent, parentId, value, generation);
+
+		return value;
 	}
 
 	public static void emptyCache() {
-		lastIds.clear();
+		LOGGER.debug("Parent rows cache emptied. " + parentValueCache.getStatistics());
 		parentValueCache.clear();
 	}
 
@@ -154,11 +145,53 @@ public class Relation {
 
 		String tablename = parentValue.getSchema().getSheetName();
 
-		Integer lastUsedId = lastIds.get(tablename);
+		parentValueCache.replace(tablename, parentValue.getDatabaseId(), parentValue);
+	}
 
-		if (lastUsedId != null && lastUsedId == parentValue.getDatabaseId()) {
-			parentValueCache.put(tablename, parentValue);
-		}
+	/**
+	 * Remove a parent from the cache, if it was updated or deleted
+	 * 
+	 * @param tablename
+	 * @param parentId
+	 */
+	public static void removeFromCache(String tablename, int parentId) {
+		parentValueCache.remove(tablename, parentId);
+	}
+
+	/**
+	 * Remove all the parents of a table from the cache
+	 * 
+	 * @param tablename
+	 */
+	public static void removeFromCache(String tablename) {
+		parentValueCache.remove(tablename);
+	}
+
+	/**
+	 * Get how many parents were found in the cache
+	 * 
+	 * @return
+	 */
+	public static long getCacheHits() {
+		return parentValueCache.getHits();
+	}
+
+	/**
+	 * Get how many parents were read from the database
+	 * 
+	 * @return
+	 */
+	public static long getCacheMisses() {
+		return parentValueCache.getMisses();
+	}
+
+	/**
+	 * Get a summary of the parents cache metrics, for logging purposes
+	 * 
+	 * @return
+	 */
+	public static String getCacheStatistics() {
+		return parentValueCache.getStatistics();
 	}
 
 	/**
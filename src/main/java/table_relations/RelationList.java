@@ -14,7 +14,7 @@ public class RelationList {
 	 * @return
 	 * @throws IOException
 	 */
-	public static Collection<Relation> getAll() throws IOException {
+	public static synchronized Collection<Relation> getAll() throws IOException {
 		
 		if (relationsCache == null) {
 			
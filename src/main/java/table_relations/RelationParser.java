@@ -4,8 +4,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 
-import org.apache.poi.ss.usermodel.Row;
-
 import app_config.AppPaths;
 import app_config.BooleanValue;
 import xlsx_reader.XlsxReader;
@@ -71,10 +69,10 @@ public class RelationParser extends XlsxReader {
 	}
 
 	@Override
-	public void startRow(Row row) {}
+	public void startRow(int rowNum) {}
 
 	@Override
-	public void endRow(Row row) {
+	public void endRow(int rowNum) {
 		
 		if(parentTable == null || childTable == null)
 			return;
@@ -0,0 +1,277 @@
+package table_relations;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import providers.ITableDaoService;
+import table_skeleton.TableRow;
+import table_skeleton.TableRowList;
+import xlsx_reader.TableSchema;
+import xlsx_reader.TableSchemaList;
+
+/**
+ * All the rows which descend from a root row (for example a report with its
+ * summarised information and results) following the direct relations of the
+ * {@link RelationList}. The tree is loaded level by level, with one query for
+ * each relation (and chunk of parents) instead of one query for each parent
+ * row. A table reached again (from another parent table or with cyclic
+ * relations) is expanded again only for its new rows. The children are indexed
+ * by parent table, parent id and child table.
+ *
+ * @author shahaal
+ *
+ */
+public class RowHierarchy {
+
+	private static final Logger LOGGER = LogManager.getLogger(RowHierarchy.class);
+
+	private final TableRow root;
+
+	// parent table => child table => parent id => children
+	private final Map<String, Map<String, Map<Integer, TableRowList>>> children;
+
+	// table => loaded rows
+	private final Map<String, TableRowList> rows;
+
+	// table => ids of the loaded rows (each row is expanded once)
+	private final Map<String, Set<Integer>> ids;
+
+	private RowHierarchy(TableRow root) {
+		this.root = root;
+		this.children = new HashMap<>();
+		this.rows = new LinkedHashMap<>();
+		this.ids = new HashMap<>();
+	}
+
+	/**
+	 * Load all the rows which descend from the root
+	 *
+	 * @param root          the root of the hierarchy
+	 * @param daoService
+	 * @param solveFormulas
+	 * @return
+	 * @throws IOException if the relations cannot be read
+	 */
+	public static RowHierarchy load(TableRow root, ITableDaoService daoService, boolean solveFormulas)
+			throws IOException {
+
+		RowHierarchy hierarchy = new RowHierarchy(root);
+
+		String rootTable = root.getSchema().getSheetName();
+
+		TableRowList rootList = new TableRowList(root.getSchema());
+		rootList.add(root);
+		hierarchy.rows.put(rootTable, rootList);
+
+		hierarchy.ids.computeIfAbsent(rootTable, k -> new HashSet<>()).add(root.getDatabaseId());
+
+		// table => ids of the rows which are not expanded yet
+		Map<String, Collection<Integer>> toExpand = new HashMap<>();
+		toExpand.put(rootTable, new ArrayList<>(Collections.singleton(root.getDatabaseId())));
+
+		// parent tables to expand with their new rows
+		Deque<TableSchema> level = new ArrayDeque<>();
+		level.add(root.getSchema());
+
+		while (!level.isEmpty()) {
+
+			TableSchema parentSchema = level.poll();
+			String parentTable = parentSchema.getSheetName();
+
+			Collection<Integer> parentIds = toExpand.remove(parentTable);
+
+			if (parentIds == null || parentIds.isEmpty())
+				continue;
+
+			for (Relation relation : parentSchema.getDirectChildren()) {
+
+				TableSchema childSchema = TableSchemaList.getByName(relation.getChild());
+
+				if (childSchema == null) {
+					LOGGER.error("No schema found for the child table " + relation.getChild());
+					continue;
+				}
+
+				Map<Integer, TableRowList> byParent = daoService.getByParentIds(childSchema, parentTable, parentIds,
+						solveFormulas);
+
+				String childTable = childSchema.getSheetName();
+
+				// the parents of each expansion are different, the children are added
+				hierarchy.children.computeIfAbsent(parentTable, k -> new HashMap<>())
+						.computeIfAbsent(childTable, k -> new HashMap<>()).putAll(byParent);
+
+				TableRowList childRows = hierarchy.rows.get(childTable);
+
+				if (childRows == null) {
+					childRows = new TableRowList(childSchema);
+					hierarchy.rows.put(childTable, childRows);
+				}
+
+				// a table can be reached from more parent tables and with cyclic
+				// relations, only its new rows are expanded
+				Set<Integer> childIds = hierarchy.ids.computeIfAbsent(childTable, k -> new HashSet<>());
+
+				Collection<Integer> newIds = new ArrayList<>();
+
+				for (TableRowList list : byParent.values()) {
+					for (TableRow row : list) {
+						if (childIds.add(row.getDatabaseId())) {
+							childRows.add(row);
+							newIds.add(row.getDatabaseId());
+						}
+					}
+				}
+
+				if (newIds.isEmpty())
+					continue;
+
+				// queue the table, if it is not already waiting
+				Collection<Integer> waiting = toExpand.get(childTable);
+
+				if (waiting == null) {
+					toExpand.put(childTable, newIds);
+					level.add(childSchema);
+				} else {
+					waiting.addAll(newIds);
+				}
+			}
+		}
+
+		LOGGER.debug("Loaded hierarchy of " + root.getSchema().getSheetName() + " " + root.getDatabaseId() + ": "
+				+ hierarchy.getSummary());
+
+		return hierarchy;
+	}
+
+	/**
+	 * Get the root of the hierarchy
+	 *
+	 * @return
+	 */
+	public TableRow getRoot() {
+		return root;
+	}
+
+	/**
+	 * Check if a row was loaded in the hierarchy (its children were loaded too)
+	 *
+	 * @param row
+	 * @return
+	 */
+	public boolean contains(TableRow row) {
+
+		Set<Integer> tableIds = ids.get(row.getSchema().getSheetName());
+
+		return tableIds != null && tableIds.contains(row.getDatabaseId());
+	}
+
+	/**
+	 * Get the children of a parent row in a child table
+	 *
+	 * @param parent
+	 * @param childTable
+	 * @return the children, or an empty list if the parent has no children or
+	 *         was not loaded
+	 */
+	public TableRowList getChildren(TableRow parent, String childTable) {
+		return getChildren(parent.getSchema().getSheetName(), parent.getDatabaseId(), childTable);
+	}
+
+	/**
+	 * Get the children of a parent in a child table
+	 *
+	 * @param parentTable
+	 * @param parentId
+	 * @param childTable
+	 * @return the children, or an empty list if the parent has no children or
+	 *         was not loaded
+	 */
+	public TableRowList getChildren(String parentTable, int parentId, String childTable) {
+
+		Map<String, Map<Integer, TableRowList>> byChild = children.get(parentTable);
+
+		if (byChild == null)
+			return new TableRowList();
+
+		Map<Integer, TableRowList> byParent = byChild.get(childTable);
+
+		if (byParent == null)
+			return new TableRowList();
+
+		TableRowList list = byParent.get(parentId);
+
+		return list == null ? new TableRowList() : list;
+	}
+
+	/**
+	 * Get the children of all the parents of a table, by parent id
+	 *
+	 * @param parentTable
+	 * @param childTable
+	 * @return
+	 */
+	public Map<Integer, TableRowList> getChildrenByParent(String parentTable, String childTable) {
+
+		Map<String, Map<Integer, TableRowList>> byChild = children.get(parentTable);
+
+		if (byChild == null || byChild.get(childTable) == null)
+			return Collections.emptyMap();
+
+		return Collections.unmodifiableMap(byChild.get(childTable));
+	}
+
+	/**
+	 * Get all the loaded rows of a table
+	 *
+	 * @param table
+	 * @return
+	 */
+	public TableRowList getRows(String table) {
+
+		TableRowList list = rows.get(table);
+
+		return list == null ? new TableRowList() : list;
+	}
+
+	/**
+	 * Get the tables of the hierarchy, from the root to the leaves
+	 *
+	 * @return
+	 */
+	public Collection<String> getTables() {
+		return Collections.unmodifiableSet(rows.keySet());
+	}
+
+	/**
+	 * Get the number of rows loaded for each table, for logging purposes
+	 *
+	 * @return
+	 */
+	public String getSummary() {
+
+		StringBuilder summary = new StringBuilder();
+
+		for (Map.Entry<String, TableRowList> entry : rows.entrySet()) {
+
+			if (summary.length() > 0)
+				summary.append("; ");
+
+			summary.append(entry.getKey()).append("=").append(entry.getValue().size());
+		}
+
+		return summary.toString();
+	}
+}
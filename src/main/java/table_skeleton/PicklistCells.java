@@ -0,0 +1,97 @@
+package table_skeleton;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import xml_catalog_reader.Selection;
+
+/**
+ * Shared read-only {@link TableCell}s of the picklist values. All the rows
+ * which contain the same value of a picklist use the same cell object. The
+ * shared cells must only be put into the rows: {@link TableRow#get(String)}
+ * replaces them with a copy owned by the row before returning them.
+ *
+ * @author shahaal
+ *
+ */
+public class PicklistCells {
+
+	// picklist key => code => cell
+	private static final Map<String, Map<String, SharedCell>> cells = new ConcurrentHashMap<>();
+
+	/**
+	 * Get the shared cell of a picklist value
+	 *
+	 * @param picklistKey key of the picklist
+	 * @param selection   value of the picklist
+	 * @return
+	 */
+	public static TableCell get(String picklistKey, Selection selection) {
+
+		if (picklistKey == null || selection.getCode() == null)
+			return new TableCell(selection);
+
+		Map<String, SharedCell> byCode = cells.computeIfAbsent(picklistKey, k -> new ConcurrentHashMap<>());
+
+		SharedCell cell = byCode.computeIfAbsent(selection.getCode(), k -> new SharedCell(selection));
+
+		// same code in different lists of the picklist, with another description
+		if (cell.source != selection && !cell.sameValue(selection))
+			return new TableCell(selection);
+
+		return cell.cell;
+	}
+
+	/**
+	 * Remove all the shared cells (the rows keep the ones they use)
+	 */
+	public static void clear() {
+		cells.clear();
+	}
+
+	/**
+	 * Get the number of shared cells, for logging purposes
+	 *
+	 * @return
+	 */
+	public static int size() {
+
+		int size = 0;
+
+		for (Map<String, SharedCell> byCode : cells.values())
+			size += byCode.size();
+
+		return size;
+	}
+
+	private static class SharedCell {
+
+		private final Selection source;
+		private final TableCell cell;
+
+		public SharedCell(Selection source) {
+
+			this.source = source;
+
+			TableCell cell = new TableCell(source);
+
+			// cells without description show the code
+			if (cell.getLabel().isEmpty())
+				cell.setLabel(cell.getCode());
+
+			cell.share();
+
+			this.cell = cell;
+		}
+
+		public boolean sameValue(Selection selection) {
+
+			String label = selection.getDescription();
+
+			if (label == null || label.isEmpty())
+				label = selection.getCode();
+
+			return cell.getLabel().equals(label);
+		}
+	}
+}
@@ -0,0 +1,405 @@
+package table_skeleton;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import xlsx_reader.ColumnSlots;
+
+/**
+ * Values of a {@link TableRow}. The values of the schema columns are kept in an
+ * array using the positions of the {@link ColumnSlots} of the schema, which
+ * are shared by all the rows. The other keys are kept in a map. A value whose
+ * code is equal to the label and that was never requested as
+ * {@link TableCell} is kept as a single string. The changed flag of the cells
+ * owned by the row is reset when they are put, such that it reports the
+ * changes made in place to the cells returned by the row.
+ *
+ * @author shahaal
+ *
+ */
+class RowValues {
+
+	private final ColumnSlots slots;
+
+	// TableCell or String (code = label)
+	private Object[] cells;
+
+	// values without a slot
+	private HashMap<String, TableCell> others;
+
+	/**
+	 * Keep all the values in a map
+	 */
+	public RowValues() {
+		this.slots = null;
+	}
+
+	/**
+	 * @param slots positions of the columns
+	 */
+	public RowValues(ColumnSlots slots) {
+		this.slots = slots;
+	}
+
+	/**
+	 * Copy the values of another row. The cells owned by the row are copied
+	 * together with their changed flag, the read-only cells are shared
+	 *
+	 * @param values
+	 */
+	public RowValues(RowValues values) {
+
+		this.slots = values.slots;
+
+		if (values.cells != null) {
+
+			this.cells = values.cells.clone();
+
+			for (int i = 0; i < cells.length; ++i) {
+				if (cells[i] instanceof TableCell)
+					cells[i] = copyOf((TableCell) cells[i]);
+			}
+		}
+
+		if (values.others != null) {
+
+			this.others = new HashMap<>();
+
+			for (Map.Entry<String, TableCell> entry : values.others.entrySet())
+				others.put(entry.getKey(), copyOf(entry.getValue()));
+		}
+	}
+
+	private static TableCell copyOf(TableCell cell) {
+		return cell.isShared() ? cell : new TableCell(cell);
+	}
+
+	private int slotOf(String key) {
+		return slots == null ? -1 : slots.indexOf(key);
+	}
+
+	/**
+	 * Get the cell of a key. A value kept as string is converted into a cell,
+	 * such that the changes made to the returned cell are kept in the row
+	 *
+	 * @param key
+	 * @return
+	 */
+	public TableCell get(String key) {
+
+		int slot = slotOf(key);
+
+		if (slot < 0)
+			return others == null ? null : others.get(key);
+
+		if (cells == null)
+			return null;
+
+		Object value = cells[slot];
+
+		if (value instanceof String) {
+			TableCell cell = new TableCell((String) value, (String) value);
+			cell.setChanged(false);
+			cells[slot] = cell;
+			return cell;
+		}
+
+		return (TableCell) value;
+	}
+
+	/**
+	 * Get the code of a key without creating its cell
+	 *
+	 * @param key
+	 * @return the code or null if the key is not present
+	 */
+	public String getCode(String key) {
+
+		Object value = getRaw(key);
+
+		if (value instanceof String)
+			return (String) value;
+
+		return value == null ? null : ((TableCell) value).getCode();
+	}
+
+	/**
+	 * Get the label of a key without creating its cell
+	 *
+	 * @param key
+	 * @return the label or null if the key is not present
+	 */
+	public String getLabel(String key) {
+
+		Object value = getRaw(key);
+
+		if (value instanceof String)
+			return (String) value;
+
+		return value == null ? null : ((TableCell) value).getLabel();
+	}
+
+	/**
+	 * Check if the value of a key is missing or empty
+	 *
+	 * @param key
+	 * @return
+	 */
+	public boolean isEmpty(String key) {
+
+		Object value = getRaw(key);
+
+		if (value instanceof String)
+			return ((String) value).isEmpty();
+
+		return value == null || ((TableCell) value).isEmpty();
+	}
+
+	private Object getRaw(String key) {
+
+		int slot = slotOf(key);
+
+		if (slot < 0)
+			return others == null ? null : others.get(key);
+
+		return cells == null ? null : cells[slot];
+	}
+
+	/**
+	 * Check if a cell is the one stored for a key
+	 *
+	 * @param key
+	 * @param cell
+	 * @return
+	 */
+	public boolean holds(String key, TableCell cell) {
+		return cell != null && getRaw(key) == cell;
+	}
+
+	/**
+	 * Check if the cell of a key was modified in place after it was put
+	 *
+	 * @param key
+	 * @return
+	 */
+	public boolean isChanged(String key) {
+		return isChanged(getRaw(key));
+	}
+
+	private static boolean isChanged(Object value) {
+
+		if (!(value instanceof TableCell))
+			return false;
+
+		TableCell cell = (TableCell) value;
+
+		return !cell.isShared() && cell.isChanged();
+	}
+
+	/**
+	 * Check if any cell was modified in place after it was put
+	 *
+	 * @return
+	 */
+	public boolean hasChangedCells() {
+
+		if (cells != null) {
+			for (Object value : cells) {
+				if (isChanged(value))
+					return true;
+			}
+		}
+
+		if (others != null) {
+			for (TableCell cell : others.values()) {
+				if (isChanged(cell))
+					return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Reset the changed flag of the cell of a key
+	 *
+	 * @param key
+	 */
+	public void clearChanged(String key) {
+		reset(getRaw(key));
+	}
+
+	/**
+	 * Reset the changed flag of all the cells owned by the row
+	 */
+	public void clearChangedCells() {
+
+		if (cells != null) {
+			for (Object value : cells)
+				reset(value);
+		}
+
+		if (others != null) {
+			for (TableCell cell : others.values())
+				reset(cell);
+		}
+	}
+
+	/**
+	 * Reset the changed flag of a cell owned by the row
+	 *
+	 * @param value
+	 * @return the value
+	 */
+	private static Object reset(Object value) {
+
+		if (value instanceof TableCell && !((TableCell) value).isShared())
+			((TableCell) value).setChanged(false);
+
+		return value;
+	}
+
+	/**
+	 * Put a cell
+	 *
+	 * @param key
+	 * @param cell
+	 */
+	public void put(String key, TableCell cell) {
+		set(key, cell);
+	}
+
+	/**
+	 * Put a value whose code is equal to the label
+	 *
+	 * @param key
+	 * @param text
+	 */
+	public void putText(String key, String text) {
+
+		if (text == null)
+			text = "";
+
+		if (slotOf(key) < 0) {
+			put(key, new TableCell(text, text));
+			return;
+		}
+
+		set(key, text);
+	}
+
+	/**
+	 * Put a value (cell or string) using its position, without searching the
+	 * key. If the position does not belong to the key the key is searched
+	 * 
+	 * @param slot  position of the key in the {@link ColumnSlots}
+	 * @param key
+	 * @param value
+	 */
+	public void putAt(int slot, String key, Object value) {
+
+		if (slots == null || slot < 0 || slot >= slots.size() || !key.equals(slots.getId(slot))) {
+
+			if (value instanceof String)
+				putText(key, (String) value);
+			else
+				set(key, value);
+
+			return;
+		}
+
+		if (cells == null)
+			cells = new Object[slots.size()];
+
+		cells[slot] = reset(value);
+	}
+
+	private void set(String key, Object value) {
+
+		int slot = slotOf(key);
+
+		if (slot < 0) {
+
+			if (others == null)
+				others = new HashMap<>();
+
+			others.put(key, (TableCell) reset(value));
+			return;
+		}
+
+		if (cells == null)
+			cells = new Object[slots.size()];
+
+		cells[slot] = reset(value);
+	}
+
+	/**
+	 * Remove a key
+	 *
+	 * @param key
+	 */
+	public void remove(String key) {
+
+		int slot = slotOf(key);
+
+		if (slot < 0) {
+			if (others != null)
+				others.remove(key);
+			return;
+		}
+
+		if (cells != null)
+			cells[slot] = null;
+	}
+
+	/**
+	 * Get all the keys which have a value
+	 *
+	 * @return
+	 */
+	public Collection<String> keys() {
+
+		Collection<String> keys = new ArrayList<>();
+
+		if (cells != null) {
+			for (int i = 0; i < cells.length; ++i) {
+				if (cells[i] != null)
+					keys.add(slots.getId(i));
+			}
+		}
+
+		if (others != null)
+			keys.addAll(others.keySet());
+
+		return keys;
+	}
+
+	/**
+	 * Copy the value of a key from other values, without sharing the cell
+	 * (unless it is a read-only cell)
+	 *
+	 * @param key
+	 * @param values
+	 */
+	public void copy(String key, RowValues values) {
+
+		Object value = values.getRaw(key);
+
+		if (value instanceof String) {
+			putText(key, (String) value);
+			return;
+		}
+
+		TableCell cell = (TableCell) value;
+
+		// read-only cells can be used by both the rows
+		if (cell.isShared()) {
+			put(key, cell);
+			return;
+		}
+
+		put(key, new TableCell(cell.getCode(), cell.getLabel()));
+	}
+}
@@ -0,0 +1,152 @@
+package table_skeleton;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import app_config.BooleanValue;
+import xlsx_reader.TableSchema;
+
+/**
+ * Write the output columns of the rows of a {@link TableSchema} as xml nodes.
+ * The columns with an xml tag and their put in output flag are computed once
+ * for each schema; the formulas are solved only for the columns whose flags
+ * are not constant. The nodes can be written directly into an
+ * {@link XMLStreamWriter}, which escapes the values, or into a string.
+ *
+ * @author shahaal
+ *
+ */
+public class RowXmlSerializer {
+
+	// table name => serializer
+	private static final Map<String, RowXmlSerializer> serializers = new ConcurrentHashMap<>();
+
+	private final TableSchema schema;
+
+	private final TableColumn[] columns;
+	private final String[] tags;
+	private final boolean[] alwaysInOutput;
+
+	private RowXmlSerializer(TableSchema schema) {
+
+		this.schema = schema;
+
+		List<TableColumn> outputColumns = new ArrayList<>();
+
+		for (TableColumn column : schema) {
+
+			String tag = column.getXmlTag();
+
+			// never in output
+			if (tag == null || tag.replaceAll(" ", "").isEmpty() || BooleanValue.isFalse(column.getPutInOutput()))
+				continue;
+
+			outputColumns.add(column);
+		}
+
+		this.columns = outputColumns.toArray(new TableColumn[outputColumns.size()]);
+		this.tags = new String[columns.length];
+		this.alwaysInOutput = new boolean[columns.length];
+
+		for (int i = 0; i < columns.length; ++i) {
+			tags[i] = columns[i].getXmlTag();
+			alwaysInOutput[i] = BooleanValue.isTrue(columns[i].getPutInOutput());
+		}
+	}
+
+	/**
+	 * Get the serializer of the rows of a schema
+	 *
+	 * @param schema
+	 * @return
+	 */
+	public static RowXmlSerializer of(TableSchema schema) {
+
+		RowXmlSerializer serializer = serializers.get(schema.getSheetName());
+
+		// computed again if the schema was reloaded
+		if (serializer == null || serializer.schema != schema) {
+			serializer = new RowXmlSerializer(schema);
+			serializers.put(schema.getSheetName(), serializer);
+		}
+
+		return serializer;
+	}
+
+	/**
+	 * Remove all the serializers
+	 */
+	public static void clear() {
+		serializers.clear();
+	}
+
+	/**
+	 * Write the output nodes of a row, without root node
+	 *
+	 * @param row
+	 * @param writer
+	 * @throws XMLStreamException
+	 */
+	public void write(TableRow row, XMLStreamWriter writer) throws XMLStreamException {
+
+		for (int i = 0; i < columns.length; ++i) {
+
+			String code = getOutputCode(row, i);
+
+			if (code == null)
+				continue;
+
+			writer.writeStartElement(tags[i]);
+			writer.writeCharacters(code);
+			writer.writeEndElement();
+		}
+	}
+
+	/**
+	 * Append the output nodes of a row to a string, without root node. The
+	 * values are not escaped
+	 *
+	 * @param row
+	 * @param sb
+	 */
+	public void append(TableRow row, StringBuilder sb) {
+
+		for (int i = 0; i < columns.length; ++i) {
+
+			String code = getOutputCode(row, i);
+
+			if (code == null)
+				continue;
+
+			sb.append("<").append(tags[i]).append(">").append(code).append("</").append(tags[i]).append(">");
+		}
+	}
+
+	/**
+	 * Get the code of an output column of a row
+	 *
+	 * @param row
+	 * @param index
+	 * @return the code, or null if the column should not be put in the output
+	 */
+	private String getOutputCode(TableRow row, int index) {
+
+		TableColumn column = columns[index];
+
+		String code = row.getRawCode(column.getId());
+
+		// non mandatory fields which are empty are skipped
+		if (code == null || (code.isEmpty() && !column.isMandatory(row)))
+			return null;
+
+		if (!alwaysInOutput[index] && !column.isPutInOutput(row))
+			return null;
+
+		return code;
+	}
+}
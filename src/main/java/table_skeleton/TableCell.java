@@ -15,6 +15,9 @@ public class TableCell {
 	private String code;
 	private String label;
 	
+	// read-only cell used by more rows
+	private boolean shared;
+	
 	public TableCell() {
 		this.code = "";
 		this.label = "";
@@ -38,9 +41,36 @@ public class TableCell {
 			label = "";
 	}
 	
+	/**
+	 * Copy a cell (the copy is never shared)
+	 * @param cell
+	 */
+	public TableCell(TableCell cell) {
+		this.code = cell.code;
+		this.label = cell.label;
+		this.changed = cell.changed;
+	}
+	
+	/**
+	 * Make the cell read-only, such that it can be used
+	 * by more rows (see {@link PicklistCells})
+	 */
+	void share() {
+		this.shared = true;
+	}
+	
+	/**
+	 * Check if the cell is read-only and used by more rows.
+	 * The shared cells are never returned by {@link TableRow#get(String)},
+	 * which gives a copy owned by the row.
+	 * @return
+	 */
+	public boolean isShared() {
+		return shared;
+	}
 	
 	public void setCode(String code) {
-
+		
 		this.code = code;
 		
 		// empty code means that we do not
@@ -54,15 +84,24 @@ public class TableCell {
 				this.code = "";
 		}
 		
+		// keep a single string if code and label are equal
+		else if (code.equals(label))
+			this.code = label;
+		
 		this.changed = true;
 	}
 	
 	public void setLabel(String label) {
+		
 		this.label = label;
 		
 		if (this.label == null)
 			this.label = "";
 		
+		// keep a single string if code and label are equal
+		else if (label.equals(code))
+			this.label = code;
+		
 		this.changed = true;
 	}
 	
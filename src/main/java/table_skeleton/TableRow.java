@@ -2,18 +2,26 @@ package table_skeleton;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import app_config.AppPaths;
+import app_config.PropertiesReader;
 import app_config.BooleanValue;
 import duplicates_detector.Checkable;
 import formula.Formula;
 import formula.FormulaException;
 import formula.FormulaSolver;
 import report.Report;
+import table_database.RowWriteQueue;
 import table_database.TableDao;
+import table_relations.RowHierarchy;
+import xlsx_reader.ColumnSlots;
 import xlsx_reader.TableHeaders.XlsxHeader;
 import xlsx_reader.TableSchema;
 import xml_catalog_reader.Selection;
@@ -36,14 +44,20 @@ public class TableRow implements Checkable {
 		OK, MANDATORY_MISSING, CONDITIONAL_MISSING, ERROR
 	};
 
-	private HashMap<String, TableCell> values;
+	private RowValues values;
 	private TableSchema schema;
 
+	// columns changed since the row was read or saved (positions of the
+	// column slots of the schema)
+	private BitSet changes;
+	private ColumnSlots changesSlots;
+	private boolean allChanged;
+
 	/**
 	 * Careful use
 	 */
 	public TableRow() {
-		this.values = new HashMap<>();
+		this.values = new RowValues();
 	}
 
 	/**
@@ -58,7 +72,12 @@ public class TableRow implements Checkable {
 	 */
 	public TableRow(HashMap<String, TableCell> values, TableSchema schema) {
 		this.schema = schema;
-		this.values = values;
+		this.values = createValues(schema);
+
+		for (Map.Entry<String, TableCell> entry : values.entrySet())
+			this.values.put(entry.getKey(), entry.getValue());
+
+		this.allChanged = true;
 	}
 
 	/**
@@ -67,7 +86,7 @@ public class TableRow implements Checkable {
 	 * @param schema columns properties of the row
 	 */
 	public TableRow(TableSchema schema) {
-		this.values = new HashMap<>();
+		this.values = createValues(schema);
 		this.schema = schema;
 	}
 
@@ -77,8 +96,34 @@ public class TableRow implements Checkable {
 	 * @param row
 	 */
 	public TableRow(TableRow row) {
-		this.values = new HashMap<>(row.values);
+		this.values = new RowValues(row.values);
 		this.schema = row.getSchema();
+
+		this.changes = row.changes == null ? null : (BitSet) row.changes.clone();
+		this.changesSlots = row.changesSlots;
+		this.allChanged = row.allChanged;
+	}
+
+	/**
+	 * Create the storage of the values, using the positions of the schema
+	 * columns if the compact storage is enabled
+	 * 
+	 * @param schema
+	 * @return
+	 */
+	private static RowValues createValues(TableSchema schema) {
+
+		if (schema == null || !Storage.COMPACT)
+			return new RowValues();
+
+		return new RowValues(schema.getColumnSlots());
+	}
+
+	/**
+	 * Storage mode, read from the configuration when the first row is created
+	 */
+	private static class Storage {
+		private static final boolean COMPACT = PropertiesReader.isCompactRowsEnabled();
 	}
 
 	/**
@@ -101,13 +146,10 @@ public class TableRow implements Checkable {
 	public void setId(int id) {
 
 		String index = String.valueOf(id);
-		TableCell idValue = new TableCell();
-		idValue.setCode(index);
-		idValue.setLabel(index);
 
 		// put directly into the values and not with this.put
 		// to avoid to put the id into the changes hashmap
-		this.values.put(schema.getTableIdField(), idValue);
+		this.values.putText(schema.getTableIdField(), index);
 	}
 
 	/**
@@ -129,10 +171,10 @@ public class TableRow implements Checkable {
 			if (idField == null)
 				return id;
 
-			TableCell value = this.values.get(idField);
+			String value = this.values.getCode(idField);
 
-			if (value != null && value.getCode() != null)
-				id = Integer.valueOf(value.getCode());
+			if (value != null)
+				id = Integer.valueOf(value);
 
 		} catch (NumberFormatException e) {
 		}
@@ -170,30 +212,91 @@ public class TableRow implements Checkable {
 	 */
 	public Collection<TableRow> getChildren(TableSchema childSchema, boolean solveFormulas) {
 
+		// same query used for many parents
+		TableRowList children = getChildren(Collections.singletonList(this), childSchema, solveFormulas)
+				.get(this.getDatabaseId());
+
+		return children;
+	}
+
+	/**
+	 * Get the rows defined in the child table that are related to this parent
+	 * row, using the rows already loaded in a hierarchy. If the hierarchy does
+	 * not contain this row, the children are read from the database.
+	 * 
+	 * @param hierarchy   loaded rows which descend from a root row
+	 * @param childSchema the schema of the child table
+	 * @return
+	 */
+	public Collection<TableRow> getChildren(RowHierarchy hierarchy, TableSchema childSchema) {
+
+		if (!hierarchy.contains(this))
+			return getChildren(childSchema);
+
+		return hierarchy.getChildren(this, childSchema.getSheetName());
+	}
+
+	/**
+	 * Get the rows defined in the child table that are related to many parent rows
+	 * of the same table, using one query for all of them.
+	 * 
+	 * @param parents       the parent rows (same schema)
+	 * @param childSchema   the schema of the child table
+	 * @param solveFormulas
+	 * @return the children by parent id
+	 */
+	public static Map<Integer, TableRowList> getChildren(Collection<TableRow> parents, TableSchema childSchema,
+			boolean solveFormulas) {
+
+		Map<Integer, TableRowList> children = new HashMap<>();
+
+		if (parents.isEmpty())
+			return children;
+
 		// open the child dao
 		TableDao dao = new TableDao();
 
-		// get parent table name using the relation
-		String parentTable = this.getSchema().getSheetName();
+		String parentTable = parents.iterator().next().getSchema().getSheetName();
 
-		// get the rows of the children related to the parent
-		Collection<TableRow> children = dao.getByParentId(childSchema, parentTable, this.getDatabaseId(),
-				solveFormulas);
+		Collection<Integer> parentIds = new ArrayList<>();
+		for (TableRow parent : parents)
+			parentIds.add(parent.getDatabaseId());
 
-		return children;
+		return dao.getByParentIds(childSchema, parentTable, parentIds, solveFormulas);
 	}
 
 	/**
-	 * Get a string variable value from the data
+	 * Get a string variable value from the data. The returned cell belongs to
+	 * the row and can be modified: if the cell is shared with other rows
+	 * (picklist values, see {@link PicklistCells}), it is replaced in the row by
+	 * its own copy
 	 * 
 	 * @param key
-	 * @return
+	 * @return the cell, or null if the key is not present
 	 */
 	public TableCell get(String key) {
 		// new table cell if null
 		// return values.getOrDefault(key, new TableCell());
 
-		return values.get(key);
+		TableCell cell = values.get(key);
+
+		if (cell == null || !cell.isShared())
+			return cell;
+
+		TableCell own = new TableCell(cell);
+		values.put(key, own);
+
+		return own;
+	}
+
+	/**
+	 * Check if the row contains a value for a key, without creating its cell
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public boolean containsKey(String key) {
+		return values.getCode(key) != null;
 	}
 
 	/**
@@ -246,17 +349,26 @@ public class TableRow implements Checkable {
 		return getField(field, false);
 	}
 
-	private String getField(String field, boolean label) {
+	/**
+	 * Get the code of a field as it is stored
+	 * 
+	 * @param field
+	 * @return the code or null if the field is not present
+	 */
+	String getRawCode(String field) {
+		return values.getCode(field);
+	}
 
-		TableCell value = this.get(field);
+	private String getField(String field, boolean label) {
 
-		if (value == null || value.isEmpty())
+		// read the value without creating its cell
+		if (values.isEmpty(field))
 			return "";
 
 		if (label)
-			return value.getLabel();
+			return values.getLabel(field);
 		else
-			return value.getCode();
+			return values.getCode(field);
 	}
 
 	public void setChildrenError() {
@@ -268,8 +380,8 @@ public class TableRow implements Checkable {
 	}
 
 	public boolean hasChildrenError() {
-		TableCell value = this.get(AppPaths.CHILDREN_CONTAIN_ERRORS_COL);
-		return value != null && value.getCode() != null && BooleanValue.isTrue(value.getCode());
+		String code = values.getCode(AppPaths.CHILDREN_CONTAIN_ERRORS_COL);
+		return code != null && BooleanValue.isTrue(code);
 	}
 
 	/**
@@ -279,14 +391,51 @@ public class TableRow implements Checkable {
 	 * @param value
 	 */
 	public void put(String key, TableCell value) {
+
+		// the cell of the row was modified and put back (the shared cells
+		// cannot be modified)
+		if (values.holds(key, value) && !value.isShared())
+			markChanged(key);
+		else if (value == null)
+			trackChange(key, null, null);
+		else
+			trackChange(key, value.getCode(), value.getLabel());
+
 		values.put(key, value);
 	}
 
+	/**
+	 * Put a cell using the position of its column in the
+	 * {@link TableSchema#getColumnSlots()} of the schema (fast path for the
+	 * rows read from the database, the column is not marked as changed)
+	 * 
+	 * @param slot
+	 * @param key
+	 * @param value
+	 */
+	public void putAt(int slot, String key, TableCell value) {
+		values.putAt(slot, key, value);
+	}
+
+	/**
+	 * Put a value whose code is equal to the label using the position of its
+	 * column in the {@link TableSchema#getColumnSlots()} of the schema
+	 * 
+	 * @param slot
+	 * @param key
+	 * @param value
+	 */
+	public void putTextAt(int slot, String key, String value) {
+		values.putAt(slot, key, value == null ? "" : value);
+	}
+
 	public void put(String key, int value) {
 
-		String v = String.valueOf(value);
+		String text = String.valueOf(value);
+
+		trackChange(key, text, text);
 
-		this.put(key, new TableCell(v, v));
+		this.values.putText(key, text);
 	}
 
 	/**
@@ -343,12 +492,16 @@ public class TableRow implements Checkable {
 
 				row = new TableCell();
 			} else {
-				row = new TableCell(selection);
+				row = PicklistCells.get(picklist, selection);
 			}
 		} else {
-			row = new TableCell();
-			row.setCode(value);
-			row.setLabel(value);
+
+			String text = value == null ? "" : value;
+
+			// code equal to the label
+			trackChange(key, text, text);
+			this.values.putText(key, text);
+			return;
 		}
 
 		this.put(key, row);
@@ -360,9 +513,195 @@ public class TableRow implements Checkable {
 	 * @param key
 	 */
 	public void remove(String key) {
+
+		if (values.getCode(key) != null)
+			markChanged(key);
+
 		this.values.remove(key);
 	}
 
+	/**
+	 * Mark a column as changed if the new value is different from the current
+	 * one, or if the current cell was modified in place (the value is compared
+	 * with the modified cell)
+	 * 
+	 * @param key
+	 * @param code  new code
+	 * @param label new label
+	 */
+	private void trackChange(String key, String code, String label) {
+
+		if (values.isChanged(key)) {
+			markChanged(key);
+			return;
+		}
+
+		if (Objects.equals(values.getCode(key), code) && Objects.equals(values.getLabel(key), label))
+			return;
+
+		markChanged(key);
+	}
+
+	/**
+	 * Mark a column as changed
+	 * 
+	 * @param key
+	 */
+	private void markChanged(String key) {
+
+		// without the schema the columns cannot be tracked
+		if (schema == null) {
+			allChanged = true;
+			return;
+		}
+
+		ColumnSlots slots = schema.getColumnSlots();
+
+		int slot = slots.indexOf(key);
+
+		// not a column of the table
+		if (slot < 0)
+			return;
+
+		if (changes == null || changesSlots != slots) {
+
+			// the columns of the schema were changed
+			if (changes != null)
+				allChanged = true;
+
+			changes = new BitSet(slots.size());
+			changesSlots = slots;
+		}
+
+		changes.set(slot);
+	}
+
+	/**
+	 * Check if a column was changed since the row was read from the database or
+	 * saved. The cells returned by {@link #get(String)} and modified in place
+	 * are changed too, even if they were not put back into the row
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public boolean isChanged(String key) {
+
+		if (allChanged || values.isChanged(key))
+			return true;
+
+		if (changes == null)
+			return false;
+
+		// the columns of the schema were changed
+		if (schema == null || changesSlots != schema.getColumnSlots())
+			return true;
+
+		int slot = changesSlots.indexOf(key);
+
+		return slot >= 0 && changes.get(slot);
+	}
+
+	/**
+	 * Check if any column was changed since the row was read from the database
+	 * or saved
+	 * 
+	 * @return
+	 */
+	public boolean hasChanges() {
+		return allChanged || (changes != null && !changes.isEmpty()) || values.hasChangedCells();
+	}
+
+	/**
+	 * Get the columns of the schema which were changed since the row was read
+	 * from the database or saved
+	 * 
+	 * @return
+	 */
+	public Collection<String> getChangedColumns() {
+
+		Collection<String> changed = new ArrayList<>();
+
+		if (schema == null || !hasChanges())
+			return changed;
+
+		for (TableColumn col : schema) {
+			if (isChanged(col.getId()))
+				changed.add(col.getId());
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Mark as changed also the columns changed in another version of the same
+	 * row
+	 * 
+	 * @param row
+	 */
+	public void mergeChanges(TableRow row) {
+
+		if (row.allChanged) {
+			allChanged = true;
+			return;
+		}
+
+		for (String key : row.getChangedColumns())
+			markChanged(key);
+	}
+
+	/**
+	 * Mark all the columns as not changed (the row is equal to the one in the
+	 * database)
+	 */
+	public void clearChanges() {
+		this.values.clearChangedCells();
+		this.changes = null;
+		this.changesSlots = null;
+		this.allChanged = false;
+	}
+
+	/**
+	 * Mark as not changed the columns whose value is equal to the one of a copy
+	 * of the row which was saved in the database. The columns modified again
+	 * after the copy was made stay changed
+	 * 
+	 * @param saved
+	 */
+	public void clearSavedChanges(TableRow saved) {
+
+		if (schema == null || saved.schema != schema)
+			return;
+
+		boolean allSaved = true;
+
+		for (TableColumn col : schema) {
+
+			String key = col.getId();
+
+			if (!isChanged(key))
+				continue;
+
+			if (!Objects.equals(values.getCode(key), saved.values.getCode(key))
+					|| !Objects.equals(values.getLabel(key), saved.values.getLabel(key))) {
+				allSaved = false;
+				continue;
+			}
+
+			values.clearChanged(key);
+
+			if (changes != null && changesSlots == schema.getColumnSlots()) {
+
+				int slot = changesSlots.indexOf(key);
+
+				if (slot >= 0)
+					changes.clear(slot);
+			}
+		}
+
+		if (allSaved)
+			clearChanges();
+	}
+
 	public void Initialise(String colId) {
 
 		TableColumn col = schema.getById(colId);
@@ -443,11 +782,10 @@ public class TableRow implements Checkable {
 				this.put(col.getId(), value);
 		} else if (h == XlsxHeader.LABEL_FORMULA && !col.getLabelFormula().isEmpty()) {
 
-			TableCell colVal = this.get(col.getId());
+			TableCell current = values.get(col.getId());
 
-			// if no value found, initialise
-			if (colVal == null)
-				colVal = new TableCell();
+			// work on a copy to detect the change when it is put back
+			TableCell colVal = current == null ? new TableCell() : new TableCell(current);
 
 			colVal.setLabel(value);
 
@@ -487,6 +825,31 @@ public class TableRow implements Checkable {
 		}
 	}
 
+	/**
+	 * Update the values of the row applying only the formulas of the changed
+	 * columns and of the columns which depend on them
+	 * 
+	 * @param changedColumns ids of the columns whose value was changed
+	 */
+	public void updateFormulas(Collection<String> changedColumns) {
+
+		FormulaSolver solver = new FormulaSolver(this);
+
+		try {
+			solver.solveDependents(XlsxHeader.CODE_FORMULA.getHeaderName(), changedColumns);
+		} catch (FormulaException e) {
+			e.printStackTrace();
+			LOGGER.error("Cannot solve row formulas", e);
+		}
+
+		try {
+			solver.solveDependents(XlsxHeader.LABEL_FORMULA.getHeaderName(), changedColumns);
+		} catch (FormulaException e) {
+			e.printStackTrace();
+			LOGGER.error("Cannot solve row formulas", e);
+		}
+	}
+
 	/**
 	 * Save the current row into the database (this is an insert operation! Multiple
 	 * calls create multiple rows). Return the new id of the database
@@ -504,6 +867,10 @@ public class TableRow implements Checkable {
 	 * Update the row in the database
 	 */
 	public void update() {
+
+		// the edits waiting in the queue are older
+		RowWriteQueue.flush();
+
 		TableDao dao = new TableDao();
 		dao.update(this);
 	}
@@ -571,7 +938,7 @@ public class TableRow implements Checkable {
 			return new TableCell();
 		}
 
-		return new TableCell(sel);
+		return PicklistCells.get(picklistKey, sel);
 	}
 
 	/**
@@ -622,9 +989,7 @@ public class TableRow implements Checkable {
 
 			if (column.isMandatory(this)) {
 
-				TableCell value = this.get(column.getId());
-
-				if (value == null || value.isEmpty())
+				if (values.isEmpty(column.getId()))
 					notFilled.add(column);
 			}
 		}
@@ -645,9 +1010,7 @@ public class TableRow implements Checkable {
 
 			if (!column.isConditionallyMandatory() && column.isMandatory() && column.isEditable(this)) {
 
-				TableCell value = this.get(column.getId());
-
-				if (value == null || value.isEmpty())
+				if (values.isEmpty(column.getId()))
 					notFilled.add(column);
 			}
 		}
@@ -670,7 +1033,7 @@ public class TableRow implements Checkable {
 			return false;
 
 		// for each column of the row
-		for (String key : this.values.keySet()) {
+		for (String key : this.values.keys()) {
 
 			// skip the id of the table since we do
 			// not have a column for that in the schema
@@ -685,8 +1048,8 @@ public class TableRow implements Checkable {
 				continue;
 
 			// here we are comparing a part of the natural key
-			TableCell value1 = this.get(key);
-			TableCell value2 = other.get(key);
+			TableCell value1 = this.values.get(key);
+			TableCell value2 = other.values.get(key);
 
 			// cannot compare two empty values (it would return
 			// equal but actually they simply have a missing value)
@@ -705,7 +1068,8 @@ public class TableRow implements Checkable {
 	}
 
 	/**
-	 * Convert the row into an xml
+	 * Convert the row into an xml. Use {@link RowXmlSerializer} to write the row
+	 * directly into a stream
 	 * 
 	 * @return
 	 */
@@ -713,24 +1077,8 @@ public class TableRow implements Checkable {
 
 		StringBuilder sb = new StringBuilder();
 
-		for (TableColumn column : schema) {
-
-			String rowValue = this.getCode(column.getId());
-
-			// skip non output columns and non mandatory fields which are empty
-			if (!column.isPutInOutput(this) || (!column.isMandatory(this) && rowValue.isEmpty()))
-				continue;
-
-			TableCell value = this.get(column.getId());
-
-			if (value == null)
-				continue;
-
-			String node = getXmlNode(column.getXmlTag(), value.getCode());
-
-			// write the node
-			sb.append(node);
-		}
+		// write the output nodes, skipping non mandatory fields which are empty
+		RowXmlSerializer.of(schema).append(this, sb);
 
 		// if add root return the wrapped version
 		if (addRoot) {
@@ -787,12 +1135,9 @@ public class TableRow implements Checkable {
 	 * @param row
 	 */
 	public void copyValues(TableRow row) {
-		for (String key : row.values.keySet()) {
-
-			TableCell cell = row.get(key);
-			TableCell copy = new TableCell(cell.getCode(), cell.getLabel());
-
-			this.put(key, copy);
+		for (String key : row.values.keys()) {
+			trackChange(key, row.values.getCode(key), row.values.getLabel(key));
+			this.values.copy(key, row.values);
 		}
 	}
 
@@ -816,13 +1161,13 @@ public class TableRow implements Checkable {
 
 		print.append("ID: " + getDatabaseId() + "\n");
 
-		for (String key : this.values.keySet()) {
+		for (String key : this.values.keys()) {
 
 			print.append("Column: " + key);
 
-			if (values.get(key) != null) {
-				print.append(" code=" + values.get(key).getCode());
-				print.append(";value=" + values.get(key).getLabel());
+			if (values.getCode(key) != null) {
+				print.append(" code=" + values.getCode(key));
+				print.append(";value=" + values.getLabel(key));
 				print.append("\n");
 			}
 		}
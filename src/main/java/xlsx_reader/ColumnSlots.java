@@ -0,0 +1,74 @@
+package xlsx_reader;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Position of each column of a {@link TableSchema} in the compact storage of
+ * the rows. The table id field has the last position. The object is immutable
+ * and shared by all the rows of the schema; if the columns of the schema
+ * change a new object is created, while the existing rows keep the old one.
+ *
+ * @author shahaal
+ *
+ */
+public class ColumnSlots {
+
+	private final String[] ids;
+	private final Map<String, Integer> slots;
+
+	ColumnSlots(TableSchema schema) {
+
+		int size = schema.size() + (schema.getTableIdField() != null ? 1 : 0);
+
+		this.ids = new String[size];
+		this.slots = new HashMap<>(size * 2);
+
+		for (int i = 0; i < schema.size(); ++i)
+			addSlot(schema.get(i).getId());
+
+		if (schema.getTableIdField() != null)
+			addSlot(schema.getTableIdField());
+	}
+
+	private void addSlot(String id) {
+
+		// duplicated ids share the first slot
+		if (id == null || slots.containsKey(id))
+			return;
+
+		int slot = slots.size();
+		ids[slot] = id;
+		slots.put(id, slot);
+	}
+
+	/**
+	 * Get the position of a column
+	 *
+	 * @param id id of the column or table id field
+	 * @return the position or -1 if the id is not part of the schema
+	 */
+	public int indexOf(String id) {
+		Integer slot = slots.get(id);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * Get the id of the column in a position
+	 *
+	 * @param slot
+	 * @return
+	 */
+	public String getId(int slot) {
+		return ids[slot];
+	}
+
+	/**
+	 * Get the number of positions
+	 *
+	 * @return
+	 */
+	public int size() {
+		return slots.size();
+	}
+}
@@ -2,8 +2,6 @@ package xlsx_reader;
 
 import java.io.IOException;
 
-import org.apache.poi.ss.usermodel.Row;
-
 import table_skeleton.TableColumnBuilder;
 import xlsx_reader.TableHeaders.XlsxHeader;
 
@@ -116,12 +114,12 @@ public class SchemaReader extends XlsxReader {
 	}
 
 	@Override
-	public void startRow(Row row) {
+	public void startRow(int rowNum) {
 		this.builder = new TableColumnBuilder();
 	}
 
 	@Override
-	public void endRow(Row row) {
+	public void endRow(int rowNum) {
 		schema.add(builder.build());
 		builder = null;
 	}
@@ -0,0 +1,404 @@
+package xlsx_reader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+
+import app_config.AppPaths;
+import global_utils.DataStreams;
+import global_utils.FileUtils;
+
+/**
+ * Contents of the cells of a .xlsx configuration file (tables schemas,
+ * relations and tables list). The workbook is opened with POI only once, all
+ * its sheets are read and the contents are saved in a binary file in
+ * {@link AppPaths#CACHE_FOLDER}. The binary file is used instead of the .xlsx
+ * while the size, the last modification time and the checksum of the .xlsx do
+ * not change.
+ *
+ * @author shahaal
+ *
+ */
+public class SchemaWorkbook {
+
+	private static final Logger LOGGER = LogManager.getLogger(SchemaWorkbook.class);
+
+	private static final int MAGIC = 0x52434c53; // RCLS
+	private static final int FORMAT_VERSION = 2;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final String SNAPSHOT_FOLDER = AppPaths.CACHE_FOLDER + "schemas"
+			+ System.getProperty("file.separator");
+
+	// loaded workbooks, using the absolute path as key
+	private static final Map<String, SchemaWorkbook> cache = new HashMap<>();
+
+	private final File file;
+	private final long size;
+	private final long lastModified;
+	private final Map<String, SheetContents> sheets;
+
+	private SchemaWorkbook(File file, long size, long lastModified, Map<String, SheetContents> sheets) {
+		this.file = file;
+		this.size = size;
+		this.lastModified = lastModified;
+		this.sheets = sheets;
+	}
+
+	/**
+	 * Get the contents of a .xlsx file
+	 *
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	public static synchronized SchemaWorkbook get(String filename) throws IOException {
+
+		File file = new File(filename).getAbsoluteFile();
+
+		if (!file.exists())
+			throw new IOException("The file " + filename + " does not exist");
+
+		SchemaWorkbook workbook = cache.get(file.getPath());
+
+		// reload if the file was changed
+		if (workbook == null || workbook.size != file.length() || workbook.lastModified != file.lastModified()) {
+			workbook = load(file);
+			cache.put(file.getPath(), workbook);
+		}
+
+		return workbook;
+	}
+
+	/**
+	 * Remove the loaded workbooks from memory
+	 */
+	public static synchronized void clearCache() {
+		cache.clear();
+	}
+
+	/**
+	 * Get the names of the sheets, in the workbook order
+	 *
+	 * @return
+	 */
+	public List<String> getSheetNames() {
+		return new ArrayList<>(sheets.keySet());
+	}
+
+	/**
+	 * Get the contents of a sheet
+	 *
+	 * @param sheetName
+	 * @return the contents or null if the sheet does not exist
+	 */
+	SheetContents getSheet(String sheetName) {
+		return sheets.get(sheetName);
+	}
+
+	public String getFilename() {
+		return file.getPath();
+	}
+
+	/**
+	 * Load the workbook from the binary file if valid, otherwise from the .xlsx
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	private static SchemaWorkbook load(File file) throws IOException {
+
+		long size = file.length();
+		long lastModified = file.lastModified();
+		long checksum = FileUtils.checksum(file);
+
+		File snapshot = getSnapshotFile(file);
+
+		Map<String, SheetContents> sheets = readSnapshot(snapshot, size, lastModified, checksum);
+
+		if (sheets == null) {
+
+			long start = System.currentTimeMillis();
+
+			sheets = readWorkbook(file);
+
+			LOGGER.info("Read " + sheets.size() + " sheets of " + file + " in " + (System.currentTimeMillis() - start)
+					+ " ms");
+
+			writeSnapshot(snapshot, size, lastModified, checksum, sheets);
+		}
+
+		return new SchemaWorkbook(file, size, lastModified, sheets);
+	}
+
+	private static File getSnapshotFile(File file) {
+		// the path hash avoids collisions between files with the same name
+		return new File(SNAPSHOT_FOLDER + file.getName() + "." + Integer.toHexString(file.getPath().hashCode())
+				+ ".bin");
+	}
+
+	/**
+	 * Read all the sheets of the .xlsx
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	private static Map<String, SheetContents> readWorkbook(File file) throws IOException {
+
+		Map<String, SheetContents> sheets = new LinkedHashMap<>();
+
+		try (FileInputStream input = new FileInputStream(file);
+				Workbook workbook = WorkbookFactory.create(input);) {
+
+			for (int i = 0; i < workbook.getNumberOfSheets(); ++i) {
+				Sheet sheet = workbook.getSheetAt(i);
+				sheets.put(sheet.getSheetName(), readSheet(sheet));
+			}
+		}
+
+		return sheets;
+	}
+
+	/**
+	 * Read the cells of a sheet. The first row contains the headers, the cells
+	 * of the other rows are saved together with the header of their column.
+	 *
+	 * @param sheet
+	 * @return
+	 */
+	private static SheetContents readSheet(Sheet sheet) {
+
+		SheetContents contents = new SheetContents();
+
+		Iterator<Row> iterator = sheet.iterator();
+
+		while (iterator.hasNext()) {
+
+			Row row = iterator.next();
+
+			List<String[]> cells = row.getRowNum() != 0 ? new ArrayList<String[]>() : null;
+
+			Iterator<Cell> cellIterator = row.cellIterator();
+
+			while (cellIterator.hasNext()) {
+
+				Cell cell = cellIterator.next();
+
+				// if first row parse the headers
+				if (row.getRowNum() == 0) {
+					contents.headers.add(cell.getStringCellValue());
+					continue;
+				}
+
+				String value = null;
+
+				switch (cell.getCellType()) {
+				case STRING:
+					value = cell.getStringCellValue();
+					break;
+				case BOOLEAN:
+					value = String.valueOf(cell.getBooleanCellValue());
+					break;
+				case NUMERIC:
+
+					double number = cell.getNumericCellValue();
+
+					// cast to integer if it is an integer
+					if ((number == Math.floor(number)) && !Double.isInfinite(number)) {
+						value = String.valueOf((int) number);
+					} else {
+						value = String.valueOf(number);
+					}
+
+					break;
+
+				default:
+					break;
+				}
+
+				cells.add(new String[] { contents.headers.get(cell.getColumnIndex()), value });
+			}
+
+			// skip headers
+			if (cells != null) {
+				contents.rows.add(cells);
+				contents.rowNums.add(row.getRowNum());
+			}
+		}
+
+		return contents;
+	}
+
+	/**
+	 * Read the binary file if it is still valid
+	 *
+	 * @return the sheets or null if the file is not present or not valid
+	 */
+	private static Map<String, SheetContents> readSnapshot(File snapshot, long size, long lastModified,
+			long checksum) {
+
+		if (!snapshot.exists())
+			return null;
+
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(snapshot), BUFFER_SIZE));) {
+
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+				return null;
+
+			if (in.readLong() != size || in.readLong() != lastModified || in.readLong() != checksum)
+				return null;
+
+			Map<String, SheetContents> sheets = new LinkedHashMap<>();
+
+			int sheetsCount = in.readInt();
+			for (int i = 0; i < sheetsCount; ++i) {
+
+				String name = DataStreams.readString(in);
+				SheetContents contents = new SheetContents();
+
+				int headersCount = in.readInt();
+				for (int j = 0; j < headersCount; ++j)
+					contents.headers.add(DataStreams.readString(in));
+
+				int rowsCount = in.readInt();
+				for (int j = 0; j < rowsCount; ++j) {
+
+					contents.rowNums.add(in.readInt());
+
+					int cellsCount = in.readInt();
+					List<String[]> cells = new ArrayList<>(cellsCount);
+
+					for (int k = 0; k < cellsCount; ++k)
+						cells.add(new String[] { DataStreams.readString(in), DataStreams.readString(in) });
+
+					contents.rows.add(cells);
+				}
+
+				sheets.put(name, contents);
+			}
+
+			return sheets;
+
+		} catch (IOException e) {
+			LOGGER.warn("Cannot read the schema cache " + snapshot + ", the .xlsx will be read", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Save the sheets in the binary file
+	 */
+	private static void writeSnapshot(File snapshot, long size, long lastModified, long checksum,
+			Map<String, SheetContents> sheets) {
+
+		File folder = snapshot.getParentFile();
+		if (!folder.exists())
+			folder.mkdirs();
+
+		File temp = new File(snapshot.getPath() + ".tmp");
+
+		try {
+
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE));) {
+
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeLong(size);
+				out.writeLong(lastModified);
+				out.writeLong(checksum);
+
+				out.writeInt(sheets.size());
+
+				for (Map.Entry<String, SheetContents> sheet : sheets.entrySet()) {
+
+					DataStreams.writeString(out, sheet.getKey());
+
+					SheetContents contents = sheet.getValue();
+
+					out.writeInt(contents.headers.size());
+					for (String header : contents.headers)
+						DataStreams.writeString(out, header);
+
+					out.writeInt(contents.rows.size());
+					for (int j = 0; j < contents.rows.size(); ++j) {
+
+						List<String[]> cells = contents.rows.get(j);
+
+						out.writeInt(contents.rowNums.get(j));
+						out.writeInt(cells.size());
+
+						for (String[] cell : cells) {
+							DataStreams.writeString(out, cell[0]);
+							DataStreams.writeString(out, cell[1]);
+						}
+					}
+				}
+			}
+
+			Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		} catch (IOException e) {
+			LOGGER.warn("Cannot write the schema cache " + snapshot, e);
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Cells of a sheet
+	 */
+	static class SheetContents {
+
+		private final List<String> headers = new ArrayList<>();
+
+		// for each row (headers excluded) the pairs header, value
+		private final List<List<String[]>> rows = new ArrayList<>();
+
+		// for each row its number in the sheet
+		private final List<Integer> rowNums = new ArrayList<>();
+
+		public List<String> getHeaders() {
+			return Collections.unmodifiableList(headers);
+		}
+
+		public List<List<String[]>> getRows() {
+			return rows;
+		}
+
+		/**
+		 * Get the number in the sheet (0 based, the headers are the row 0) of
+		 * a row
+		 * 
+		 * @param index position of the row in {@link #getRows()}
+		 * @return
+		 */
+		public int getRowNum(int index) {
+			return rowNums.get(index);
+		}
+	}
+}
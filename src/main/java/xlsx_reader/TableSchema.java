@@ -9,6 +9,7 @@ import java.util.Comparator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import formula.FormulaDependencyGraph;
 import table_relations.Relation;
 import table_relations.RelationList;
 import table_skeleton.TableColumn;
@@ -24,6 +25,8 @@ public class TableSchema extends ArrayList<TableColumn> {
 	private String sheetName;
 	private String tableIdField;
 	private Collection<Relation> relations;
+	private FormulaDependencyGraph formulaDependencies;
+	private ColumnSlots columnSlots;
 	
 	/**
 	 * Set the sheet name related to the schema
@@ -32,6 +35,7 @@ public class TableSchema extends ArrayList<TableColumn> {
 	public void setSheetName(String sheetName) {
 		this.sheetName = sheetName;
 		this.tableIdField = sheetName + "Id";
+		this.columnSlots = null;
 
 		try {
 			this.relations = getParentTables();
@@ -176,6 +180,11 @@ public class TableSchema extends ArrayList<TableColumn> {
 	 */
 	public TableColumn getById(String id) {
 
+		// the slot is the position of the column if the ids are unique
+		int slot = getColumnSlots().indexOf(id);
+		if (slot >= 0 && slot < size() && get(slot).getId().equals(id))
+			return get(slot);
+
 		for (TableColumn c : this) {
 			if (c.getId().equals(id))
 				return c;
@@ -201,6 +210,34 @@ public class TableSchema extends ArrayList<TableColumn> {
 		return out;
 	}
 	
+	/**
+	 * Get the dependencies between the columns formulas
+	 * @return
+	 */
+	public FormulaDependencyGraph getFormulaDependencies() {
+		
+		if (formulaDependencies == null)
+			formulaDependencies = new FormulaDependencyGraph(this);
+		
+		return formulaDependencies;
+	}
+	
+	/**
+	 * Get the positions of the columns in the rows of the schema
+	 * @return
+	 */
+	public ColumnSlots getColumnSlots() {
+		
+		ColumnSlots slots = columnSlots;
+		
+		if (slots == null) {
+			slots = new ColumnSlots(this);
+			columnSlots = slots;
+		}
+		
+		return slots;
+	}
+	
 	@Override
 	public boolean add(TableColumn arg0) {
 		
@@ -217,12 +254,16 @@ public class TableSchema extends ArrayList<TableColumn> {
 	 */
 	public void sort() {
 		Collections.sort(this);
+		this.formulaDependencies = null;
+		this.columnSlots = null;
 	}
 	
 	/**
 	 * Sort columns by id
 	 */
 	public void sortById() {
+		this.formulaDependencies = null;
+		this.columnSlots = null;
 		Collections.sort(this, new Comparator<TableColumn>() {
 
 			@Override
@@ -6,9 +6,9 @@ import java.util.HashMap;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.poi.ss.usermodel.Sheet;
 
 import app_config.AppPaths;
+import formula.Formula;
 import table_list.TableListParser;
 import table_relations.RelationParser;
 
@@ -32,37 +32,48 @@ public class TableSchemaList extends ArrayList<TableSchema> {
 
 			TableSchemaList list = new TableSchemaList();
 
-			SchemaReader parser = new SchemaReader(tablesSchemaFilename);
+			// the workbook is read only once, each sheet is parsed from its cells
+			SchemaWorkbook workbook = SchemaWorkbook.get(tablesSchemaFilename);
 
-			for (int i = 0; i < parser.getNumberOfSheets(); ++i) {
-
-				parser = new SchemaReader(tablesSchemaFilename);
-
-				Sheet sheet = parser.getSheetAt(i);
+			for (String sheetName : workbook.getSheetNames()) {
 
 				// skip special sheets
-				if (RelationParser.isRelationsSheet(sheet.getSheetName())
-						|| TableListParser.isTablesSheet(sheet.getSheetName()))
+				if (RelationParser.isRelationsSheet(sheetName) || TableListParser.isTablesSheet(sheetName))
 					continue;
 
+				SchemaReader parser = new SchemaReader(tablesSchemaFilename);
+
 				// parse
-				parser.read(sheet.getSheetName());
+				parser.read(sheetName);
 
 				// get parsed schema
 				TableSchema schema = parser.getSchema();
 
+				// check the formulas dependencies (cycles are reported)
+				schema.getFormulaDependencies();
+
 				// add to cache
 				list.add(schema);
+
+				parser.close();
 			}
 
 			schemasCache.put(tablesSchemaFilename, list);
-
-			parser.close();
 		}
 
 		return schemasCache.get(tablesSchemaFilename);
 	}
 
+	/**
+	 * Remove the loaded schemas (and the formulas compiled for them), in order to
+	 * read again the schema files at the next request
+	 */
+	public static void clearCache() {
+		schemasCache = null;
+		SchemaWorkbook.clearCache();
+		Formula.clearCache();
+	}
+
 	/**
 	 * Get all the table schemas which were defined by the user
 	 * 
@@ -5,17 +5,18 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.List;
 
-import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
 
 import app_config.BooleanValue;
+import xlsx_reader.SchemaWorkbook.SheetContents;
 
 /**
  * Read the configuration of tables from the .xlsx. Output all the columns in
@@ -30,21 +31,74 @@ public abstract class XlsxReader implements Closeable {
 
 	private ArrayList<String> headers;
 	private String filename;
+	private SchemaWorkbook contents;
 	private InputStream inputStream;
 	private Workbook workbook;
 
+	// the subclass still uses the POI rows of the deprecated hooks
+	private final boolean poiRows;
+
+	/**
+	 * Open the .xlsx file. The cells are read from the {@link SchemaWorkbook}
+	 * cache, the workbook is opened with POI only if its sheets are requested
+	 * 
+	 * @param filename
+	 * @throws IOException
+	 */
 	public XlsxReader(String filename) throws IOException {
 		this.filename = filename;
-		this.inputStream = new FileInputStream(new File(filename));
-		this.workbook = WorkbookFactory.create(inputStream);
+		this.contents = SchemaWorkbook.get(filename);
 		this.headers = new ArrayList<>();
+		this.poiRows = overrides("startRow") || overrides("endRow");
+	}
+
+	/**
+	 * Check if the subclass overrides a deprecated row hook
+	 * 
+	 * @param hook
+	 * @return
+	 */
+	private boolean overrides(String hook) {
+		try {
+			return getClass().getMethod(hook, Row.class).getDeclaringClass() != XlsxReader.class;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Open the workbook with POI if not done yet
+	 * 
+	 * @return
+	 */
+	private Workbook getWorkbook() {
+
+		if (workbook == null) {
+			try {
+				this.inputStream = new FileInputStream(new File(filename));
+				this.workbook = WorkbookFactory.create(inputStream);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		return workbook;
 	}
 
 	/**
 	 * Get the number of sheets
 	 */
 	public int getNumberOfSheets() {
-		return this.workbook.getNumberOfSheets();
+		return contents.getSheetNames().size();
+	}
+
+	/**
+	 * Get the names of the sheets, in the workbook order
+	 * 
+	 * @return
+	 */
+	public List<String> getSheetNames() {
+		return contents.getSheetNames();
 	}
 
 	/**
@@ -53,7 +107,7 @@ public abstract class XlsxReader implements Closeable {
 	 * @param sheetName
 	 */
 	public Sheet getSheet(String sheetName) {
-		return this.workbook.getSheet(sheetName);
+		return getWorkbook().getSheet(sheetName);
 	}
 
 	/**
@@ -62,7 +116,7 @@ public abstract class XlsxReader implements Closeable {
 	 * @param sheetId
 	 */
 	public Sheet getSheetAt(int sheetId) {
-		return this.workbook.getSheetAt(sheetId);
+		return getWorkbook().getSheetAt(sheetId);
 	}
 
 	/**
@@ -74,8 +128,8 @@ public abstract class XlsxReader implements Closeable {
 
 		Collection<Sheet> sheets = new ArrayList<>();
 
-		for (int i = 0; i < workbook.getNumberOfSheets(); ++i) {
-			sheets.add(workbook.getSheetAt(i));
+		for (int i = 0; i < getWorkbook().getNumberOfSheets(); ++i) {
+			sheets.add(getWorkbook().getSheetAt(i));
 		}
 
 		return sheets;
@@ -85,73 +139,44 @@ public abstract class XlsxReader implements Closeable {
 	 * Read the first sheet
 	 */
 	public void readFirstSheet() throws IOException {
-		String firstSheetName = workbook.getSheetName(0);
+		String firstSheetName = contents.getSheetNames().get(0);
 		this.read(firstSheetName);
 	}
 
 	/**
-	 * Read the excel workbook
+	 * Read the excel workbook. The cells are read from the
+	 * {@link SchemaWorkbook} cache, the workbook is opened with POI only if the
+	 * subclass uses the deprecated {@link #startRow(Row)} and
+	 * {@link #endRow(Row)}
 	 * 
 	 * @throws IOException
 	 */
 	public void read(String sheetName) throws IOException {
 
-		Sheet firstSheet = workbook.getSheet(sheetName);
-		Iterator<Row> iterator = firstSheet.iterator();
-
-		while (iterator.hasNext()) {
-
-			Row row = iterator.next();
-
-			if (row.getRowNum() != 0)
-				startRow(row);
+		SheetContents sheet = contents.getSheet(sheetName);
 
-			Iterator<Cell> cellIterator = row.cellIterator();
+		if (sheet == null)
+			throw new IOException("No sheet " + sheetName + " found in " + filename);
 
-			while (cellIterator.hasNext()) {
+		headers.addAll(sheet.getHeaders());
 
-				Cell cell = cellIterator.next();
+		Sheet poiSheet = poiRows ? getSheet(sheetName) : null;
 
-				// if first row parse the headers
-				if (row.getRowNum() == 0) {
-					headers.add(cell.getStringCellValue());
-					continue;
-				}
+		List<List<String[]>> rows = sheet.getRows();
 
-				// else
+		for (int i = 0; i < rows.size(); ++i) {
 
-				String value = null;
+			int rowNum = sheet.getRowNum(i);
+			Row row = poiSheet == null ? null : poiSheet.getRow(rowNum);
 
-				switch (cell.getCellType()) {
-				case STRING:
-					value = cell.getStringCellValue();
-					break;
-				case BOOLEAN:
-					value = String.valueOf(cell.getBooleanCellValue());
-					break;
-				case NUMERIC:
+			startRow(rowNum);
+			startRow(row);
 
-					double number = cell.getNumericCellValue();
+			for (String[] cell : rows.get(i))
+				processCell(cell[0], cell[1]);
 
-					// cast to integer if it is an integer
-					if ((number == Math.floor(number)) && !Double.isInfinite(number)) {
-						value = String.valueOf((int) number);
-					} else {
-						value = String.valueOf(number);
-					}
-
-					break;
-
-				default:
-					break;
-				}
-
-				processCell(headers.get(cell.getColumnIndex()), value);
-			}
-
-			// skip headers
-			if (row.getRowNum() != 0)
-				endRow(row);
+			endRow(rowNum);
+			endRow(row);
 		}
 	}
 
@@ -179,6 +204,10 @@ public abstract class XlsxReader implements Closeable {
 	}
 
 	public void close() throws IOException {
+
+		if (workbook == null)
+			return;
+
 		inputStream.close();
 		workbook.close();
 	}
@@ -194,14 +223,36 @@ public abstract class XlsxReader implements Closeable {
 	/**
 	 * Called before a row is read
 	 * 
-	 * @param row
+	 * @param rowNum number of the row in the sheet (0 based, the headers are
+	 *               the row 0)
 	 */
-	public abstract void startRow(Row row);
+	public void startRow(int rowNum) {}
 
 	/**
 	 * Called after a row is read
 	 * 
+	 * @param rowNum number of the row in the sheet (0 based, the headers are
+	 *               the row 0)
+	 */
+	public void endRow(int rowNum) {}
+
+	/**
+	 * Called before a row is read, after {@link #startRow(int)}
+	 * 
+	 * @param row
+	 * @deprecated use {@link #startRow(int)}, the workbook is opened with POI
+	 *             to get the rows if a subclass overrides this method
+	 */
+	@Deprecated
+	public void startRow(Row row) {}
+
+	/**
+	 * Called after a row is read, after {@link #endRow(int)}
+	 * 
 	 * @param row
+	 * @deprecated use {@link #endRow(int)}, the workbook is opened with POI to
+	 *             get the rows if a subclass overrides this method
 	 */
-	public abstract void endRow(Row row);
+	@Deprecated
+	public void endRow(Row row) {}
 }
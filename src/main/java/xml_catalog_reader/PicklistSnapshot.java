@@ -0,0 +1,189 @@
+package xml_catalog_reader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import app_config.AppPaths;
+import global_utils.DataStreams;
+import global_utils.FileUtils;
+
+/**
+ * Binary copy of the parsed contents of a picklist .xml file, which is stored
+ * in {@link AppPaths#CACHE_FOLDER}. The snapshot records the size, the last
+ * modification time and the checksum of the .xml file, and it is used only if
+ * all of them still match the file.
+ *
+ * @author shahaal
+ *
+ */
+class PicklistSnapshot {
+
+	private static final Logger LOGGER = LogManager.getLogger(PicklistSnapshot.class);
+
+	private static final int MAGIC = 0x52434c50; // RCLP
+	private static final int FORMAT_VERSION = 1;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final String SNAPSHOT_FOLDER = AppPaths.CACHE_FOLDER + "picklists"
+			+ System.getProperty("file.separator");
+
+	private final File xml;
+	private final File snapshot;
+
+	/**
+	 * @param xml the picklist .xml file
+	 */
+	public PicklistSnapshot(File xml) {
+		this.xml = xml;
+		this.snapshot = new File(SNAPSHOT_FOLDER + xml.getName() + ".bin");
+	}
+
+	/**
+	 * Read the snapshot if it is still valid for the .xml file
+	 *
+	 * @return the contents, or null if no valid snapshot is present
+	 */
+	public XmlContents read() {
+
+		if (!snapshot.exists())
+			return null;
+
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(snapshot), BUFFER_SIZE));) {
+
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+				return null;
+
+			long size = in.readLong();
+			long lastModified = in.readLong();
+			long checksum = in.readLong();
+
+			if (size != xml.length() || lastModified != xml.lastModified() || checksum != FileUtils.checksum(xml))
+				return null;
+
+			return readContents(in);
+
+		} catch (IOException e) {
+			LOGGER.warn("Cannot read picklist snapshot " + snapshot + ", the xml will be parsed", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Save the parsed contents of the .xml file
+	 *
+	 * @param contents
+	 */
+	public void write(XmlContents contents) {
+
+		File folder = new File(SNAPSHOT_FOLDER);
+		if (!folder.exists())
+			folder.mkdirs();
+
+		File temp = new File(snapshot.getPath() + ".tmp");
+
+		try {
+
+			long size = xml.length();
+			long lastModified = xml.lastModified();
+			long checksum = FileUtils.checksum(xml);
+
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE));) {
+
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeLong(size);
+				out.writeLong(lastModified);
+				out.writeLong(checksum);
+
+				writeContents(out, contents);
+			}
+
+			Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		} catch (IOException e) {
+			LOGGER.warn("Cannot write picklist snapshot " + snapshot, e);
+			temp.delete();
+		}
+	}
+
+	private static void writeContents(DataOutputStream out, XmlContents contents) throws IOException {
+
+		DataStreams.writeString(out, contents.getCode());
+		out.writeInt(contents.getElements().size());
+
+		for (SelectionList list : contents.getElements()) {
+
+			DataStreams.writeString(out, list.getId());
+			DataStreams.writeString(out, list.getListCode());
+			out.writeInt(list.getSelections().size());
+
+			for (Selection sel : list.getSelections()) {
+
+				DataStreams.writeString(out, sel.getListId());
+				DataStreams.writeString(out, sel.getCode());
+				DataStreams.writeString(out, sel.getDescription());
+
+				Map<String, String> data = sel.getAllData();
+
+				if (data == null) {
+					out.writeInt(0);
+					continue;
+				}
+
+				out.writeInt(data.size());
+				for (Map.Entry<String, String> entry : data.entrySet()) {
+					DataStreams.writeString(out, entry.getKey());
+					DataStreams.writeString(out, entry.getValue());
+				}
+			}
+		}
+	}
+
+	private static XmlContents readContents(DataInputStream in) throws IOException {
+
+		XmlContents contents = new XmlContents();
+		contents.setCode(DataStreams.readString(in));
+
+		int lists = in.readInt();
+		for (int i = 0; i < lists; ++i) {
+
+			SelectionList list = new SelectionList();
+			list.setId(DataStreams.readString(in));
+			list.setListCode(DataStreams.readString(in));
+
+			int selections = in.readInt();
+			for (int j = 0; j < selections; ++j) {
+
+				Selection sel = new Selection();
+				sel.setListId(DataStreams.readString(in));
+				sel.setCode(DataStreams.readString(in));
+				sel.setDescription(DataStreams.readString(in));
+
+				int data = in.readInt();
+				for (int k = 0; k < data; ++k)
+					sel.addData(DataStreams.readString(in), DataStreams.readString(in));
+
+				list.add(sel);
+			}
+
+			// same order of the parser, the list is indexed when added
+			contents.addElement(list);
+		}
+
+		return contents;
+	}
+}
@@ -1,6 +1,7 @@
 package xml_catalog_reader;
 
 import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -73,6 +74,15 @@ public class Selection {
 		return data.get(key);
 	}
 
+	/**
+	 * Get all the optional data of the selection
+	 * 
+	 * @return
+	 */
+	Map<String, String> getAllData() {
+		return data;
+	}
+
 	public Integer getNumData(String key) {
 		String data = getData(key);
 		if (data == null)
@@ -2,6 +2,8 @@ package xml_catalog_reader;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * List of {@link Selection}, this class represents the structure of a
@@ -14,9 +16,11 @@ public class SelectionList {
 	private String listCode;                   // name of the main .xml node of the document
 	private String id;                         // id of the selection list (e.g. BSE, SCRAPIE)
 	private Collection<Selection> selections;  // list of selections contained in the .xml
+	private Map<String, Selection> selectionsByCode;  // first selection of each code
 	
 	public SelectionList() {
 		selections = new ArrayList<>();
+		selectionsByCode = new HashMap<>();
 	}
 	
 	public void setId(String id) {
@@ -32,7 +36,11 @@ public class SelectionList {
 	 * @param selection
 	 */
 	public void add(Selection selection) {
+		
 		selections.add(selection);
+		
+		if (selection.getCode() != null)
+			selectionsByCode.putIfAbsent(selection.getCode(), selection);
 	}
 	
 	public boolean contains(Selection selection) {
@@ -64,12 +72,7 @@ public class SelectionList {
 	}
 	
 	public Selection getSelectionByCode(String code) {
-		for (Selection sel : selections) {
-			if (sel.getCode().equals(code))
-				return sel;
-		}
-		
-		return null;
+		return selectionsByCode.get(code);
 	}
 	
 	@Override
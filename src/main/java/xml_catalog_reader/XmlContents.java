@@ -2,6 +2,10 @@ package xml_catalog_reader;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Class which represents an entire .xml configuration document
@@ -12,17 +16,42 @@ public class XmlContents {
 
 	private String code;                         // code of the main node of the .xml
 	private Collection<SelectionList> elements;  // list of selection lists of the .xml
+	private Map<String, Selection> selectionsByCode;        // first selection of each code
+	private Map<String, List<SelectionList>> listsById;     // lists grouped by id
 	
 	public XmlContents() {
 		elements = new ArrayList<>();
+		selectionsByCode = new HashMap<>();
+		listsById = new HashMap<>();
 	}
 	
 	public void setCode(String code) {
 		this.code = code;
 	}
 	
+	/**
+	 * Add a list to the document. The list is indexed
+	 * with the selections it contains at this time, so
+	 * it should be already complete.
+	 * @param elem
+	 */
 	public void addElement(SelectionList elem) {
+		
 		elements.add(elem);
+		
+		for (Selection sel : elem.getSelections()) {
+			if (sel.getCode() != null)
+				selectionsByCode.putIfAbsent(sel.getCode(), sel);
+		}
+		
+		if (elem.getId() != null) {
+			List<SelectionList> lists = listsById.get(elem.getId());
+			if (lists == null) {
+				lists = new ArrayList<>(1);
+				listsById.put(elem.getId(), lists);
+			}
+			lists.add(elem);
+		}
 	}
 	
 	public String getCode() {
@@ -63,15 +92,7 @@ public class XmlContents {
 	 * @return
 	 */
 	public Selection getElementByCode(String code) {
-		
-		Collection<Selection> objs = getAllListsElements();
-
-		for (Selection sel : objs) {
-			if (sel.getCode().equals(code))
-				return sel;
-		}
-		
-		return null;
+		return selectionsByCode.get(code);
 	}
 	
 	/**
@@ -81,14 +102,18 @@ public class XmlContents {
 	public Collection<Selection> getListElements(String listId) {
 		
 		Collection<Selection> objs = new ArrayList<>();
-		for (SelectionList list : elements) {
-			if(list.getId().equals(listId))
-				objs.addAll(list.getSelections());
+		for (SelectionList list : getListsById(listId)) {
+			objs.addAll(list.getSelections());
 		}
 		
 		return objs;
 	}
 	
+	private List<SelectionList> getListsById(String id) {
+		List<SelectionList> lists = listsById.get(id);
+		return lists == null ? Collections.<SelectionList>emptyList() : lists;
+	}
+	
 	/**
 	 * Filter the xml lists and get just the one that
 	 * matches the passed id.
@@ -97,12 +122,9 @@ public class XmlContents {
 	 */
 	public SelectionList getListById(String id) {
 		
-		for (SelectionList list : elements) {
-			if (list.getId().equals(id))
-				return list;
-		}
+		List<SelectionList> lists = getListsById(id);
 		
-		return null;
+		return lists.isEmpty() ? null : lists.get(0);
 	}
 
 	public int size() {
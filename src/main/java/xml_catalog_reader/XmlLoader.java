@@ -1,74 +1,248 @@
 package xml_catalog_reader;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import app_config.AppPaths;
+import app_config.PropertiesReader;
+import global_utils.XmlStreams;
 
 /**
- * Load all the .xml contents which are contained in {@link CustomPaths#XML_FOLDER}
+ * Load all the .xml contents which are contained in {@link CustomPaths#XML_FOLDER}.
+ * Each .xml is loaded only when its picklist is requested for the first time,
+ * using its binary snapshot if the file was not changed (see {@link PicklistSnapshot}).
  * @author avonva
+ * @author shahaal
  *
  */
 public class XmlLoader {
 
 	private static final Logger LOGGER = LogManager.getLogger(XmlLoader.class);
-	
-	// cache in memory to speed up
-	private static Collection<XmlContents> contents = new ArrayList<>();
-	
+
+	// cache in memory to speed up (picklist key => contents)
+	private static Map<String, XmlContents> contents = new ConcurrentHashMap<>();
+
+	// picklist key => lock used while loading the picklist
+	private static Map<String, Object> locks = new ConcurrentHashMap<>();
+
+	// picklist key => .xml file
+	private static volatile Map<String, File> files;
+
 	/**
 	 * Get a picklist by its identification key
 	 * @param id
 	 * @return
 	 */
 	public static XmlContents getByPicklistKey(String id) {
-		
-		// if empty, refresh contents
-		if (contents.isEmpty()) {
-			refresh();
+
+		if (id == null)
+			return null;
+
+		XmlContents item = contents.get(id);
+
+		if (item != null)
+			return item;
+
+		File file = getFiles().get(id);
+
+		if (file == null)
+			return null;
+
+		// load each picklist only once, also with concurrent requests
+		Object lock = locks.computeIfAbsent(id, k -> new Object());
+
+		synchronized (lock) {
+
+			item = contents.get(id);
+
+			if (item == null) {
+
+				item = load(file);
+
+				if (item != null)
+					contents.put(id, item);
+			}
 		}
 
-		for (XmlContents item : contents) {
-			if (item.getCode().equals(id)) {
-				return item;
+		return item;
+	}
+
+	/**
+	 * Load in background all the picklists, using the number of threads
+	 * set in the configuration file (no loading if it is not set)
+	 */
+	public static void warmUp() {
+		warmUp(PropertiesReader.getPicklistsWarmUpThreads());
+	}
+
+	/**
+	 * Load in background all the picklists
+	 * @param threads maximum number of picklists which are loaded at the same time
+	 */
+	public static void warmUp(int threads) {
+
+		if (threads <= 0)
+			return;
+
+		final AtomicInteger counter = new AtomicInteger();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "picklists-loader-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
 			}
+		});
+
+		for (final String key : getFiles().keySet()) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					getByPicklistKey(key);
+				}
+			});
 		}
 
-		return null;
+		// the threads end when all the picklists are loaded
+		executor.shutdown();
+	}
+
+	/**
+	 * Get the .xml files of the picklists folder by
+	 * picklist key (read from the main node of the .xml)
+	 * @return
+	 */
+	private static Map<String, File> getFiles() {
+
+		Map<String, File> index = files;
+
+		if (index != null)
+			return index;
+
+		synchronized (XmlLoader.class) {
+
+			if (files == null)
+				files = indexFiles();
+
+			return files;
+		}
 	}
-	
+
 	/**
-	 * Refresh the xml contents
+	 * Read the keys of the .xml files
+	 * @return
 	 */
-	private static void refresh() {
+	private static Map<String, File> indexFiles() {
+
+		Map<String, File> index = new LinkedHashMap<>();
 
 		File dir = new File(AppPaths.XML_FOLDER);
-		
-		// parse each xml and put it into the contents list
-		for (File xml : dir.listFiles()) {
-			
+
+		File[] xmls = dir.listFiles();
+
+		if (xmls == null) {
+			LOGGER.error("Cannot list the picklists in " + dir);
+			return index;
+		}
+
+		for (File xml : xmls) {
+
+			if (!xml.isFile())
+				continue;
+
 			try {
-				// parse the xml file
-				XmlParser parser = new XmlParser(xml);
-				
-				XmlContents doc = parser.parse();
-				
-				// save the parsed contents
-				contents.add(doc);
-				
-				parser.close();
+
+				String key = readKey(xml);
+
+				// the first file wins if two files have the same key
+				if (key != null)
+					index.putIfAbsent(key, xml);
+
 			} catch (XMLStreamException | IOException e) {
 				e.printStackTrace();
 				LOGGER.error("Cannot refresh the XmlLoader contents", e);
 			}
 		}
+
+		return index;
+	}
+
+	/**
+	 * Get the name of the main node of the .xml, without parsing
+	 * the rest of the file
+	 * @param xml
+	 * @return
+	 * @throws XMLStreamException
+	 * @throws IOException
+	 */
+	private static String readKey(File xml) throws XMLStreamException, IOException {
+
+		try (InputStream input = new FileInputStream(xml);) {
+
+			XMLStreamReader reader = XmlStreams.createReader(input);
+
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() == XMLStreamConstants.START_ELEMENT)
+						return reader.getLocalName();
+				}
+			}
+			finally {
+				reader.close();
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Load the contents of a .xml file, from its snapshot
+	 * if still valid or parsing it
+	 * @param xml
+	 * @return
+	 */
+	private static XmlContents load(File xml) {
+
+		PicklistSnapshot snapshot = new PicklistSnapshot(xml);
+
+		XmlContents doc = snapshot.read();
+
+		if (doc != null)
+			return doc;
+
+		try {
+			// parse the xml file
+			XmlParser parser = new XmlParser(xml);
+
+			doc = parser.parse();
+
+			parser.close();
+
+		} catch (XMLStreamException | IOException e) {
+			e.printStackTrace();
+			LOGGER.error("Cannot refresh the XmlLoader contents", e);
+			return null;
+		}
+
+		snapshot.write(doc);
+
+		return doc;
 	}
 }
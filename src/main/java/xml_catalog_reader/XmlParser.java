@@ -6,19 +6,15 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.EndElement;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import global_utils.XmlStreams;
+
 /**
  * Parser for the .xml configuration files which provide the data that need
  * to be visualized.
@@ -36,7 +32,7 @@ public class XmlParser {
 	private Selection selection;             // single selection which is created step by step
 	private XmlContents xmlContents;         // object which contains the .xml contents
 	private InputStream input;               // input xml
-	private XMLEventReader eventReader;      // xml parser
+	private XMLStreamReader reader;          // xml parser
 	private int elementCounter;              // count the number of element of the .xml
 	
 	/**
@@ -75,9 +71,7 @@ public class XmlParser {
 		this.elementCounter = 0;
 		
 		// Initialise xml parser
-		XMLInputFactory factory = XMLInputFactory.newInstance();
-		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
-		this.eventReader = factory.createXMLEventReader(input);
+		this.reader = XmlStreams.createReader(input);
 	}
 
 
@@ -89,27 +83,24 @@ public class XmlParser {
 	public XmlContents parse() throws XMLStreamException {
 		
 		// for each node of the xml
-		while (eventReader.hasNext()) {
-
-			// read the node
-			XMLEvent event = eventReader.nextEvent();
+		while (reader.hasNext()) {
 
-			// actions based on the node type
-			switch(event.getEventType()) {
+			// move to the next node and act based on its type
+			switch (reader.next()) {
 
 			// if starting xml node
 			case XMLStreamConstants.START_ELEMENT:
-				start (event);
+				start(reader.getLocalName());
 				break;
 
 			// if looking the xml contents
 			case XMLStreamConstants.CHARACTERS:
-				parseCharacters (event);
+				parseCharacters();
 				break;
 
 			// if ending xml node
 			case  XMLStreamConstants.END_ELEMENT:
-				end(event);
+				end(reader.getLocalName());
 				break;
 			}
 		}
@@ -119,17 +110,13 @@ public class XmlParser {
 	
 	/**
 	 * Parse the a node when it starts
-	 * @param event
+	 * @param qName name of the node
 	 */
-	private void start(XMLEvent event) {
+	private void start(String qName) {
 		
 		// count start element
 		elementCounter++;
 		
-		StartElement startElement = event.asStartElement();
-
-		String qName = startElement.getName().getLocalPart();
-		
 		// if we have the first element of the .xml, i.e. the main node
 		// save it, it will identify the content of the .xml file
 		if (elementCounter == 1) {
@@ -145,12 +132,12 @@ public class XmlParser {
 			this.selectionList = new SelectionList();
 			
 			// read the id of the selection list
-			Attribute id = startElement.getAttributeByName(new QName(XmlNodes.SELECTION_LIST_ID_ATTR));
+			String id = reader.getAttributeValue(null, XmlNodes.SELECTION_LIST_ID_ATTR);
 			
 			// id is required
 			if (id != null) {
 				// set the id
-				selectionList.setId(id.getValue());
+				selectionList.setId(id);
 				break;
 			}
 			
@@ -171,7 +158,7 @@ public class XmlParser {
 			this.selection = new Selection();
 			
 			// read the code of the selection
-			Attribute code = startElement.getAttributeByName(new QName(XmlNodes.SELECTION_CODE_ATTR));
+			String code = reader.getAttributeValue(null, XmlNodes.SELECTION_CODE_ATTR);
 			
 			// id is required
 			if (code == null) {
@@ -180,7 +167,7 @@ public class XmlParser {
 			}
 			
 			// set the code of the selection
-			selection.setCode(code.getValue());
+			selection.setCode(code);
 			
 			// set the list id for the selection object
 			selection.setListId(selectionList.getId());
@@ -206,21 +193,13 @@ public class XmlParser {
 	
 	/**
 	 * Parse the characters of the xml
-	 * @param event
 	 */
-	private void parseCharacters (XMLEvent event) {
-		
-		// get the xml node value
-		String contents = event.asCharacters().getData();
-
-		// cannot parse null content
-		if (contents == null)
-			return;
+	private void parseCharacters() {
 
 		// if we are parsing the description node
 		// set the description for the selection
 		if (parsingDescriptionNode) {
-			selection.setDescription(contents);
+			selection.setDescription(reader.getText());
 		}
 		else {
 
@@ -230,7 +209,7 @@ public class XmlParser {
 					printError("data node <" + dataNode + "> cannot be outside of " + XmlNodes.SELECTION);
 				}
 				else {
-					selection.addData(dataNode, contents);
+					selection.addData(dataNode, reader.getText());
 				}
 			}
 		}
@@ -238,13 +217,9 @@ public class XmlParser {
 	
 	/**
 	 * Parse a node when it ends
-	 * @param event
+	 * @param qName name of the node
 	 */
-	private void end (XMLEvent event) {
-		
-		// get the xml node
-		EndElement endElement = event.asEndElement();
-		String qName = endElement.getName().getLocalPart();
+	private void end(String qName) {
 		
 		switch (qName) {
 		
@@ -288,10 +263,10 @@ public class XmlParser {
 	 */
 	public void close () throws XMLStreamException, IOException {
 		
-		if (eventReader != null)
-			eventReader.close();
+		if (reader != null)
+			reader.close();
 
-		eventReader = null;
+		reader = null;
 		
 		if (input != null)
 			input.close();
@@ -0,0 +1,152 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.xml.stream.XMLStreamException;
+
+import amend_manager.DatasetComparison;
+import amend_manager.DatasetComparisonParser;
+import dataset.Dataset;
+import dataset.DatasetMetaDataParser;
+
+/**
+ * Measure the throughput of the dataset parsers on a synthetic dataset file
+ * (100000 results by default, the number can be passed as first argument).
+ * Run it with the test classpath, it is not a unit test.
+ *
+ * @author shahaal
+ *
+ */
+public class DatasetParserBenchmark {
+
+	private static final int DEFAULT_RESULTS = 100000;
+	private static final int FIELDS = 20;
+	private static final int ROUNDS = 5;
+
+	private static final String ROW_ID_FIELD = "resId";
+	private static final String VERSION_FIELD = "senderDatasetId";
+
+	public static void main(String[] args) throws IOException, XMLStreamException {
+
+		int results = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RESULTS;
+
+		File file = File.createTempFile("dataset-benchmark", ".xml");
+		file.deleteOnExit();
+
+		createDataset(file, results);
+
+		double mb = file.length() / (1024.0 * 1024.0);
+
+		System.out.println("Dataset of " + results + " results, " + String.format("%.1f", mb) + " MB");
+
+		for (int round = 1; round <= ROUNDS; ++round) {
+
+			long xml = parseComparisons(file, false, results);
+			long rows = parseComparisons(file, true, results);
+			long metaData = parseMetaData(file);
+
+			System.out.println("Round " + round + ": " + format("records", xml, results, mb) + "; "
+					+ format("rows", rows, results, mb) + "; meta data " + nanosToMillis(metaData) + " ms");
+		}
+	}
+
+	/**
+	 * Parse all the results of the file
+	 *
+	 * @param file
+	 * @param parseRows true to parse the values into rows, false to build the xml
+	 *                  records
+	 * @param expected  number of results of the file
+	 * @return the nanoseconds spent
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	private static long parseComparisons(File file, boolean parseRows, int expected)
+			throws IOException, XMLStreamException {
+
+		long start = System.nanoTime();
+
+		int count = 0;
+
+		try (DatasetComparisonParser parser = new DatasetComparisonParser(file, ROW_ID_FIELD, VERSION_FIELD);) {
+
+			parser.setParseRows(parseRows);
+
+			DatasetComparison comp;
+			while ((comp = parser.next()) != null) {
+				if (comp.getRowId() != null)
+					count++;
+			}
+		}
+
+		long nanos = System.nanoTime() - start;
+
+		if (count != expected)
+			throw new IllegalStateException("Parsed " + count + " results instead of " + expected);
+
+		return nanos;
+	}
+
+	private static long parseMetaData(File file) throws IOException, XMLStreamException {
+
+		long start = System.nanoTime();
+
+		try (DatasetMetaDataParser parser = new DatasetMetaDataParser(file);) {
+
+			Dataset dataset = parser.parse();
+
+			if (dataset.getOperation() == null)
+				throw new IllegalStateException("The operation was not parsed");
+		}
+
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Write a message with the given number of results
+	 *
+	 * @param file
+	 * @param results
+	 * @throws IOException
+	 */
+	private static void createDataset(File file, int results) throws IOException {
+
+		try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);) {
+
+			writer.write("<?xml version='1.0' encoding='UTF-8'?>\n<message>\n");
+			writer.write("<header><type>GDE2</type><version>1.0</version>"
+					+ "<senderMessageId>BENCH</senderMessageId><senderOrgCode>ORG</senderOrgCode>"
+					+ "<receiverOrgCode>EFSA</receiverOrgCode></header>\n");
+			writer.write("<payload>\n<operation><opType>Insert</opType><" + VERSION_FIELD + ">BENCH.01</"
+					+ VERSION_FIELD + "><dcCode>TEST</dcCode><dcTable>SSD2_CENTRAL</dcTable>"
+					+ "<orgCode>ORG</orgCode></operation>\n<dataset>\n");
+
+			for (int i = 0; i < results; ++i) {
+
+				writer.write("<result><" + ROW_ID_FIELD + ">R" + i + "</" + ROW_ID_FIELD + ">");
+
+				for (int j = 0; j < FIELDS; ++j) {
+					writer.write("<field" + j + ">value " + (i % 1000) + " of field " + j + "</field" + j + ">");
+				}
+
+				writer.write("</result>\n");
+			}
+
+			writer.write("</dataset>\n</payload>\n</message>\n");
+		}
+	}
+
+	private static String format(String label, long nanos, int results, double mb) {
+		double seconds = nanos / 1e9;
+		return label + " " + nanosToMillis(nanos) + " ms (" + Math.round(results / seconds) + " results/s, "
+				+ String.format("%.1f", mb / seconds) + " MB/s)";
+	}
+
+	private static long nanosToMillis(long nanos) {
+		return nanos / 1000000;
+	}
+}
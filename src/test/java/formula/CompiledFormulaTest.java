@@ -0,0 +1,202 @@
+package formula;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import table_skeleton.TableCell;
+import table_skeleton.TableColumn;
+import table_skeleton.TableColumn.ColumnType;
+import table_skeleton.TableRow;
+import xlsx_reader.TableHeaders.XlsxHeader;
+import xlsx_reader.TableSchema;
+
+/**
+ * Check that the compiled formulas give the same result of the text passes of
+ * {@link Formula} on the formulas used by the schemas of the tables
+ *
+ * @author shahaal
+ *
+ */
+public class CompiledFormulaTest {
+
+	private static final String CODE_FORMULA = XlsxHeader.CODE_FORMULA.getHeaderName();
+
+	// formulas as they are written in the schemas
+	private static final String[] FORMULAS = new String[] {
+			"%progId.code",
+			"%sampCountry.label",
+			" %progId.code ",
+			"%sampCountry.code|%sampYear.code|%progId.code",
+			"%progId.code.%sampYear.code",
+			"{rowId}.%progId.code",
+			"ZERO_PADDING(%sampYear.code,6)",
+			"RIGHT_TRIM(%sampYear.code,2)",
+			"LEFT_TRIM(%sampCountry.label,3)",
+			"SUM(%resVal.code,%resLoq.code)",
+			"(%paramType.code==P)",
+			"(%paramType.code!=P)",
+			"(%resVal.code==)",
+			"IF((%paramType.code==P),%resVal.code,%resLoq.code)",
+			"IF_NOT_NULL(%notes.code,%notes.code,null)",
+			"IF_NOT_NULL(%resVal.code,(%resVal.code==%resLoq.code),false)",
+			"AND((%paramType.code==P),(%sampCountry.code!=IT))",
+			"OR((%paramType.code==P),(%sampYear.code==2019))",
+			"IF(AND((%paramType.code==P),(%resVal.code!=)),SUM(%resVal.code,1),0)",
+			"%sampCountry.code-ZERO_PADDING({rowId},5)",
+			"%derived0.code|X"
+	};
+
+	// formulas which can always be compiled
+	private static final String[] COMPILABLE = new String[] {
+			"%progId.code",
+			"%sampCountry.code|%sampYear.code|%progId.code",
+			"ZERO_PADDING(%sampYear.code,6)"
+	};
+
+	private static TableSchema schema;
+	private static List<TableRow> rows;
+
+	@BeforeAll
+	public static void createRows() {
+
+		schema = new TableSchema();
+
+		schema.add(createColumn("progId", ""));
+		schema.add(createColumn("sampCountry", ""));
+		schema.add(createColumn("sampYear", ""));
+		schema.add(createColumn("paramType", ""));
+		schema.add(createColumn("resVal", ""));
+		schema.add(createColumn("resLoq", ""));
+		schema.add(createColumn("notes", ""));
+
+		for (int i = 0; i < FORMULAS.length; ++i)
+			schema.add(createColumn("derived" + i, FORMULAS[i]));
+
+		for (int i = 0; i < COMPILABLE.length; ++i)
+			schema.add(createColumn("compilable" + i, COMPILABLE[i]));
+
+		schema.setSheetName("CompiledFormulaTest");
+
+		rows = new ArrayList<>();
+
+		rows.add(createRow(1, "P01", new TableCell("IT", "Italy"), "2019", "P", "0.5", "1", null));
+		rows.add(createRow(2, "PROG.2", new TableCell("FR", "France"), "2020", "A", "", "2", "checked"));
+
+		// values which change the meaning of the text passes
+		rows.add(createRow(3, "A,B", new TableCell("(X)", "Unknown (X)"), "19", "p", "3", "abc", "50%"));
+	}
+
+	private static TableColumn createColumn(String id, String codeFormula) {
+		return new TableColumn(id, id, id, id, "", ColumnType.STRING, "false", "true", "true", "", codeFormula, "",
+				"", "", 0, "false");
+	}
+
+	private static TableRow createRow(int id, String progId, TableCell country, String year, String paramType,
+			String resVal, String resLoq, String notes) {
+
+		TableRow row = new TableRow(schema);
+		row.setId(id);
+
+		row.put("progId", progId);
+		row.put("sampCountry", country);
+		row.put("sampYear", year);
+		row.put("paramType", paramType);
+		row.put("resVal", resVal);
+		row.put("resLoq", resLoq);
+
+		if (notes != null)
+			row.put("notes", notes);
+
+		return row;
+	}
+
+	/**
+	 * Solve the formula of a column with the text passes
+	 *
+	 * @param row
+	 * @param column
+	 * @return the solved formula, or null if the text passes give an error
+	 */
+	private static String solveText(TableRow row, TableColumn column) {
+		try {
+			return new Formula(row, column, CODE_FORMULA, null).solveText();
+		} catch (FormulaException e) {
+			return null;
+		}
+	}
+
+	@Test
+	public void compiledFormulasAreEquivalentToTextPasses() {
+
+		int solved = 0;
+
+		for (TableColumn column : schema) {
+
+			String formula = column.getCodeFormula();
+
+			if (formula.isEmpty())
+				continue;
+
+			for (TableRow row : rows) {
+
+				CompiledFormula compiled = CompiledFormula.get(row, column, CODE_FORMULA, formula);
+
+				// not compiled, always solved with the text passes
+				if (compiled == null)
+					continue;
+
+				String value = compiled.solve(row, null);
+
+				// the text passes are used for this row
+				if (value == null)
+					continue;
+
+				assertEquals(solveText(row, column), value, "Formula " + formula + " on row " + row.getDatabaseId());
+				solved++;
+			}
+		}
+
+		assertTrue(solved > 0, "No formula was solved by the compiled version");
+	}
+
+	@Test
+	public void simpleFormulasAreCompiled() {
+
+		TableRow row = rows.get(0);
+
+		for (int i = 0; i < COMPILABLE.length; ++i) {
+
+			TableColumn column = schema.getById("compilable" + i);
+
+			CompiledFormula compiled = CompiledFormula.get(row, column, CODE_FORMULA, COMPILABLE[i]);
+
+			assertNotNull(compiled, "Formula " + COMPILABLE[i] + " not compiled");
+			assertEquals(solveText(row, column), compiled.solve(row, null), "Formula " + COMPILABLE[i]);
+		}
+	}
+
+	@Test
+	public void cacheFollowsTheFormulaText() {
+
+		TableRow row = rows.get(0);
+		TableColumn column = schema.getById("compilable0");
+
+		CompiledFormula compiled = CompiledFormula.get(row, column, CODE_FORMULA, "%sampYear.code");
+
+		assertNotNull(compiled);
+		assertEquals("2019", compiled.solve(row, null));
+
+		// the same column with another formula (reloaded schema)
+		compiled = CompiledFormula.get(row, column, CODE_FORMULA, COMPILABLE[0]);
+
+		assertNotNull(compiled);
+		assertEquals("P01", compiled.solve(row, null));
+	}
+}
@@ -2,7 +2,12 @@ package mocks;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import table_database.ITableDao;
 import table_relations.Relation;
@@ -25,6 +30,17 @@ public class TableDaoMock implements ITableDao {
 		return (int) (Math.random() * 10000.000);
 	}
 
+	@Override
+	public boolean updateAll(Collection<TableRow> rows) {
+
+		boolean ok = true;
+
+		for (TableRow row : rows)
+			ok = update(row) && ok;
+
+		return ok;
+	}
+
 	@Override
 	public boolean update(TableRow row) {
 		Iterator<TableRow> iterator = db.iterator();
@@ -63,6 +79,34 @@ public class TableDaoMock implements ITableDao {
 		return delete(rows);
 	}
 
+	@Override
+	public boolean copyChildren(TableSchema childSchema, TableRow parentToCopy, TableRow parentToWrite,
+			Function<TableSchema, Map<String, String>> overrides) {
+
+		String parentTable = parentToCopy.getSchema().getSheetName();
+
+		deleteByParentId(childSchema, parentTable, parentToWrite.getDatabaseId());
+
+		// only the direct children are copied
+		for (TableRow row : getByParentId(childSchema, parentTable, parentToCopy.getDatabaseId())) {
+
+			TableRow copy = new TableRow(childSchema);
+			copy.copyValues(row);
+
+			Relation.injectParent(parentToWrite, copy);
+
+			Map<String, String> values = overrides == null ? null : overrides.apply(childSchema);
+			if (values != null) {
+				for (Map.Entry<String, String> value : values.entrySet())
+					copy.put(value.getKey(), value.getValue());
+			}
+
+			add(copy);
+		}
+
+		return true;
+	}
+
 	@Override
 	public TableRow getByResultSet(TableSchema schema, ResultSet rs, boolean solveFormulas) throws SQLException {
 		return null;
@@ -103,6 +147,18 @@ public class TableDaoMock implements ITableDao {
 		return getByParentId(schema, parentTable, parentId);
 	}
 
+	@Override
+	public Map<Integer, TableRowList> getByParentIds(TableSchema schema, String parentTable,
+			Collection<Integer> parentIds, boolean solveFormulas) {
+
+		Map<Integer, TableRowList> out = new LinkedHashMap<>();
+
+		for (Integer parentId : parentIds)
+			out.put(parentId, getByParentId(schema, parentTable, parentId));
+
+		return out;
+	}
+
 	@Override
 	public TableRowList getAll(TableSchema schema) {
 
@@ -188,4 +244,20 @@ public class TableDaoMock implements ITableDao {
 		return list;
 	}
 
+	@Override
+	public Stream<TableRow> streamAll(TableSchema schema) {
+		return getAll(schema).stream();
+	}
+
+	@Override
+	public Stream<TableRow> streamByParentId(TableSchema schema, String parentTable, int parentId,
+			boolean solveFormulas, String order) {
+		return getByParentId(schema, parentTable, parentId).stream();
+	}
+
+	@Override
+	public Stream<TableRow> streamByStringField(TableSchema schema, String fieldName, String value) {
+		return getByStringField(schema, fieldName, value).stream();
+	}
+
 }